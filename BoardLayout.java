@@ -0,0 +1,284 @@
+/**
+ * BoardLayout
+ *
+ * The geometry of a board of a given size, computed once and shared by every
+ * game of that size. Only the cells that hold a letter are indexed, so a board
+ * can be stored as a flat array of {@code nrCells()} letters instead of a
+ * size x size matrix. Holes and diagonals are kept as bitmasks over the
+ * row-major positions, and each cell knows the words it belongs to and its
+ * index in each of them, so none of these questions needs a scan.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class BoardLayout {
+
+    public static final int MIN_SIZE = 5;
+    public static final int MAX_SIZE = 21;
+    private static final BoardLayout[] LAYOUTS = new BoardLayout[MAX_SIZE + 1];
+
+    private final int size;
+    private final int nrCells;
+    private final int nrDiagonalCells;
+    private final int[] cellAt;
+    private final int[] rowOf;
+    private final int[] colOf;
+    private final int nrWords;
+    private final int[] wordCells;
+    private final int[] hWordOf;
+    private final int[] vWordOf;
+    private final long[] holes;
+    private final long[] diagonals;
+
+    /**
+     * Returns the layout of a board with the given size
+     *
+     * @param size the length of each word
+     * @requires {@code size % 2 == 1 && size >= MIN_SIZE && size <= MAX_SIZE}
+     * @return the layout of a board with the given size
+     */
+    public static synchronized BoardLayout of(int size) {
+        if (LAYOUTS[size] == null)
+            LAYOUTS[size] = new BoardLayout(size);
+
+        return LAYOUTS[size];
+    }
+
+    /**
+     * Builds the tables of a board with the given size
+     *
+     * @param size the length of each word
+     */
+    private BoardLayout(int size) {
+        int holes = (size / 2) * (size / 2);
+
+        this.size = size;
+        this.nrCells = size * size - holes;
+        this.cellAt = new int[size * size];
+        this.rowOf = new int[this.nrCells];
+        this.colOf = new int[this.nrCells];
+
+        int cell = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i % 2 == 1 && j % 2 == 1) {
+                    this.cellAt[i * size + j] = -1;
+                } else {
+                    this.cellAt[i * size + j] = cell;
+                    this.rowOf[cell] = i;
+                    this.colOf[cell] = j;
+                    cell++;
+                }
+            }
+        }
+
+        this.holes = new long[(size * size + 63) / 64];
+        this.diagonals = new long[(size * size + 63) / 64];
+
+        int diagonalCells = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int pos = i * size + j;
+
+                if (this.cellAt[pos] < 0)
+                    this.holes[pos >>> 6] |= 1L << pos;
+                if (i == j || i + j == size - 1) {
+                    this.diagonals[pos >>> 6] |= 1L << pos;
+
+                    if (this.cellAt[pos] >= 0)
+                        diagonalCells++;
+                }
+            }
+        }
+        this.nrDiagonalCells = diagonalCells;
+
+        this.nrWords = size + 1;
+        this.wordCells = new int[this.nrWords * size];
+        this.hWordOf = new int[this.nrCells];
+        this.vWordOf = new int[this.nrCells];
+
+        for (int k = 0; k < this.nrCells; k++) {
+            int i = this.rowOf[k];
+            int j = this.colOf[k];
+
+            this.hWordOf[k] = i % 2 == 0 ? i / 2 : -1;
+            this.vWordOf[k] = j % 2 == 0 ? (size + 1) / 2 + j / 2 : -1;
+
+            if (this.hWordOf[k] >= 0)
+                this.wordCells[this.hWordOf[k] * size + j] = k;
+            if (this.vWordOf[k] >= 0)
+                this.wordCells[this.vWordOf[k] * size + i] = k;
+        }
+    }
+
+    /**
+     * Returns the length of each word of the board
+     *
+     * @return the length of each word of the board
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of cells of the board that hold a letter
+     *
+     * @return the number of cells of the board that hold a letter
+     */
+    public int nrCells() {
+        return this.nrCells;
+    }
+
+    /**
+     * Returns the number of cells of the board on its diagonals, whose letters
+     * are never shuffled
+     *
+     * @return the number of cells of the board on its diagonals
+     */
+    public int nrDiagonalCells() {
+        return this.nrDiagonalCells;
+    }
+
+    /**
+     * Returns the index of the cell in the given position
+     *
+     * @param row the row, starting at 0
+     * @param col the column, starting at 0
+     * @requires {@code row >= 0 && row < size() && col >= 0 && col < size()}
+     * @return the index of the cell in the given position, or -1 if the position
+     *         is a hole
+     */
+    public int cellAt(int row, int col) {
+        return this.cellAt[row * this.size + col];
+    }
+
+    /**
+     * Returns the row of the given cell
+     *
+     * @param cell the cell index
+     * @requires {@code cell >= 0 && cell < nrCells()}
+     * @return the row of the given cell, starting at 0
+     */
+    public int row(int cell) {
+        return this.rowOf[cell];
+    }
+
+    /**
+     * Returns the column of the given cell
+     *
+     * @param cell the cell index
+     * @requires {@code cell >= 0 && cell < nrCells()}
+     * @return the column of the given cell, starting at 0
+     */
+    public int col(int cell) {
+        return this.colOf[cell];
+    }
+
+    /**
+     * Returns the number of words of the board. Horizontal words come first, from
+     * top to bottom, followed by the vertical words, from left to right.
+     *
+     * @return the number of words of the board
+     */
+    public int nrWords() {
+        return this.nrWords;
+    }
+
+    /**
+     * Returns the cell that holds the given letter of the given word
+     *
+     * @param word the word index
+     * @param pos  the position of the letter in the word, starting at 0
+     * @requires {@code word >= 0 && word < nrWords()}
+     * @requires {@code pos >= 0 && pos < size()}
+     * @return the cell that holds the given letter of the given word
+     */
+    public int wordCell(int word, int pos) {
+        return this.wordCells[word * this.size + pos];
+    }
+
+    /**
+     * Returns the horizontal word the given cell belongs to. The position of the
+     * cell in that word is {@code col(cell)}.
+     *
+     * @param cell the cell index
+     * @requires {@code cell >= 0 && cell < nrCells()}
+     * @return the index of the horizontal word of the cell, or -1 if there is none
+     */
+    public int horizontalWord(int cell) {
+        return this.hWordOf[cell];
+    }
+
+    /**
+     * Returns the vertical word the given cell belongs to. The position of the
+     * cell in that word is {@code row(cell)}.
+     *
+     * @param cell the cell index
+     * @requires {@code cell >= 0 && cell < nrCells()}
+     * @return the index of the vertical word of the cell, or -1 if there is none
+     */
+    public int verticalWord(int cell) {
+        return this.vWordOf[cell];
+    }
+
+    /**
+     * Returns the position of the given cell in its horizontal word
+     *
+     * @param cell the cell index
+     * @requires {@code horizontalWord(cell) >= 0}
+     * @return the position of the cell in its horizontal word, starting at 0
+     */
+    public int indexInHorizontalWord(int cell) {
+        return this.colOf[cell];
+    }
+
+    /**
+     * Returns the position of the given cell in its vertical word
+     *
+     * @param cell the cell index
+     * @requires {@code verticalWord(cell) >= 0}
+     * @return the position of the cell in its vertical word, starting at 0
+     */
+    public int indexInVerticalWord(int cell) {
+        return this.rowOf[cell];
+    }
+
+    /**
+     * Checks if the given position is a hole, that is, holds no letter
+     *
+     * @param row the row, starting at 0
+     * @param col the column, starting at 0
+     * @requires {@code row >= 0 && row < size() && col >= 0 && col < size()}
+     * @return true if the given position is a hole, false otherwise
+     */
+    public boolean isHole(int row, int col) {
+        int pos = row * this.size + col;
+
+        return (this.holes[pos >>> 6] & 1L << pos) != 0;
+    }
+
+    /**
+     * Checks if the given position belongs to a diagonal
+     *
+     * @param row the row, starting at 0
+     * @param col the column, starting at 0
+     * @requires {@code row >= 0 && row < size() && col >= 0 && col < size()}
+     * @return true if the given position belongs to a diagonal, false otherwise
+     */
+    public boolean isDiagonal(int row, int col) {
+        int pos = row * this.size + col;
+
+        return (this.diagonals[pos >>> 6] & 1L << pos) != 0;
+    }
+
+    /**
+     * Checks if the given cell belongs to a diagonal
+     *
+     * @param cell the cell index
+     * @requires {@code cell >= 0 && cell < nrCells()}
+     * @return true if the given cell belongs to a diagonal, false otherwise
+     */
+    public boolean isDiagonal(int cell) {
+        return isDiagonal(this.rowOf[cell], this.colOf[cell]);
+    }
+}
@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BoardRenderer
+ *
+ * Draws the board of a game for a terminal, exactly as
+ * {@link WaffleGame#toString()} shows it, but straight into a given Appendable
+ * or ByteBuffer. The clues of the board are evaluated once into a ClueBoard
+ * kept by the renderer, and the colour escape sequences are built once, so
+ * drawing a board allocates nothing. A board for a ByteBuffer is first drawn
+ * in an array kept by the renderer and then copied at once, which is much
+ * faster than writing a direct buffer a byte at a time. A renderer is meant
+ * to be used by a single thread.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class BoardRenderer {
+
+    private static final String MARGIN = "      ";
+    private static final String SWAPS_START = "> ";
+    private static final String SWAPS_END = " swaps remaining <";
+
+    // indexed by the codes of ClueBoard
+    private static final String[] PREFIXES = { StringColouring.GREEN, StringColouring.YELLOW, "", "" };
+    private static final String[] SUFFIXES = { StringColouring.RESET, StringColouring.RESET, "", "" };
+    private static final byte[][] PREFIX_BYTES = ascii(PREFIXES);
+    private static final byte[][] SUFFIX_BYTES = ascii(SUFFIXES);
+    private static final byte[] MARGIN_BYTES = MARGIN.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SWAPS_START_BYTES = SWAPS_START.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SWAPS_END_BYTES = SWAPS_END.getBytes(StandardCharsets.US_ASCII);
+
+    private final int size;
+    private final ClueBoard clues;
+    private final byte[] bytes;
+
+    /**
+     * Returns the ASCII bytes of each of the given strings
+     *
+     * @param strings the strings
+     * @return the ASCII bytes of each string
+     */
+    private static byte[][] ascii(String[] strings) {
+        byte[][] bytes = new byte[strings.length][];
+
+        for (int i = 0; i < strings.length; i++)
+            bytes[i] = strings[i].getBytes(StandardCharsets.US_ASCII);
+
+        return bytes;
+    }
+
+    /**
+     * Returns the most bytes a board of the given size takes
+     *
+     * @param size the length of each word
+     * @return the most bytes a board of the given size takes
+     */
+    public static int maxBytes(int size) {
+        int cell = StringColouring.GREEN.length() + 1 + StringColouring.RESET.length() + 1;
+
+        return size * (MARGIN.length() + size * cell + 1) + SWAPS_START.length() + 11 + SWAPS_END.length();
+    }
+
+    /**
+     * Creates a renderer for boards of the given size
+     *
+     * @param size the length of each word
+     * @requires {@code size % 2 == 1 && size >= BoardLayout.MIN_SIZE && size <= BoardLayout.MAX_SIZE}
+     */
+    public BoardRenderer(int size) {
+        this.size = size;
+        this.clues = new ClueBoard(size);
+        this.bytes = new byte[maxBytes(size)];
+    }
+
+    /**
+     * Returns the size of the boards this renderer draws
+     *
+     * @return the length of each word
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Draws the board of the given game
+     *
+     * @param game the game
+     * @param out  where to draw it
+     * @requires {@code game} has a board of size {@code size()}
+     * @throws IOException if {@code out} cannot be written
+     */
+    public void render(WaffleGame game, Appendable out) throws IOException {
+        ClueBoard clues = game.clues(this.clues);
+
+        for (int i = 0; i < this.size; i++) {
+            out.append(MARGIN);
+
+            for (int j = 0; j < this.size; j++) {
+                int code = clues.code(i * this.size + j);
+
+                if (code == ClueBoard.HOLE) {
+                    out.append(' ');
+                } else {
+                    out.append(PREFIXES[code]);
+                    out.append(game.letterAt(i + 1, j + 1));
+                    out.append(SUFFIXES[code]);
+                }
+
+                out.append(' ');
+            }
+
+            out.append('\n');
+        }
+
+        out.append(SWAPS_START);
+        appendNumber(out, game.remainingSwaps());
+        out.append(SWAPS_END);
+    }
+
+    /**
+     * Draws the board of the given game
+     *
+     * @param game the game
+     * @param out  where to draw it
+     * @requires {@code game} has a board of size {@code size()}
+     * @return the given StringBuilder
+     */
+    public StringBuilder render(WaffleGame game, StringBuilder out) {
+        try {
+            render(game, (Appendable) out);
+        } catch (IOException e) {
+            // a StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+
+        return out;
+    }
+
+    /**
+     * Draws the board of the given game as ASCII bytes
+     *
+     * @param game the game
+     * @param out  where to draw it
+     * @requires {@code game} has a board of size {@code size()}
+     * @requires {@code out.remaining() >= maxBytes(size())}
+     * @return the given ByteBuffer
+     */
+    public ByteBuffer render(WaffleGame game, ByteBuffer out) {
+        ClueBoard clues = game.clues(this.clues);
+        byte[] bytes = this.bytes;
+        int n = 0;
+
+        for (int i = 0; i < this.size; i++) {
+            n = copy(MARGIN_BYTES, bytes, n);
+
+            for (int j = 0; j < this.size; j++) {
+                int code = clues.code(i * this.size + j);
+
+                if (code == ClueBoard.HOLE) {
+                    bytes[n++] = ' ';
+                } else {
+                    n = copy(PREFIX_BYTES[code], bytes, n);
+                    bytes[n++] = (byte) game.letterAt(i + 1, j + 1);
+                    n = copy(SUFFIX_BYTES[code], bytes, n);
+                }
+
+                bytes[n++] = ' ';
+            }
+
+            bytes[n++] = '\n';
+        }
+
+        n = copy(SWAPS_START_BYTES, bytes, n);
+        n = putNumber(bytes, n, game.remainingSwaps());
+        n = copy(SWAPS_END_BYTES, bytes, n);
+
+        return out.put(bytes, 0, n);
+    }
+
+    /**
+     * Copies some bytes into an array
+     *
+     * @param from the bytes to copy
+     * @param to   the array
+     * @param n    the position in the array to copy them to
+     * @return the position after the copied bytes
+     */
+    private static int copy(byte[] from, byte[] to, int n) {
+        for (int i = 0; i < from.length; i++)
+            to[n + i] = from[i];
+
+        return n + from.length;
+    }
+
+    /**
+     * Writes a number in decimal
+     *
+     * @param out where to write it
+     * @param n   the number
+     * @throws IOException if {@code out} cannot be written
+     */
+    private static void appendNumber(Appendable out, int n) throws IOException {
+        if (n < 0) {
+            out.append('-');
+            n = -n;
+        }
+        if (n >= 10)
+            appendNumber(out, n / 10);
+
+        out.append((char) ('0' + n % 10));
+    }
+
+    /**
+     * Writes a number in decimal
+     *
+     * @param bytes where to write it
+     * @param pos   the position to write it at
+     * @param n     the number
+     * @return the position after the number
+     */
+    private static int putNumber(byte[] bytes, int pos, int n) {
+        if (n < 0) {
+            bytes[pos++] = '-';
+            n = -n;
+        }
+        if (n >= 10)
+            pos = putNumber(bytes, pos, n / 10);
+
+        bytes[pos] = (byte) ('0' + n % 10);
+        return pos + 1;
+    }
+}
@@ -0,0 +1,73 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * ByteBufferPool
+ *
+ * A pool of direct ByteBuffers, all with the same capacity, so that buffers
+ * used only for a moment are not allocated again each time. Up to a given
+ * number of released buffers are kept; the others are left to the garbage
+ * collector. A pool is meant to be used by a single thread.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class ByteBufferPool {
+
+    private final int capacity;
+    private final int maxFree;
+    private final ArrayDeque<ByteBuffer> free;
+
+    /**
+     * Creates an empty pool
+     *
+     * @param capacity the capacity of each buffer, in bytes
+     * @param maxFree  how many released buffers to keep at most
+     * @requires {@code capacity > 0 && maxFree >= 0}
+     */
+    public ByteBufferPool(int capacity, int maxFree) {
+        this.capacity = capacity;
+        this.maxFree = maxFree;
+        this.free = new ArrayDeque<>();
+    }
+
+    /**
+     * Returns the capacity of each buffer
+     *
+     * @return the capacity of each buffer, in bytes
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns how many released buffers are kept
+     *
+     * @return how many released buffers are kept
+     */
+    public int free() {
+        return this.free.size();
+    }
+
+    /**
+     * Returns an empty buffer, from the pool if there is one
+     *
+     * @return an empty buffer with {@code capacity()} bytes
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = this.free.pollLast();
+
+        return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(this.capacity);
+    }
+
+    /**
+     * Gives a buffer back to the pool. It must not be used afterwards.
+     *
+     * @param buffer the buffer
+     * @requires {@code buffer} was returned by {@code acquire()}
+     */
+    public void release(ByteBuffer buffer) {
+        if (this.free.size() < this.maxFree)
+            this.free.addLast(buffer);
+    }
+}
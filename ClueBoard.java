@@ -0,0 +1,106 @@
+/**
+ * ClueBoard
+ *
+ * The status of every letter of a board, packed with two bits per position in
+ * row-major order. A position holds the ordinal of its {@link LetterStatus},
+ * or {@code HOLE} if it has no letter. A ClueBoard is meant to be filled again
+ * and again by {@link WaffleGame#clues(ClueBoard)} without new allocations.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class ClueBoard {
+
+    public static final int HOLE = 3;
+
+    private static final LetterStatus[] STATUSES = LetterStatus.values();
+
+    private final int size;
+    private final long[] bits;
+    private final byte[] seen;
+
+    /**
+     * Creates a ClueBoard for a board with the given size
+     *
+     * @param size the length of each word
+     * @requires {@code size % 2 == 1 && size >= 5}
+     */
+    public ClueBoard(int size) {
+        this.size = size;
+        this.bits = new long[(size * size + 31) / 32];
+        this.seen = new byte[26];
+
+        BoardLayout layout = BoardLayout.of(size);
+
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (layout.isHole(i, j))
+                    set(i * size + j, HOLE);
+            }
+        }
+    }
+
+    /**
+     * Returns the length of each word of the board
+     *
+     * @return the length of each word of the board
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the status of the letter in the given position
+     *
+     * @param row the row
+     * @param col the column
+     * @requires {@code row >= 1 && row <= size() && col >= 1 && col <= size()}
+     * @requires {@code row % 2 == 1 || col % 2 == 1}
+     * @return the status of the letter in the given position
+     */
+    public LetterStatus get(int row, int col) {
+        return STATUSES[code((row - 1) * this.size + col - 1)];
+    }
+
+    /**
+     * Returns the packed statuses, 32 positions per long starting at the lowest
+     * bits. The array is the one used by this ClueBoard, not a copy.
+     *
+     * @return the packed statuses
+     */
+    public long[] bits() {
+        return this.bits;
+    }
+
+    /**
+     * Returns the two-bit code in the given row-major position
+     *
+     * @param pos the position, {@code row * size() + col} starting at 0
+     * @return the two-bit code in the given position
+     */
+    int code(int pos) {
+        return (int) (this.bits[pos >>> 5] >>> ((pos & 31) << 1)) & 3;
+    }
+
+    /**
+     * Stores a two-bit code in the given row-major position
+     *
+     * @param pos  the position, {@code row * size() + col} starting at 0
+     * @param code the code
+     * @requires {@code code >= 0 && code <= HOLE}
+     */
+    void set(int pos, int code) {
+        int shift = (pos & 31) << 1;
+
+        this.bits[pos >>> 5] = (this.bits[pos >>> 5] & ~(3L << shift)) | ((long) code << shift);
+    }
+
+    /**
+     * Returns a scratch array of letter counts used while filling this board
+     *
+     * @return a scratch array of letter counts
+     */
+    byte[] seenLetters() {
+        return this.seen;
+    }
+}
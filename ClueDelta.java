@@ -0,0 +1,168 @@
+/**
+ * ClueDelta
+ *
+ * The positions whose {@link LetterStatus} changed with a swap, together with
+ * their new status. Each change is packed in one int as
+ * {@code (row * size + col) << 2 | status}, with row and column starting at 0.
+ * A ClueDelta is meant to be filled again and again by
+ * {@link WaffleGame#swap(int, int, int, int, ClueDelta)} without new
+ * allocations.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class ClueDelta {
+
+    private static final LetterStatus[] STATUSES = LetterStatus.values();
+
+    private final int size;
+    private final int[] changes;
+    private final int[] cells;
+    private final byte[] before;
+    private final boolean[] remembered;
+    private int count;
+    private int nrCells;
+
+    /**
+     * Creates a ClueDelta for a board with the given size
+     *
+     * @param size the length of each word
+     * @requires {@code size % 2 == 1 && size >= 5}
+     */
+    public ClueDelta(int size) {
+        this.size = size;
+
+        // a swap touches at most two horizontal and two vertical words
+        this.changes = new int[4 * size];
+        this.cells = new int[4 * size];
+        this.before = new byte[4 * size];
+        this.remembered = new boolean[size * size];
+    }
+
+    /**
+     * Returns the number of positions whose status changed
+     *
+     * @return the number of positions whose status changed
+     */
+    public int count() {
+        return this.count;
+    }
+
+    /**
+     * Returns the row of the i-th change
+     *
+     * @param i the index of the change
+     * @requires {@code i >= 0 && i < count()}
+     * @return the row of the i-th change, starting at 1
+     */
+    public int row(int i) {
+        return (this.changes[i] >>> 2) / this.size + 1;
+    }
+
+    /**
+     * Returns the column of the i-th change
+     *
+     * @param i the index of the change
+     * @requires {@code i >= 0 && i < count()}
+     * @return the column of the i-th change, starting at 1
+     */
+    public int col(int i) {
+        return (this.changes[i] >>> 2) % this.size + 1;
+    }
+
+    /**
+     * Returns the new status of the i-th change
+     *
+     * @param i the index of the change
+     * @requires {@code i >= 0 && i < count()}
+     * @return the new status of the i-th change
+     */
+    public LetterStatus status(int i) {
+        return STATUSES[this.changes[i] & 3];
+    }
+
+    /**
+     * Returns the packed changes; only the first {@code count()} entries are
+     * meaningful. The array is the one used by this ClueDelta, not a copy.
+     *
+     * @return the packed changes
+     */
+    public int[] changes() {
+        return this.changes;
+    }
+
+    /**
+     * Forgets every change and every remembered cell
+     */
+    void clear() {
+        for (int i = 0; i < this.nrCells; i++)
+            this.remembered[this.cells[i]] = false;
+
+        this.count = 0;
+        this.nrCells = 0;
+    }
+
+    /**
+     * Checks if the given cell was already remembered
+     *
+     * @param cell the cell index
+     * @return true if the given cell was already remembered, false otherwise
+     */
+    boolean remembers(int cell) {
+        return this.remembered[cell];
+    }
+
+    /**
+     * Remembers a cell that may change and its status before the swap
+     *
+     * @param cell   the cell index
+     * @param status the ordinal of the status of the cell before the swap
+     * @requires {@code !remembers(cell)}
+     */
+    void remember(int cell, int status) {
+        this.remembered[cell] = true;
+        this.cells[this.nrCells] = cell;
+        this.before[this.nrCells] = (byte) status;
+        this.nrCells++;
+    }
+
+    /**
+     * Returns the number of remembered cells
+     *
+     * @return the number of remembered cells
+     */
+    int nrCells() {
+        return this.nrCells;
+    }
+
+    /**
+     * Returns the i-th remembered cell
+     *
+     * @param i the index of the remembered cell
+     * @return the i-th remembered cell
+     */
+    int cell(int i) {
+        return this.cells[i];
+    }
+
+    /**
+     * Returns the status of the i-th remembered cell before the swap
+     *
+     * @param i the index of the remembered cell
+     * @return the ordinal of the status before the swap
+     */
+    int before(int i) {
+        return this.before[i];
+    }
+
+    /**
+     * Records a change
+     *
+     * @param row    the row, starting at 0
+     * @param col    the column, starting at 0
+     * @param status the ordinal of the new status
+     */
+    void add(int row, int col, int status) {
+        this.changes[this.count++] = (row * this.size + col) << 2 | status;
+    }
+}
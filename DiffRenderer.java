@@ -0,0 +1,250 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * DiffRenderer
+ *
+ * Keeps the board of a game drawn on a terminal up to date by sending only
+ * what changed. It remembers the last frame it drew, and after the first one,
+ * which clears the screen and draws the whole board as
+ * {@link BoardRenderer} does, each frame only moves the cursor to the cells
+ * whose letter or status changed, redraws them in their new colour and
+ * rewrites the number of swaps remaining, or the whole line below the board
+ * when the number changes length. One DiffRenderer follows one session;
+ * after anything else is drawn on the same terminal, {@code reset()} makes
+ * the next frame a whole one again.
+ *
+ * The board is drawn from the top left corner of the screen, the cell in row
+ * i and column j (starting at 0) at line {@code i + 1} and column
+ * {@code 7 + 2 * j}, and the swaps remaining line right below it.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class DiffRenderer {
+
+    private static final byte ESC = 0x1B;
+    private static final byte[] CLEAR = { ESC, '[', 'H', ESC, '[', '2', 'J' };
+    private static final byte[] CLEAR_LINE = { ESC, '[', 'K' };
+    private static final byte[] SWAPS_START = "> ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SWAPS_END = " swaps remaining <".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] PREFIXES = {
+            StringColouring.GREEN.getBytes(StandardCharsets.US_ASCII),
+            StringColouring.YELLOW.getBytes(StandardCharsets.US_ASCII), {}, {} };
+    private static final byte[][] SUFFIXES = {
+            StringColouring.RESET.getBytes(StandardCharsets.US_ASCII),
+            StringColouring.RESET.getBytes(StandardCharsets.US_ASCII), {}, {} };
+    // ESC [ line ; column H, with up to two and three digits
+    private static final int MAX_CURSOR_MOVE = 8;
+    private static final int MAX_CELL = 5 + 1 + 4;
+    private static final int MARGIN = 6;
+    // ESC [ count C, to skip over the end of the swaps remaining line
+    private static final byte[] SKIP_SWAPS_END = ("\u001B[" + SWAPS_END.length + "C")
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private final int size;
+    private final BoardRenderer full;
+    private final ClueBoard clues;
+    private final byte[] letters;
+    private final byte[] codes;
+    private final byte[] bytes;
+    private int remainingSwaps;
+    private boolean drawn;
+
+    /**
+     * Returns the most bytes a frame for a board of the given size takes
+     *
+     * @param size the length of each word
+     * @return the most bytes a frame for a board of the given size takes
+     */
+    public static int maxBytes(int size) {
+        int diff = size * size * (MAX_CURSOR_MOVE + MAX_CELL) + MAX_CURSOR_MOVE + SWAPS_START.length + 11
+                + SWAPS_END.length + CLEAR_LINE.length;
+
+        return Math.max(diff, CLEAR.length + BoardRenderer.maxBytes(size));
+    }
+
+    /**
+     * Creates a renderer for boards of the given size that has drawn nothing
+     *
+     * @param size the length of each word
+     * @requires {@code size % 2 == 1 && size >= BoardLayout.MIN_SIZE && size <= BoardLayout.MAX_SIZE}
+     */
+    public DiffRenderer(int size) {
+        this.size = size;
+        this.full = new BoardRenderer(size);
+        this.clues = new ClueBoard(size);
+        this.letters = new byte[size * size];
+        this.codes = new byte[size * size];
+        this.bytes = new byte[maxBytes(size)];
+    }
+
+    /**
+     * Forgets the last frame, so that the next one draws the whole board
+     */
+    public void reset() {
+        this.drawn = false;
+    }
+
+    /**
+     * Draws the board of the given game, only what changed since the last
+     * frame if there was one
+     *
+     * @param game the game
+     * @param out  where to draw it
+     * @requires {@code game} has a board of size {@code size}
+     * @requires {@code out.remaining() >= maxBytes(size)}
+     * @return the given ByteBuffer
+     */
+    public ByteBuffer render(WaffleGame game, ByteBuffer out) {
+        ClueBoard clues = game.clues(this.clues);
+
+        if (!this.drawn) {
+            out.put(CLEAR);
+            this.full.render(game, out);
+            remember(game, clues);
+            this.remainingSwaps = game.remainingSwaps();
+            this.drawn = true;
+
+            return out;
+        }
+
+        byte[] bytes = this.bytes;
+        int n = 0;
+        int last = -2;
+
+        for (int pos = 0; pos < this.size * this.size; pos++) {
+            int code = clues.code(pos);
+
+            if (code == ClueBoard.HOLE)
+                continue;
+
+            int i = pos / this.size;
+            int j = pos % this.size;
+            byte letter = (byte) game.letterAt(i + 1, j + 1);
+
+            if (letter == this.letters[pos] && code == this.codes[pos])
+                continue;
+
+            // right after the cell before, the cursor only has to skip the space
+            if (last == pos - 1 && j > 0)
+                bytes[n++] = ' ';
+            else
+                n = moveCursor(bytes, n, i + 1, MARGIN + 1 + 2 * j);
+
+            n = copy(PREFIXES[code], bytes, n);
+            bytes[n++] = letter;
+            n = copy(SUFFIXES[code], bytes, n);
+
+            this.letters[pos] = letter;
+            this.codes[pos] = (byte) code;
+            last = pos;
+        }
+
+        int remaining = game.remainingSwaps();
+
+        if (n > 0 || remaining != this.remainingSwaps) {
+            if (digits(remaining) == digits(this.remainingSwaps)) {
+                n = moveCursor(bytes, n, this.size + 1, SWAPS_START.length + 1);
+                n = putNumber(bytes, n, remaining);
+                n = copy(SKIP_SWAPS_END, bytes, n);
+            } else {
+                n = moveCursor(bytes, n, this.size + 1, 1);
+                n = copy(SWAPS_START, bytes, n);
+                n = putNumber(bytes, n, remaining);
+                n = copy(SWAPS_END, bytes, n);
+                n = copy(CLEAR_LINE, bytes, n);
+            }
+
+            this.remainingSwaps = remaining;
+        }
+
+        return out.put(bytes, 0, n);
+    }
+
+    /**
+     * Remembers the letters and statuses of the board as the last frame
+     *
+     * @param game  the game
+     * @param clues the statuses of the board
+     */
+    private void remember(WaffleGame game, ClueBoard clues) {
+        for (int pos = 0; pos < this.size * this.size; pos++) {
+            int code = clues.code(pos);
+
+            this.codes[pos] = (byte) code;
+            if (code != ClueBoard.HOLE)
+                this.letters[pos] = (byte) game.letterAt(pos / this.size + 1, pos % this.size + 1);
+        }
+    }
+
+    /**
+     * Returns how many characters a number takes in decimal
+     *
+     * @param n the number
+     * @return how many characters the number takes
+     */
+    private static int digits(int n) {
+        int digits = n < 0 ? 2 : 1;
+
+        for (n /= 10; n != 0; n /= 10)
+            digits++;
+
+        return digits;
+    }
+
+    /**
+     * Writes the escape sequence that moves the cursor to a given place
+     *
+     * @param bytes where to write it
+     * @param n     the position to write it at
+     * @param line  the line, starting at 1
+     * @param col   the column, starting at 1
+     * @return the position after the sequence
+     */
+    private static int moveCursor(byte[] bytes, int n, int line, int col) {
+        bytes[n++] = ESC;
+        bytes[n++] = '[';
+        n = putNumber(bytes, n, line);
+        bytes[n++] = ';';
+        n = putNumber(bytes, n, col);
+        bytes[n++] = 'H';
+
+        return n;
+    }
+
+    /**
+     * Copies some bytes into an array
+     *
+     * @param from the bytes to copy
+     * @param to   the array
+     * @param n    the position in the array to copy them to
+     * @return the position after the copied bytes
+     */
+    private static int copy(byte[] from, byte[] to, int n) {
+        for (int i = 0; i < from.length; i++)
+            to[n + i] = from[i];
+
+        return n + from.length;
+    }
+
+    /**
+     * Writes a number in decimal
+     *
+     * @param bytes where to write it
+     * @param pos   the position to write it at
+     * @param n     the number
+     * @return the position after the number
+     */
+    private static int putNumber(byte[] bytes, int pos, int n) {
+        if (n < 0) {
+            bytes[pos++] = '-';
+            n = -n;
+        }
+        if (n >= 10)
+            pos = putNumber(bytes, pos, n / 10);
+
+        bytes[pos] = (byte) ('0' + n % 10);
+        return pos + 1;
+    }
+}
@@ -0,0 +1,66 @@
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * DiffRendererBenchmark
+ *
+ * Plays random swaps on random puzzles and compares how many bytes each move
+ * sends to the terminal when the whole board is drawn again and when only
+ * what changed is, with DiffRenderer. Usage:
+ * {@code java DiffRendererBenchmark [games per size] [letters]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class DiffRendererBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int letters = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        Random rand = new Random(2023);
+
+        for (int size : new int[] { 5, 7, 11, BoardLayout.MAX_SIZE }) {
+            BoardRenderer full = new BoardRenderer(size);
+            ByteBuffer out = ByteBuffer.allocate(DiffRenderer.maxBytes(size));
+            long fullBytes = 0;
+            long diffBytes = 0;
+            long moves = 0;
+            long start = System.nanoTime();
+
+            for (int g = 0; g < games; g++) {
+                Puzzle puzzle = WaffleSolverBenchmark.randomPuzzle(size, letters, rand);
+                WaffleGame game = new WaffleGame(puzzle, puzzle.getShuffledGrid(rand.nextLong()));
+                DiffRenderer diff = new DiffRenderer(size);
+
+                out.clear();
+                diff.render(game, out);
+
+                while (!game.isOver()) {
+                    int r1 = 1 + rand.nextInt(size);
+                    int c1 = 1 + rand.nextInt(size);
+                    int r2 = 1 + rand.nextInt(size);
+                    int c2 = 1 + rand.nextInt(size);
+
+                    if ((r1 == r2 && c1 == c2) || !game.swappablePosition(r1, c1)
+                            || !game.swappablePosition(r2, c2))
+                        continue;
+
+                    game.swap(r1, c1, r2, c2);
+                    moves++;
+
+                    out.clear();
+                    diff.render(game, out);
+                    diffBytes += out.position();
+
+                    out.clear();
+                    full.render(game, out);
+                    fullBytes += out.position();
+                }
+            }
+
+            System.out.printf("%2dx%-2d %,9d moves: whole board %,7.1f bytes/move, changes only %,6.1f bytes/move"
+                    + " (%.1fx fewer), %.1f s%n", size, size, moves, fullBytes / (double) moves,
+                    diffBytes / (double) moves, fullBytes / (double) diffBytes, (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
@@ -0,0 +1,707 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * DifficultyEstimator
+ *
+ * Rates how hard a puzzle is by letting many simulated players play it from
+ * the same initial grid. A player sees only the letters of the board and their
+ * clues, and learns from them which letters cannot go in which cells: a
+ * misplaced letter does not belong where it is, a grey letter with no
+ * misplaced copy before it in a word belongs in none of the misplaced cells of
+ * that word, and a yellow letter in a cell of only one word belongs in another
+ * misplaced cell of that word, which rules it out of the cells of no such word
+ * once as many words want it as it has misplaced copies. Each swap is then
+ * picked by the strategy of the player. The players are split among the tasks of a fork/join pool, each
+ * task with its own SplittableRandom seeded from its first player, so the
+ * results are the same for the same seed whatever the number of threads.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class DifficultyEstimator {
+
+    public static final int LOOKAHEAD_WIDTH = 8;
+
+    private static final int PLAYERS_PER_TASK = 32;
+    private static final int CORRECT_POS = LetterStatus.CORRECT_POS.ordinal();
+    private static final int WRONG_POS = LetterStatus.WRONG_POS.ordinal();
+    private static final int INEXISTENT = LetterStatus.INEXISTENT.ordinal();
+
+    /**
+     * How a simulated player picks its next swap
+     */
+    public enum Strategy {
+        /** any two misplaced letters */
+        RANDOM,
+        /** the swap that puts the most letters where they may still belong */
+        GREEDY,
+        /** the best of the {@code LOOKAHEAD_WIDTH} best greedy swaps, counting
+         * the best swap after it */
+        LOOKAHEAD
+    }
+
+    /**
+     * How the simulated players of one strategy did on one grid
+     */
+    public static final class Report {
+        private final Puzzle puzzle;
+        private final char[][] grid;
+        private final Strategy strategy;
+        private final int players;
+        // the number of players that solved the puzzle with each number of swaps
+        private final long[] swaps;
+        // the number of players that ended with each number of letters misplaced
+        private final long[] lettersLeft;
+        private final long solved;
+
+        private Report(Puzzle puzzle, char[][] grid, Strategy strategy, int players, long[] swaps,
+                long[] lettersLeft) {
+            this.puzzle = puzzle;
+            this.grid = grid;
+            this.strategy = strategy;
+            this.players = players;
+            this.swaps = swaps;
+            this.lettersLeft = lettersLeft;
+            this.solved = Arrays.stream(swaps).sum();
+        }
+
+        /**
+         * Returns the puzzle played
+         *
+         * @return the puzzle played
+         */
+        public Puzzle puzzle() {
+            return this.puzzle;
+        }
+
+        /**
+         * Returns the initial grid the puzzle was played from
+         *
+         * @return the initial grid, not a copy
+         */
+        public char[][] grid() {
+            return this.grid;
+        }
+
+        /**
+         * Returns the strategy of the players
+         *
+         * @return the strategy of the players
+         */
+        public Strategy strategy() {
+            return this.strategy;
+        }
+
+        /**
+         * Returns how many players played
+         *
+         * @return how many players played
+         */
+        public int players() {
+            return this.players;
+        }
+
+        /**
+         * Returns the fraction of the players that solved the puzzle
+         *
+         * @return the fraction of the players that solved the puzzle
+         */
+        public double solveRate() {
+            return this.solved / (double) this.players;
+        }
+
+        /**
+         * Returns how many players solved the puzzle with the given number of
+         * swaps
+         *
+         * @param swaps the number of swaps
+         * @requires {@code swaps >= 0}
+         * @return how many players solved the puzzle with that many swaps
+         */
+        public long solvedWith(int swaps) {
+            return swaps < this.swaps.length ? this.swaps[swaps] : 0;
+        }
+
+        /**
+         * Returns the mean number of swaps of the players that solved the
+         * puzzle
+         *
+         * @return the mean number of swaps, or NaN if no player solved it
+         */
+        public double meanSwaps() {
+            long total = 0;
+
+            for (int s = 0; s < this.swaps.length; s++)
+                total += s * this.swaps[s];
+
+            return total / (double) this.solved;
+        }
+
+        /**
+         * Returns the given percentile of the number of swaps of the players
+         * that solved the puzzle
+         *
+         * @param fraction the percentile, from 0 to 1
+         * @return the number of swaps, or -1 if no player solved it
+         */
+        public int swapsPercentile(double fraction) {
+            long seen = 0;
+
+            for (int s = 0; s < this.swaps.length; s++) {
+                seen += this.swaps[s];
+
+                if (seen > 0 && seen >= Math.ceil(fraction * this.solved))
+                    return s;
+            }
+
+            return -1;
+        }
+
+        /**
+         * Returns how many players ended the game with the given number of
+         * letters misplaced
+         *
+         * @param letters the number of letters
+         * @requires {@code letters >= 0}
+         * @return how many players ended with that many letters misplaced
+         */
+        public long endedWith(int letters) {
+            return letters < this.lettersLeft.length ? this.lettersLeft[letters] : 0;
+        }
+
+        /**
+         * Returns the mean number of letters the players left misplaced, 0 for
+         * those that solved the puzzle
+         *
+         * @return the mean number of letters left misplaced
+         */
+        public double meanLettersLeft() {
+            long total = 0;
+
+            for (int l = 0; l < this.lettersLeft.length; l++)
+                total += l * this.lettersLeft[l];
+
+            return total / (double) this.players;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %.1f%% solved, swaps p10 %d, p50 %d, p90 %d, mean %.1f, %.1f letters left",
+                    this.strategy, 100 * solveRate(), swapsPercentile(0.1), swapsPercentile(0.5),
+                    swapsPercentile(0.9), meanSwaps(), meanLettersLeft());
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int players;
+    private final long seed;
+
+    /**
+     * Creates an estimator that plays on the common fork/join pool
+     *
+     * @param players how many simulated players play each grid
+     * @param seed    the seed of the players and of the grids of {@code rank}
+     * @requires {@code players >= 1}
+     */
+    public DifficultyEstimator(int players, long seed) {
+        this(ForkJoinPool.commonPool(), players, seed);
+    }
+
+    /**
+     * Creates an estimator that plays on the given fork/join pool
+     *
+     * @param pool    the pool
+     * @param players how many simulated players play each grid
+     * @param seed    the seed of the players and of the grids of {@code rank}
+     * @requires {@code players >= 1}
+     */
+    public DifficultyEstimator(ForkJoinPool pool, int players, long seed) {
+        this.pool = pool;
+        this.players = players;
+        this.seed = seed;
+    }
+
+    /**
+     * Lets the players of a strategy play the given grid of a puzzle
+     *
+     * @param puzzle   the puzzle
+     * @param grid     the initial grid
+     * @param strategy the strategy of the players
+     * @requires {@code WaffleGame.validGrid(puzzle, grid)}
+     * @return how the players did
+     */
+    public Report estimate(Puzzle puzzle, char[][] grid, Strategy strategy) {
+        long[] counts = this.pool.invoke(new PlayTask(puzzle, grid, strategy, this.seed, 0, this.players));
+        int maxSwaps = puzzle.shuffleSwaps() + WaffleGame.EXTRA_SWAPS;
+
+        return new Report(puzzle, grid, strategy, this.players, Arrays.copyOf(counts, maxSwaps + 1),
+                Arrays.copyOfRange(counts, maxSwaps + 1, counts.length));
+    }
+
+    /**
+     * Plays every puzzle from a shuffled grid, the one of
+     * {@code puzzle.getShuffledGrid} with the seed of the estimator plus the
+     * index of the puzzle, and ranks them from the hardest
+     *
+     * @param puzzles  the puzzles
+     * @param strategy the strategy of the players
+     * @return the reports of the puzzles, from the lowest solve rate up, and
+     *         among equal ones from the most letters left misplaced down,
+     *         then from the most swaps down
+     */
+    public List<Report> rank(List<Puzzle> puzzles, Strategy strategy) {
+        List<Report> reports = new ArrayList<>(puzzles.size());
+
+        for (int i = 0; i < puzzles.size(); i++) {
+            Puzzle puzzle = puzzles.get(i);
+
+            reports.add(estimate(puzzle, puzzle.getShuffledGrid(this.seed + i), strategy));
+        }
+
+        reports.sort(Comparator.comparingDouble(Report::solveRate)
+                .thenComparing(Comparator.comparingDouble(Report::meanLettersLeft).reversed())
+                .thenComparing(Comparator.comparingDouble(Report::meanSwaps).reversed()));
+        return reports;
+    }
+
+    /**
+     * Splits the players among tasks until each task has a few, and adds up
+     * how many of them solved the puzzle with each number of swaps, followed
+     * by how many left each number of letters misplaced
+     */
+    private static final class PlayTask extends RecursiveTask<long[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Puzzle puzzle;
+        private final char[][] grid;
+        private final Strategy strategy;
+        private final long seed;
+        private final int from;
+        private final int to;
+
+        PlayTask(Puzzle puzzle, char[][] grid, Strategy strategy, long seed, int from, int to) {
+            this.puzzle = puzzle;
+            this.grid = grid;
+            this.strategy = strategy;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (this.to - this.from > PLAYERS_PER_TASK) {
+                int middle = (this.from + this.to) >>> 1;
+                PlayTask left = new PlayTask(this.puzzle, this.grid, this.strategy, this.seed, this.from, middle);
+                PlayTask right = new PlayTask(this.puzzle, this.grid, this.strategy, this.seed, middle, this.to);
+
+                invokeAll(left, right);
+
+                long[] counts = left.join();
+                long[] more = right.join();
+                for (int i = 0; i < counts.length; i++)
+                    counts[i] += more[i];
+
+                return counts;
+            }
+
+            Player player = new Player(this.puzzle.layout(), new SplittableRandom(this.seed ^ this.from));
+            int maxSwaps = this.puzzle.shuffleSwaps() + WaffleGame.EXTRA_SWAPS;
+            long[] counts = new long[maxSwaps + 1 + this.puzzle.layout().nrCells() + 1];
+
+            for (int i = this.from; i < this.to; i++) {
+                int used = player.play(new WaffleGame(this.puzzle, this.grid), this.strategy);
+
+                if (used >= 0)
+                    counts[used]++;
+                counts[maxSwaps + 1 + player.lettersLeft()]++;
+            }
+
+            return counts;
+        }
+    }
+
+    /**
+     * A simulated player, playing one game after another on one thread
+     */
+    private static final class Player {
+
+        private final BoardLayout layout;
+        private final SplittableRandom rand;
+        private final ClueBoard clues;
+        // the letters each cell is known not to hold in the solution, one bit each
+        private final int[] ruledOut;
+        private final byte[] letters;
+        private final byte[] status;
+        private final int[] misplaced;
+        // the letters shown yellow in cells of only one word, for each word
+        private final int[] yellow;
+        // how many horizontal, then vertical, words show each letter yellow
+        private final int[] yellowWords;
+        private final long[] candidates;
+        private int nrMisplaced;
+        // the letters in misplaced cells, and those whose cells are all known
+        private int unplaced;
+        private int forced;
+        private final int[] copies;
+        private final int[] places;
+
+        Player(BoardLayout layout, SplittableRandom rand) {
+            this.layout = layout;
+            this.rand = rand;
+            this.clues = new ClueBoard(layout.size());
+            this.ruledOut = new int[layout.nrCells()];
+            this.letters = new byte[layout.nrCells()];
+            this.status = new byte[layout.nrCells()];
+            this.misplaced = new int[layout.nrCells()];
+            this.yellow = new int[layout.nrWords()];
+            this.yellowWords = new int[2 * 26];
+            this.copies = new int[26];
+            this.places = new int[26];
+            this.candidates = new long[LOOKAHEAD_WIDTH];
+        }
+
+        /**
+         * Plays a game until it is over
+         *
+         * @param game     the game, not played yet
+         * @param strategy how to pick swaps
+         * @return the number of swaps that solved the puzzle, or -1 if the
+         *         player ran out of swaps; {@code lettersLeft()} then tells how
+         *         many letters it left misplaced
+         */
+        int play(WaffleGame game, Strategy strategy) {
+            Arrays.fill(this.ruledOut, 0);
+
+            while (!game.isOver()) {
+                learn(game);
+
+                long move;
+                if (strategy == Strategy.RANDOM)
+                    move = randomMove();
+                else if (strategy == Strategy.GREEDY)
+                    move = bestMove(1);
+                else
+                    move = lookaheadMove();
+
+                int cell1 = (int) move;
+                int cell2 = (int) (move >>> 32);
+                game.swap(this.layout.row(cell1) + 1, this.layout.col(cell1) + 1, this.layout.row(cell2) + 1,
+                        this.layout.col(cell2) + 1);
+            }
+
+            learn(game);
+            return game.puzzleFound() ? game.maxSwaps() - game.remainingSwaps() : -1;
+        }
+
+        /**
+         * Reads the board and its clues, and rules out the letters they show
+         * cannot go in each cell
+         *
+         * @param game the game
+         */
+        private void learn(WaffleGame game) {
+            int size = this.layout.size();
+
+            game.clues(this.clues);
+            this.nrMisplaced = 0;
+            this.unplaced = 0;
+
+            for (int k = 0; k < this.letters.length; k++) {
+                this.letters[k] = game.currentLetterInCell(k);
+                this.status[k] = (byte) this.clues.code(this.layout.row(k) * size + this.layout.col(k));
+
+                if (this.status[k] != CORRECT_POS) {
+                    this.ruledOut[k] |= 1 << this.letters[k];
+                    this.misplaced[this.nrMisplaced++] = k;
+                    this.unplaced |= 1 << this.letters[k];
+                }
+            }
+
+            Arrays.fill(this.copies, 0);
+            for (int i = 0; i < this.nrMisplaced; i++)
+                this.copies[this.letters[this.misplaced[i]]]++;
+
+            Arrays.fill(this.yellowWords, 0);
+            for (int w = 0; w < this.layout.nrWords(); w++) {
+                // a grey letter with no misplaced copy before it in the word has
+                // all its places in the word filled already
+                int seen = 0;
+                int absent = 0;
+                int yellow = 0;
+
+                for (int i = 0; i < size; i++) {
+                    int cell = this.layout.wordCell(w, i);
+                    int letter = 1 << this.letters[cell];
+
+                    if (this.status[cell] == INEXISTENT && (seen & letter) == 0)
+                        absent |= letter;
+                    // a yellow letter in a cell of this word only belongs in
+                    // another cell of the word that is not green
+                    if (this.status[cell] == WRONG_POS && inOneWord(cell))
+                        yellow |= letter;
+
+                    if (this.status[cell] != CORRECT_POS)
+                        seen |= letter;
+                }
+
+                if (absent != 0) {
+                    for (int i = 0; i < size; i++) {
+                        int cell = this.layout.wordCell(w, i);
+
+                        if (this.status[cell] != CORRECT_POS)
+                            this.ruledOut[cell] |= absent;
+                    }
+                }
+
+                this.yellow[w] = yellow;
+                for (; yellow != 0; yellow &= yellow - 1)
+                    this.yellowWords[(w < this.layout.nrWords() / 2 ? 0 : 26) + Integer.numberOfTrailingZeros(yellow)]++;
+            }
+
+            // the horizontal words do not share cells, and neither do the
+            // vertical ones: when as many of them want a letter as there are
+            // copies of it misplaced, it goes in none of the other cells
+            for (int x = 0; x < 26; x++) {
+                for (int half = 0; half < 2; half++) {
+                    if (this.copies[x] == 0 || this.yellowWords[26 * half + x] != this.copies[x])
+                        continue;
+
+                    for (int i = 0; i < this.nrMisplaced; i++) {
+                        int cell = this.misplaced[i];
+                        int word = half == 0 ? this.layout.horizontalWord(cell) : this.layout.verticalWord(cell);
+
+                        if (word < 0 || (this.yellow[word] & 1 << x) == 0)
+                            this.ruledOut[cell] |= 1 << x;
+                    }
+                }
+            }
+
+            // a yellow letter that only one other cell of its word may hold
+            // goes in that cell
+            for (int w = 0; w < this.layout.nrWords(); w++) {
+                for (int yellow = this.yellow[w]; yellow != 0; yellow &= yellow - 1) {
+                    int letter = yellow & -yellow;
+                    int only = -1;
+                    int nrPlaces = 0;
+
+                    for (int i = 0; i < size; i++) {
+                        int cell = this.layout.wordCell(w, i);
+
+                        if (this.status[cell] != CORRECT_POS && (this.ruledOut[cell] & letter) == 0) {
+                            only = cell;
+                            nrPlaces++;
+                        }
+                    }
+
+                    if (nrPlaces == 1)
+                        this.ruledOut[only] |= ~letter;
+                }
+            }
+
+            // a letter that may go in as many misplaced cells as it has copies
+            // goes in all of them
+            Arrays.fill(this.places, 0);
+            for (int i = 0; i < this.nrMisplaced; i++) {
+                int cell = this.misplaced[i];
+
+                for (int free = this.unplaced & ~this.ruledOut[cell]; free != 0; free &= free - 1)
+                    this.places[Integer.numberOfTrailingZeros(free)]++;
+            }
+
+            this.forced = 0;
+            for (int x = 0; x < 26; x++) {
+                if (this.copies[x] > 0 && this.copies[x] == this.places[x])
+                    this.forced |= 1 << x;
+            }
+        }
+
+        /**
+         * Returns how many letters were misplaced when the clues were last
+         * read
+         *
+         * @return how many letters were misplaced
+         */
+        int lettersLeft() {
+            return this.nrMisplaced;
+        }
+
+        /**
+         * Returns how much the player likes moving the letter of one cell to
+         * another
+         *
+         * @param to   the cell the letter goes to
+         * @param from the cell the letter comes from
+         * @return 0 if the letter cannot belong there, 3 if it must, 2 if it
+         *         may and the clue says it belongs in a word of both cells, 1
+         *         otherwise
+         */
+        private int value(int to, int from) {
+            int letter = 1 << this.letters[from];
+
+            if ((this.ruledOut[to] & letter) != 0)
+                return 0;
+
+            if ((this.forced & letter) != 0 || Integer.bitCount(this.unplaced & ~this.ruledOut[to]) == 1)
+                return 3;
+
+            if (this.status[from] == WRONG_POS && sharesWord(to, from))
+                return 2;
+
+            return 1;
+        }
+
+        /**
+         * Tells whether a cell belongs to only one word
+         *
+         * @param cell the cell
+         * @return true if the cell is in a horizontal or a vertical word, but
+         *         not in both
+         */
+        private boolean inOneWord(int cell) {
+            return this.layout.horizontalWord(cell) < 0 || this.layout.verticalWord(cell) < 0;
+        }
+
+        /**
+         * Tells whether two cells are in the same word
+         *
+         * @param cell1 the first cell
+         * @param cell2 the second cell
+         * @return true if some word holds both cells
+         */
+        private boolean sharesWord(int cell1, int cell2) {
+            int h = this.layout.horizontalWord(cell1);
+            int v = this.layout.verticalWord(cell1);
+
+            return h >= 0 && h == this.layout.horizontalWord(cell2) || v >= 0 && v == this.layout.verticalWord(cell2);
+        }
+
+        /**
+         * Returns two misplaced cells with different letters, at random
+         *
+         * @return the first cell in the lower 32 bits and the second in the
+         *         upper ones
+         */
+        private long randomMove() {
+            // the misplaced letters are the ones their cells want, so they are
+            // not all the same
+            while (true) {
+                int cell1 = this.misplaced[this.rand.nextInt(this.nrMisplaced)];
+                int cell2 = this.misplaced[this.rand.nextInt(this.nrMisplaced)];
+
+                if (this.letters[cell1] != this.letters[cell2])
+                    return cell1 | (long) cell2 << 32;
+            }
+        }
+
+        /**
+         * Finds the swaps of two misplaced letters the player likes best, ties
+         * broken at random, and keeps the given number of them in
+         * {@code candidates}, from the best down
+         *
+         * @param keep how many swaps to keep
+         * @requires {@code keep >= 1 && keep <= LOOKAHEAD_WIDTH}
+         * @return the best swap, the first cell in the lower 32 bits and the
+         *         second in the upper ones
+         */
+        private long bestMove(int keep) {
+            // each candidate is its value, a random tie breaker and its two
+            // cells, packed so that a larger long is a better swap; unused
+            // ones are 0
+            int kept = 0;
+
+            Arrays.fill(this.candidates, 0);
+            for (int i = 0; i < this.nrMisplaced; i++) {
+                int cell1 = this.misplaced[i];
+
+                for (int j = i + 1; j < this.nrMisplaced; j++) {
+                    int cell2 = this.misplaced[j];
+
+                    if (this.letters[cell1] == this.letters[cell2])
+                        continue;
+
+                    long key = (long) (value(cell1, cell2) + value(cell2, cell1)) << 60
+                            | (long) this.rand.nextInt(1 << 12) << 48 | (long) cell1 << 24 | cell2;
+
+                    if (kept < keep)
+                        kept++;
+                    else if (key <= this.candidates[keep - 1])
+                        continue;
+
+                    int at = kept - 1;
+                    for (; at > 0 && this.candidates[at - 1] < key; at--)
+                        this.candidates[at] = this.candidates[at - 1];
+                    this.candidates[at] = key;
+                }
+            }
+
+            return cellsOf(this.candidates[0]);
+        }
+
+        /**
+         * Returns the best of the best greedy swaps, counting the value of the
+         * best swap after each one
+         *
+         * @return the first cell in the lower 32 bits and the second in the
+         *         upper ones
+         */
+        private long lookaheadMove() {
+            bestMove(LOOKAHEAD_WIDTH);
+
+            long[] firsts = this.candidates.clone();
+            long best = firsts[0];
+            int bestValue = -1;
+
+            for (long first : firsts) {
+                if (first == 0)
+                    break;
+
+                int cell1 = (int) (first >>> 24 & 0xFFFFFF);
+                int cell2 = (int) (first & 0xFFFFFF);
+                byte letter1 = this.letters[cell1];
+                byte status1 = this.status[cell1];
+                byte status2 = this.status[cell2];
+
+                // the player does not know yet what the clues of the moved
+                // letters will be
+                this.letters[cell1] = this.letters[cell2];
+                this.letters[cell2] = letter1;
+                this.status[cell1] = (byte) INEXISTENT;
+                this.status[cell2] = (byte) INEXISTENT;
+
+                bestMove(1);
+                int value = (int) (first >>> 60) + (int) (this.candidates[0] >>> 60);
+
+                this.letters[cell2] = this.letters[cell1];
+                this.letters[cell1] = letter1;
+                this.status[cell1] = status1;
+                this.status[cell2] = status2;
+
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = first;
+                }
+            }
+
+            return cellsOf(best);
+        }
+
+        /**
+         * Returns the cells of a packed candidate swap
+         *
+         * @param candidate the candidate
+         * @return the first cell in the lower 32 bits and the second in the
+         *         upper ones
+         */
+        private static long cellsOf(long candidate) {
+            return (candidate >>> 24 & 0xFFFFFF) | (candidate & 0xFFFFFF) << 32;
+        }
+    }
+}
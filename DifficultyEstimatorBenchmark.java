@@ -0,0 +1,63 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * DifficultyEstimatorBenchmark
+ *
+ * Lets simulated players of every strategy play random puzzles of sizes 5 and
+ * 7 on pools of more and more threads, checks that every pool gives the same
+ * reports, and prints how fast the games are played and the reports of the
+ * easiest and the hardest puzzle. Usage:
+ * {@code java DifficultyEstimatorBenchmark [puzzles] [players] [letters]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class DifficultyEstimatorBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int letters = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+        int cores = Runtime.getRuntime().availableProcessors();
+        Random rand = new Random(2023);
+
+        for (int size = 5; size <= 7; size += 2) {
+            List<Puzzle> puzzles = new ArrayList<>();
+
+            for (int i = 0; i < count; i++)
+                puzzles.add(WaffleSolverBenchmark.randomPuzzle(size, letters, rand));
+
+            for (DifficultyEstimator.Strategy strategy : DifficultyEstimator.Strategy.values()) {
+                // warm up
+                new DifficultyEstimator(players / 10, 1).rank(puzzles, strategy);
+
+                String first = null;
+
+                for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(2 * threads, cores)
+                        : threads + 1) {
+                    ForkJoinPool pool = new ForkJoinPool(threads);
+                    long start = System.nanoTime();
+                    List<DifficultyEstimator.Report> reports = new DifficultyEstimator(pool, players, 2023)
+                            .rank(puzzles, strategy);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+
+                    pool.shutdown();
+
+                    String ends = reports.get(0) + " / " + reports.get(reports.size() - 1);
+                    if (first == null)
+                        first = ends;
+                    else if (!first.equals(ends))
+                        throw new AssertionError("reports differ with " + threads + " threads");
+
+                    System.out.printf("%dx%d %-9s %2d threads: %,.0f games/s%n", size, size, strategy, threads,
+                            count * (double) players / seconds);
+                }
+
+                System.out.println("  hardest " + first.replace(" / ", "\n  easiest "));
+            }
+        }
+    }
+}
@@ -0,0 +1,322 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * DuplicateFilter
+ *
+ * Remembers puzzles of one size and tells whether a puzzle, or its
+ * transpose, was seen before. Each puzzle is kept in its canonical form,
+ * packed as five bits per letter, most significant first, into a fixed
+ * number of longs: 2 for 5x5, 4 for 7x7. The packed keys live in an
+ * open-addressing set in one long array, so looking a puzzle up allocates
+ * nothing and compares whole keys, never only a hash. In front of it a Bloom
+ * filter of {@code BLOOM_BITS} bits per puzzle answers most lookups of new
+ * puzzles without touching the set.
+ *
+ * The memory is fixed when the filter is created from the most puzzles it
+ * will hold; {@code memoryBytes()} tells how much. A filter is meant to be
+ * used by one thread at a time.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class DuplicateFilter {
+
+    public static final int BLOOM_BITS = 10;
+    public static final int BLOOM_HASHES = 7;
+
+    // the longest arrays the filter makes, a power of two that Java allows
+    private static final long MAX_LONGS = 1L << 30;
+
+    private final BoardLayout layout;
+    private final int maxPuzzles;
+    // the number of longs of a packed puzzle
+    private final int words;
+    private final long[] bloom;
+    private final int bloomShift;
+    // the packed puzzles; a slot whose first long is 0 is empty, since every
+    // letter is packed as its code plus 1
+    private final long[] slots;
+    private final int slotShift;
+    private final long[] key;
+    private int size;
+    private long exactLookups;
+
+    /**
+     * Creates an empty filter for puzzles of the given size
+     *
+     * @param size       the length of each word
+     * @param maxPuzzles the most puzzles the filter will hold
+     * @requires {@code size % 2 == 1 && size >= BoardLayout.MIN_SIZE && size <= BoardLayout.MAX_SIZE}
+     * @requires {@code maxPuzzles >= 1}
+     * @throws IllegalArgumentException if {@code maxPuzzles > maxPuzzles(size)}
+     */
+    public DuplicateFilter(int size, int maxPuzzles) {
+        if (maxPuzzles > maxPuzzles(size))
+            throw new IllegalArgumentException("a filter of size " + size + " holds at most " + maxPuzzles(size)
+                    + " puzzles, not " + maxPuzzles);
+
+        this.layout = BoardLayout.of(size);
+        this.maxPuzzles = maxPuzzles;
+        this.words = words(this.layout);
+
+        long bloomBits = powerOfTwoAtLeast(Math.max(64, (long) BLOOM_BITS * maxPuzzles));
+        this.bloom = new long[(int) (bloomBits / 64)];
+        this.bloomShift = 64 - Long.numberOfTrailingZeros(bloomBits);
+
+        long capacity = capacity(maxPuzzles);
+        this.slots = new long[(int) capacity * this.words];
+        this.slotShift = 64 - Long.numberOfTrailingZeros(capacity);
+        this.key = new long[this.words];
+    }
+
+    /**
+     * Returns the most puzzles a filter of the given size can hold, those for
+     * which its arrays still fit in Java arrays
+     *
+     * @param size the length of each word
+     * @requires {@code size % 2 == 1 && size >= BoardLayout.MIN_SIZE && size <= BoardLayout.MAX_SIZE}
+     * @return the most puzzles a filter of the given size can hold
+     */
+    public static int maxPuzzles(int size) {
+        long capacity = Long.highestOneBit(MAX_LONGS / words(BoardLayout.of(size)));
+
+        // the slots limit first; 2^30 longs hold the Bloom bits of 6.8G puzzles
+        return (int) Math.min(Integer.MAX_VALUE, capacity * 3 / 4);
+    }
+
+    /**
+     * Returns the number of longs of a packed puzzle
+     *
+     * @param layout the layout of the puzzles
+     * @return the number of longs of a packed puzzle
+     */
+    private static int words(BoardLayout layout) {
+        return (5 * layout.nrCells() + 63) / 64;
+    }
+
+    /**
+     * Returns the number of slots of a filter, so that at most three quarters
+     * of them are ever taken
+     *
+     * @param maxPuzzles the most puzzles the filter will hold
+     * @return the number of slots, a power of two
+     */
+    private static long capacity(int maxPuzzles) {
+        return powerOfTwoAtLeast(Math.max(2, ((long) maxPuzzles * 4 + 2) / 3));
+    }
+
+    /**
+     * Returns the smallest power of two not below the given number
+     *
+     * @param n the number
+     * @requires {@code n >= 1 && n <= 1L << 62}
+     * @return the smallest power of two not below n
+     */
+    private static long powerOfTwoAtLeast(long n) {
+        return n == 1 ? 1 : Long.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of a puzzle, the same for the puzzle and its
+     * transpose. Different puzzles may share a fingerprint, though rarely.
+     *
+     * @param puzzle the puzzle
+     * @return the fingerprint of the canonical form of the puzzle
+     */
+    public static long fingerprint(Puzzle puzzle) {
+        BoardLayout layout = puzzle.layout();
+        long[] key = new long[words(layout)];
+
+        pack(puzzle, key);
+        return hash(key);
+    }
+
+    /**
+     * Returns the puzzles of a list without the duplicates, keeping the first
+     * of each puzzle and its transpose, in the order of the list
+     *
+     * @param puzzles the puzzles
+     * @requires {@code !puzzles.isEmpty()} and all puzzles of the same size
+     * @return the distinct puzzles of the list
+     */
+    public static List<Puzzle> distinct(List<Puzzle> puzzles) {
+        DuplicateFilter filter = new DuplicateFilter(puzzles.get(0).size(), puzzles.size());
+        List<Puzzle> distinct = new ArrayList<>();
+
+        for (Puzzle puzzle : puzzles) {
+            if (filter.add(puzzle))
+                distinct.add(puzzle);
+        }
+
+        return distinct;
+    }
+
+    /**
+     * Adds a puzzle unless it, or its transpose, is already in the filter
+     *
+     * @param puzzle the puzzle
+     * @throws IllegalArgumentException if the puzzle is not of the size of the
+     *                                  filter
+     * @throws IllegalStateException    if the puzzle is new and the filter
+     *                                  already holds its most puzzles
+     * @return true if the puzzle was added, false if it was a duplicate
+     */
+    public boolean add(Puzzle puzzle) {
+        int slot = find(puzzle, true);
+
+        if (slot < 0)
+            return false;
+        if (this.size == this.maxPuzzles)
+            throw new IllegalStateException("the filter already holds " + this.maxPuzzles + " puzzles");
+
+        long hash = hash(this.key);
+        long step = hash >>> 32 | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = (hash + i * step) >>> this.bloomShift;
+
+            this.bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+
+        System.arraycopy(this.key, 0, this.slots, slot * this.words, this.words);
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Tells whether a puzzle, or its transpose, is in the filter
+     *
+     * @param puzzle the puzzle
+     * @throws IllegalArgumentException if the puzzle is not of the size of the
+     *                                  filter
+     * @return true if the puzzle or its transpose is in the filter
+     */
+    public boolean contains(Puzzle puzzle) {
+        return find(puzzle, false) < 0;
+    }
+
+    /**
+     * Returns the number of puzzles in the filter
+     *
+     * @return the number of puzzles in the filter
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns how many lookups the Bloom filter could not answer, and went to
+     * the set of packed puzzles
+     *
+     * @return the number of lookups in the set of packed puzzles
+     */
+    public long exactLookups() {
+        return this.exactLookups;
+    }
+
+    /**
+     * Returns the memory taken by the Bloom filter and the set of packed
+     * puzzles
+     *
+     * @return the size of the arrays of the filter, in bytes
+     */
+    public long memoryBytes() {
+        return 8L * (this.bloom.length + this.slots.length);
+    }
+
+    /**
+     * Looks a puzzle up, leaving its packed canonical form in {@code key}
+     *
+     * @param puzzle the puzzle
+     * @param insert whether to find the slot where a new puzzle goes
+     * @throws IllegalArgumentException if the puzzle is not of the size of the
+     *                                  filter
+     * @return -1 if the puzzle is in the filter, or else the empty slot where
+     *         it goes if {@code insert}, or 0 if not
+     */
+    private int find(Puzzle puzzle, boolean insert) {
+        if (puzzle.layout() != this.layout)
+            throw new IllegalArgumentException("a puzzle of size " + puzzle.size() + " in a filter of size "
+                    + this.layout.size());
+
+        pack(puzzle, this.key);
+        long hash = hash(this.key);
+        long step = hash >>> 32 | 1;
+        boolean maybe = true;
+
+        for (int i = 0; i < BLOOM_HASHES && maybe; i++) {
+            long bit = (hash + i * step) >>> this.bloomShift;
+
+            maybe = (this.bloom[(int) (bit >>> 6)] & 1L << bit) != 0;
+        }
+
+        if (!maybe && !insert)
+            return 0;
+        if (maybe)
+            this.exactLookups++;
+
+        int mask = this.slots.length / this.words - 1;
+        int slot = (int) ((hash * 0x9E3779B97F4A7C15L) >>> this.slotShift);
+
+        while (this.slots[slot * this.words] != 0) {
+            if (maybe && Arrays.equals(this.slots, slot * this.words, (slot + 1) * this.words, this.key, 0,
+                    this.words))
+                return -1;
+
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Packs the canonical form of a puzzle, five bits per letter, most
+     * significant first
+     *
+     * @param puzzle the puzzle
+     * @param key    the longs to fill
+     */
+    private static void pack(Puzzle puzzle, long[] key) {
+        BoardLayout layout = puzzle.layout();
+        boolean transpose = !puzzle.isCanonical();
+
+        Arrays.fill(key, 0);
+
+        for (int k = 0; k < layout.nrCells(); k++) {
+            int cell = transpose ? layout.cellAt(layout.col(k), layout.row(k)) : k;
+            long letter = puzzle.letterInCell(cell) + 1;
+            int bit = 5 * k;
+            int shift = 59 - (bit & 63);
+
+            // a letter may be split between two longs
+            if (shift >= 0) {
+                key[bit >>> 6] |= letter << shift;
+            } else {
+                key[bit >>> 6] |= letter >>> -shift;
+                key[(bit >>> 6) + 1] |= letter << (64 + shift);
+            }
+        }
+    }
+
+    /**
+     * Returns a hash of a packed puzzle
+     *
+     * @param key the packed puzzle
+     * @return a hash in which every bit depends on every bit of the key
+     */
+    private static long hash(long[] key) {
+        long hash = 0x5DEECE66DL;
+
+        for (long word : key) {
+            hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+            hash ^= hash >>> 29;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        return hash ^ hash >>> 33;
+    }
+}
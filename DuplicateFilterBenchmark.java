@@ -0,0 +1,111 @@
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * DuplicateFilterBenchmark
+ *
+ * Streams random puzzles through a DuplicateFilter, a quarter of them
+ * repeated as they were and a quarter as their transposes, and reports the
+ * lookups per second, how many lookups the Bloom filter left to the set of
+ * packed puzzles and the memory of the filter. Every answer of the filter is
+ * checked against a HashSet of the words of each canonical puzzle; any
+ * disagreement makes the exit status 1. Usage:
+ * {@code java DuplicateFilterBenchmark [candidates] [size] [distinct puzzles]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class DuplicateFilterBenchmark {
+
+    /**
+     * Returns the words of a puzzle, the horizontal ones first
+     *
+     * @param puzzle the puzzle
+     * @return the letters of the horizontal words and then of the vertical ones
+     */
+    private static String words(Puzzle puzzle) {
+        StringBuilder words = new StringBuilder();
+
+        for (int j = 1; j <= puzzle.nrWords() / 2; j++) {
+            for (int i = 1; i <= puzzle.size(); i++)
+                words.append(puzzle.getLetterInHorizontalWord(i, j));
+        }
+        for (int j = 1; j <= puzzle.nrWords() / 2; j++) {
+            for (int i = 1; i <= puzzle.size(); i++)
+                words.append(puzzle.getLetterInVerticalWord(i, j));
+        }
+
+        return words.toString();
+    }
+
+    public static void main(String[] args) {
+        int candidates = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int nrPuzzles = args.length > 2 ? Integer.parseInt(args[2]) : 500_000;
+        Random rand = new Random(2023);
+        Puzzle[] puzzles = new Puzzle[nrPuzzles];
+        Puzzle[] stream = new Puzzle[candidates];
+
+        for (int i = 0; i < nrPuzzles; i++)
+            puzzles[i] = WaffleSolverBenchmark.randomPuzzle(size, 26, rand);
+
+        // half new puzzles while there are any, the rest seen before, as they
+        // were or transposed
+        int next = 0;
+        for (int i = 0; i < candidates; i++) {
+            int kind = rand.nextInt(4);
+
+            if (next == 0 || kind < 2 && next < nrPuzzles)
+                stream[i] = puzzles[next++];
+            else if (kind % 2 == 0)
+                stream[i] = puzzles[rand.nextInt(next)];
+            else
+                stream[i] = puzzles[rand.nextInt(next)].transpose();
+        }
+
+        // the first run only warms up
+        for (int run = 0; run < 2; run++) {
+            DuplicateFilter filter = new DuplicateFilter(size, nrPuzzles);
+            int added = 0;
+            long start = System.nanoTime();
+
+            for (Puzzle puzzle : stream) {
+                if (filter.add(puzzle))
+                    added++;
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            if (run == 0)
+                continue;
+
+            System.out.printf("%dx%d, %,d candidates: %,d added, %,d duplicates, %,.0f candidates/s (%.0f ns each)%n",
+                    size, size, candidates, added, candidates - added, candidates / seconds,
+                    seconds * 1e9 / candidates);
+            System.out.printf("%,d exact lookups (%.1f%%), %,d bytes, %.1f bytes per puzzle%n",
+                    filter.exactLookups(), 100.0 * filter.exactLookups() / candidates, filter.memoryBytes(),
+                    filter.memoryBytes() / (double) nrPuzzles);
+
+            Set<String> reference = new HashSet<>();
+            long errors = 0;
+            filter = new DuplicateFilter(size, nrPuzzles);
+
+            for (Puzzle puzzle : stream) {
+                boolean seen = filter.contains(puzzle);
+                boolean added1 = filter.add(puzzle);
+                boolean added2 = reference.add(words(puzzle.canonical()));
+
+                if (seen == added1 || added1 != added2 || !filter.contains(puzzle)
+                        || !filter.contains(puzzle.transpose())
+                        || DuplicateFilter.fingerprint(puzzle) != DuplicateFilter.fingerprint(puzzle.transpose()))
+                    errors++;
+            }
+
+            System.out.printf("%,d reference puzzles, %d errors%n", reference.size(), errors);
+
+            if (errors > 0 || reference.size() != filter.size())
+                System.exit(1);
+        }
+    }
+}
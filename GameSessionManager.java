@@ -0,0 +1,224 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * GameSessionManager
+ *
+ * Keeps many WaffleGame sessions, each with its own ID, that can be played at
+ * the same time from different threads. A WaffleGame is not thread-safe, so
+ * every move on a session runs while holding a lock; instead of a lock per
+ * session or one for all of them there is a fixed array of locks, and a
+ * session uses the lock its ID hashes to. Moves on sessions with different
+ * locks run in parallel, and looking sessions up never blocks.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class GameSessionManager {
+
+    /**
+     * A game together with the time it was last used
+     */
+    private static final class Session {
+        private final WaffleGame game;
+        private volatile long lastUsed;
+        private boolean evicted;
+
+        private Session(WaffleGame game, long now) {
+            this.game = game;
+            this.lastUsed = now;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Session> sessions;
+    private final ReentrantLock[] locks;
+    private final AtomicLong nextId;
+
+    /**
+     * Creates a manager with a number of locks suited to the number of
+     * processors
+     */
+    public GameSessionManager() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a manager with at least the given number of locks
+     *
+     * @param stripes the number of locks
+     * @requires {@code stripes >= 1}
+     */
+    public GameSessionManager(int stripes) {
+        int n = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+
+        this.sessions = new ConcurrentHashMap<>();
+        this.locks = new ReentrantLock[n];
+        this.nextId = new AtomicLong();
+
+        for (int i = 0; i < n; i++)
+            this.locks[i] = new ReentrantLock();
+    }
+
+    /**
+     * Returns the lock of the session with the given ID
+     *
+     * @param id the ID of the session
+     * @return the lock of the session with the given ID
+     */
+    private ReentrantLock lockOf(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+
+        return this.locks[(int) (h >>> 32) & (this.locks.length - 1)];
+    }
+
+    /**
+     * Starts a new session with the given puzzle and grid
+     *
+     * @param puzzle the puzzle
+     * @param grid   the initial grid
+     * @requires {@code WaffleGame.validGrid(puzzle, grid)}
+     * @return the ID of the new session
+     */
+    public long create(Puzzle puzzle, char[][] grid) {
+        return create(new WaffleGame(puzzle, grid));
+    }
+
+    /**
+     * Starts a new session with the given game. The game must not be used
+     * afterwards other than through this manager.
+     *
+     * @param game the game
+     * @requires {@code game != null}
+     * @return the ID of the new session
+     */
+    public long create(WaffleGame game) {
+        long id = this.nextId.incrementAndGet();
+
+        this.sessions.put(id, new Session(game, System.nanoTime()));
+
+        return id;
+    }
+
+    /**
+     * Checks if there is a session with the given ID
+     *
+     * @param id the ID of the session
+     * @return true if there is a session with the given ID, false otherwise
+     */
+    public boolean contains(long id) {
+        return this.sessions.containsKey(id);
+    }
+
+    /**
+     * Returns the number of sessions
+     *
+     * @return the number of sessions
+     */
+    public int size() {
+        return this.sessions.size();
+    }
+
+    /**
+     * Applies the given move to the game of the given session. No other move
+     * on the same session runs at the same time, and each move sees the changes
+     * made by the ones before it. The move must not keep the game or use it
+     * after it returns.
+     *
+     * @param <R>  the type of the result of the move
+     * @param id   the ID of the session
+     * @param move the move
+     * @return the result of the move
+     * @throws NoSuchElementException if there is no session with the given ID
+     */
+    public <R> R apply(long id, Function<WaffleGame, R> move) {
+        Session session = this.sessions.get(id);
+
+        if (session == null)
+            throw new NoSuchElementException("no session " + id);
+
+        ReentrantLock lock = lockOf(id);
+        lock.lock();
+        try {
+            if (session.evicted)
+                throw new NoSuchElementException("no session " + id);
+
+            session.lastUsed = System.nanoTime();
+            return move.apply(session.game);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends the session with the given ID, waiting for a move on it that is
+     * already running
+     *
+     * @param id the ID of the session
+     * @return true if there was a session with the given ID, false otherwise
+     */
+    public boolean evict(long id) {
+        ReentrantLock lock = lockOf(id);
+
+        lock.lock();
+        try {
+            Session session = this.sessions.remove(id);
+
+            if (session == null)
+                return false;
+
+            session.evicted = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends every session that has not been used for the given time
+     *
+     * @param idleNanos the time, in nanoseconds
+     * @return the number of sessions ended
+     */
+    public int evictIdle(long idleNanos) {
+        long now = System.nanoTime();
+        int evicted = 0;
+
+        for (long id : this.sessions.keySet()) {
+            Session session = this.sessions.get(id);
+
+            if (session != null && now - session.lastUsed >= idleNanos && evictIfIdle(id, idleNanos))
+                evicted++;
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Ends the session with the given ID if it has not been used for the given
+     * time, checking again while holding its lock
+     *
+     * @param id        the ID of the session
+     * @param idleNanos the time, in nanoseconds
+     * @return true if the session was ended, false otherwise
+     */
+    private boolean evictIfIdle(long id, long idleNanos) {
+        ReentrantLock lock = lockOf(id);
+
+        lock.lock();
+        try {
+            Session session = this.sessions.get(id);
+
+            if (session == null || System.nanoTime() - session.lastUsed < idleNanos)
+                return false;
+
+            this.sessions.remove(id);
+            session.evicted = true;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GameSessionManagerBenchmark
+ *
+ * A load test for GameSessionManager: several threads play random moves on
+ * random sessions for a while, and the number of moves per second is reported
+ * for each number of threads, with one lock for every session and with the
+ * default striped locks. Usage:
+ * {@code java GameSessionManagerBenchmark [sessions] [max threads] [seconds per run]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class GameSessionManagerBenchmark {
+
+    private static final int SIZE = 5;
+
+    /**
+     * Plays random moves on random sessions with the given number of threads
+     *
+     * @param manager  the manager
+     * @param ids      the IDs of the sessions
+     * @param threads  the number of threads
+     * @param millis   for how long to play
+     * @return the number of moves played
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private static long play(GameSessionManager manager, long[] ids, int threads, long millis)
+            throws InterruptedException {
+        LongAdder moves = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        long[] deadline = new long[1];
+
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom rand = new SplittableRandom(t);
+
+            workers[t] = new Thread(() -> {
+                ClueBoard board = new ClueBoard(SIZE);
+                long done = 0;
+                long sink = 0;
+
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                while (System.nanoTime() < deadline[0]) {
+                    long id = ids[rand.nextInt(ids.length)];
+                    int r1 = 1 + rand.nextInt(SIZE);
+                    int c1 = 1 + rand.nextInt(SIZE);
+                    int r2 = 1 + rand.nextInt(SIZE);
+                    int c2 = 1 + rand.nextInt(SIZE);
+
+                    sink += manager.apply(id, game -> {
+                        if ((r1 != r2 || c1 != c2) && game.swappablePosition(r1, c1)
+                                && game.swappablePosition(r2, c2))
+                            game.swap(r1, c1, r2, c2);
+                        if (game.isOver())
+                            game.restart();
+
+                        return game.clues(board).bits()[0];
+                    });
+                    done++;
+                }
+
+                moves.add(done + (sink == 42 ? 1 : 0));
+            });
+            workers[t].start();
+        }
+
+        deadline[0] = System.nanoTime() + millis * 1_000_000;
+        start.countDown();
+
+        for (Thread worker : workers)
+            worker.join();
+
+        return moves.sum();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int nrSessions = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1])
+                : 2 * Runtime.getRuntime().availableProcessors();
+        long millis = args.length > 2 ? 1000 * Long.parseLong(args[2]) : 1000;
+        Random rand = new Random(2023);
+
+        System.out.printf("%d sessions of %dx%d, %d processors%n", nrSessions, SIZE, SIZE,
+                Runtime.getRuntime().availableProcessors());
+
+        for (int stripes : new int[] { 1, 4 * Runtime.getRuntime().availableProcessors() }) {
+            GameSessionManager manager = new GameSessionManager(stripes);
+            long[] ids = new long[nrSessions];
+
+            for (int i = 0; i < nrSessions; i++) {
+                Puzzle puzzle = WaffleSolverBenchmark.randomPuzzle(SIZE, 12, rand);
+
+                ids[i] = manager.create(puzzle, puzzle.getShuffledGrid(rand.nextLong()));
+            }
+
+            // warm up
+            play(manager, ids, maxThreads, millis);
+
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                long moves = play(manager, ids, threads, millis);
+
+                System.out.printf("%3d locks, %3d threads: %,12.0f moves/s%n", stripes, threads,
+                        moves * 1000.0 / millis);
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * GameSimulator
+ *
+ * Plays complete games of random puzzles on every core, each game from a
+ * shuffled grid until {@code isOver()}, with random swaps of misplaced
+ * letters or with the swaps of WaffleSolver, and reports the games and moves
+ * per second and how many bytes were allocated. The threads share only the
+ * puzzles, which they never change. A game allocates its grid, its WaffleGame
+ * and the first block of its move log; the moves themselves allocate nothing,
+ * which the bytes per move while playing show.
+ *
+ * Every move is checked against the solution of the puzzle: the simulator
+ * counts the misplaced letters itself from the letters of the two swapped
+ * positions, and {@code puzzleFound()} and {@code isOver()} must agree with
+ * that count and with the swaps left. At the end of each game the count is
+ * checked against the whole board, and a solver game must end solved. Any
+ * disagreement is printed and makes the exit status 1. Usage:
+ * {@code java GameSimulator [seconds] [size] [random|solve] [threads] [puzzles]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class GameSimulator {
+
+    private static final int MAX_REPORTED = 5;
+
+    /**
+     * What one thread did
+     */
+    private static final class Worker implements Runnable {
+        private final Puzzle[] puzzles;
+        private final boolean solve;
+        private final SplittableRandom rand;
+        private final GridShuffler shuffler;
+        private final CountDownLatch start;
+        private final long deadline;
+        // the valid positions of the board, 1-based
+        private final int[] rows;
+        private final int[] cols;
+        private long games;
+        private long moves;
+        private long solved;
+        private long errors;
+        private long allocated;
+        private long allocatedInMoves;
+        private final com.sun.management.ThreadMXBean threads;
+        private final StringBuilder report;
+
+        private Worker(Puzzle[] puzzles, boolean solve, long seed, CountDownLatch start, long deadline) {
+            BoardLayout layout = puzzles[0].layout();
+
+            this.puzzles = puzzles;
+            this.solve = solve;
+            this.rand = new SplittableRandom(seed);
+            this.shuffler = new GridShuffler(seed);
+            this.start = start;
+            this.deadline = deadline;
+            this.rows = new int[layout.nrCells()];
+            this.cols = new int[layout.nrCells()];
+            this.report = new StringBuilder();
+            this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+            for (int k = 0; k < layout.nrCells(); k++) {
+                this.rows[k] = layout.row(k) + 1;
+                this.cols[k] = layout.col(k) + 1;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.start.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long before = this.threads.getCurrentThreadAllocatedBytes();
+
+            while (System.nanoTime() < this.deadline)
+                playGame(this.puzzles[this.rand.nextInt(this.puzzles.length)]);
+
+            this.allocated = this.threads.getCurrentThreadAllocatedBytes() - before;
+        }
+
+        /**
+         * Plays one game until it is over, checking every move
+         *
+         * @param puzzle the puzzle
+         */
+        private void playGame(Puzzle puzzle) {
+            char[][] grid = this.shuffler.shuffle(puzzle);
+            WaffleGame game = new WaffleGame(puzzle, grid);
+            int[][] script = this.solve ? WaffleSolver.solve(puzzle, grid) : null;
+            int misplaced = 0;
+
+            for (int k = 0; k < this.rows.length; k++) {
+                if (grid[this.rows[k] - 1][this.cols[k] - 1] != solutionAt(puzzle, this.rows[k], this.cols[k]))
+                    misplaced++;
+            }
+
+            check(game, puzzle, misplaced, 0);
+            long before = this.threads.getCurrentThreadAllocatedBytes();
+
+            for (int move = 0; !game.isOver(); move++) {
+                int row1;
+                int col1;
+                int row2;
+                int col2;
+
+                if (this.solve) {
+                    if (move == script.length) {
+                        error(puzzle, "the solver's " + move + " swaps did not solve the puzzle");
+                        break;
+                    }
+
+                    row1 = script[move][0];
+                    col1 = script[move][1];
+                    row2 = script[move][2];
+                    col2 = script[move][3];
+                } else {
+                    int k1 = misplacedPosition(game);
+                    int k2 = misplacedPosition(game);
+
+                    while (game.letterAt(this.rows[k1], this.cols[k1]) == game.letterAt(this.rows[k2], this.cols[k2]))
+                        k2 = misplacedPosition(game);
+
+                    row1 = this.rows[k1];
+                    col1 = this.cols[k1];
+                    row2 = this.rows[k2];
+                    col2 = this.cols[k2];
+                }
+
+                misplaced -= misplacedAt(game, puzzle, row1, col1) + misplacedAt(game, puzzle, row2, col2);
+                game.swap(row1, col1, row2, col2);
+                misplaced += misplacedAt(game, puzzle, row1, col1) + misplacedAt(game, puzzle, row2, col2);
+                this.moves++;
+
+                if (!check(game, puzzle, misplaced, move + 1))
+                    break;
+            }
+
+            this.allocatedInMoves += this.threads.getCurrentThreadAllocatedBytes() - before;
+
+            int onBoard = 0;
+            for (int k = 0; k < this.rows.length; k++)
+                onBoard += misplacedAt(game, puzzle, this.rows[k], this.cols[k]);
+
+            if (onBoard != misplaced)
+                error(puzzle, onBoard + " letters misplaced on the board, " + misplaced + " counted");
+            if (this.solve && !game.puzzleFound() && script.length <= game.maxSwaps())
+                error(puzzle, "the solver's " + script.length + " swaps did not solve the puzzle");
+
+            this.games++;
+            if (game.puzzleFound())
+                this.solved++;
+        }
+
+        /**
+         * Returns a random position whose letter is misplaced
+         *
+         * @param game the game
+         * @requires {@code !game.puzzleFound()}
+         * @return the index of the position in {@code rows} and {@code cols}
+         */
+        private int misplacedPosition(WaffleGame game) {
+            while (true) {
+                int k = this.rand.nextInt(this.rows.length);
+
+                if (game.swappablePosition(this.rows[k], this.cols[k]))
+                    return k;
+            }
+        }
+
+        /**
+         * Checks that the game agrees with the number of misplaced letters
+         * counted by the simulator
+         *
+         * @param game      the game
+         * @param puzzle    the puzzle of the game
+         * @param misplaced the number of misplaced letters
+         * @param move      the number of swaps made, for the report
+         * @return true if the game agrees
+         */
+        private boolean check(WaffleGame game, Puzzle puzzle, int misplaced, int move) {
+            boolean found = game.puzzleFound();
+            boolean over = game.isOver();
+
+            if (found != (misplaced == 0)) {
+                error(puzzle, "after " + move + " swaps puzzleFound() is " + found + " with " + misplaced
+                        + " letters misplaced");
+                return false;
+            }
+
+            if (over != (found || game.remainingSwaps() == 0)) {
+                error(puzzle, "after " + move + " swaps isOver() is " + over + " with " + game.remainingSwaps()
+                        + " swaps left");
+                return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Counts and reports a disagreement between the game and the solution
+         *
+         * @param puzzle  the puzzle
+         * @param message what disagreed
+         */
+        private void error(Puzzle puzzle, String message) {
+            if (this.errors++ < MAX_REPORTED) {
+                this.report.append(message).append(" in the puzzle");
+                for (int j = 1; j <= puzzle.nrWords() / 2; j++) {
+                    this.report.append(' ');
+                    for (int i = 1; i <= puzzle.size(); i++)
+                        this.report.append(puzzle.getLetterInHorizontalWord(i, j));
+                }
+                this.report.append('\n');
+            }
+        }
+    }
+
+    /**
+     * Returns the letter of the solution in the given position
+     *
+     * @param puzzle the puzzle
+     * @param row    the row, from 1
+     * @param col    the column, from 1
+     * @requires {@code row % 2 == 1 || col % 2 == 1}
+     * @return the letter of the solution in the given position
+     */
+    private static char solutionAt(Puzzle puzzle, int row, int col) {
+        if (row % 2 == 1)
+            return puzzle.getLetterInHorizontalWord(col, (row + 1) / 2);
+
+        return puzzle.getLetterInVerticalWord(row, (col + 1) / 2);
+    }
+
+    /**
+     * Tells whether the letter in the given position is misplaced
+     *
+     * @param game   the game
+     * @param puzzle the puzzle of the game
+     * @param row    the row, from 1
+     * @param col    the column, from 1
+     * @return 1 if the letter is misplaced, 0 otherwise
+     */
+    private static int misplacedAt(WaffleGame game, Puzzle puzzle, int row, int col) {
+        return game.letterAt(row, col) == solutionAt(puzzle, row, col) ? 0 : 1;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        boolean solve = args.length > 2 && args[2].equals("solve");
+        int nrThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int nrPuzzles = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+        Random rand = new Random(2023);
+        Puzzle[] puzzles = new Puzzle[nrPuzzles];
+
+        for (int i = 0; i < nrPuzzles; i++)
+            puzzles[i] = WaffleSolverBenchmark.randomPuzzle(size, 12, rand);
+
+        // the first run only warms up
+        for (int run = 0; run < 2; run++) {
+            long nanos = (run == 0 ? Math.min(2, seconds) : seconds) * 1_000_000_000L;
+            CountDownLatch start = new CountDownLatch(1);
+            Worker[] workers = new Worker[nrThreads];
+            Thread[] threads = new Thread[nrThreads];
+            long begin = System.nanoTime();
+
+            for (int t = 0; t < nrThreads; t++) {
+                workers[t] = new Worker(puzzles, solve, 2023L * run + t, start, begin + nanos);
+                threads[t] = new Thread(workers[t], "simulator-" + t);
+                threads[t].start();
+            }
+
+            start.countDown();
+            for (Thread thread : threads)
+                thread.join();
+
+            if (run == 0)
+                continue;
+
+            double elapsed = (System.nanoTime() - begin) / 1e9;
+            long games = 0;
+            long moves = 0;
+            long solved = 0;
+            long errors = 0;
+            long allocated = 0;
+            long allocatedInMoves = 0;
+
+            for (Worker worker : workers) {
+                games += worker.games;
+                moves += worker.moves;
+                solved += worker.solved;
+                errors += worker.errors;
+                allocated += worker.allocated;
+                allocatedInMoves += worker.allocatedInMoves;
+                System.out.print(worker.report);
+            }
+
+            System.out.printf("%dx%d %s swaps, %d threads: %,.0f games/s, %,.0f moves/s, %.1f%% solved%n", size,
+                    size, solve ? "solver" : "random", nrThreads, games / elapsed, moves / elapsed,
+                    100.0 * solved / Math.max(1, games));
+            System.out.printf("allocated %,.0f MB/s, %,.0f bytes per game, %.2f bytes per move while playing%n",
+                    allocated / elapsed / 1e6, allocated / (double) Math.max(1, games),
+                    allocatedInMoves / (double) Math.max(1, moves));
+            System.out.printf("%d errors%n", errors);
+
+            if (errors > 0)
+                System.exit(1);
+        }
+    }
+}
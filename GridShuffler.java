@@ -0,0 +1,523 @@
+import java.util.SplittableRandom;
+
+/**
+ * GridShuffler
+ *
+ * Builds the initial grid of a puzzle directly as a permutation of its
+ * solution. The letters on the diagonals stay in place; the others are split
+ * into cycles so that undoing the permutation takes exactly the chosen number
+ * of swaps, and arranged so that no letter lands by chance on a cell that
+ * wants that same letter: a few random passes move the offending letters
+ * around, and a final pass swaps each one that is left with the first letter
+ * that fits. Because of repeated letters a permutation can still be undone
+ * with fewer swaps, so each grid is checked with {@link WaffleSolver}; after
+ * {@code MAX_ATTEMPTS} permutations the one that came closest is kept, so the
+ * work per grid is bounded. If none of them kept every letter off the cells
+ * that want it, the cells are laid out so that equal letters alternate with
+ * others, which always works unless one letter fills more than half of the
+ * cells to move.
+ *
+ * A number of swaps moves at most twice as many cells. With
+ * {@code puzzle.shuffleSwaps()} swaps every cell off the diagonals is moved;
+ * asked for fewer, the cells left out keep their letters and start green.
+ *
+ * When one letter fills more than half of the cells to move, no permutation
+ * can keep every moved letter off the cells that want it, and the grid with
+ * the fewest such letters is returned; {@code greenFree} tells the caller
+ * whether a grid is in that case.
+ *
+ * The same seed and puzzle always give the same grids.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class GridShuffler {
+
+    public static final int MAX_ATTEMPTS = 16;
+
+    private static final int MAX_PASSES = 8;
+
+    private final SplittableRandom rand;
+
+    /**
+     * Creates a shuffler with the given seed
+     *
+     * @param seed the seed
+     */
+    public GridShuffler(long seed) {
+        this.rand = new SplittableRandom(seed);
+    }
+
+    /**
+     * Returns a shuffled grid of the given puzzle that takes
+     * {@code puzzle.shuffleSwaps()} swaps to solve
+     *
+     * @param puzzle the puzzle
+     * @return a shuffled grid of the given puzzle
+     */
+    public char[][] shuffle(Puzzle puzzle) {
+        return shuffle(puzzle, puzzle.shuffleSwaps());
+    }
+
+    /**
+     * Returns a shuffled grid of the given puzzle that takes the given number of
+     * swaps to solve, as far as the letters of the puzzle allow. Fewer swaps
+     * than half the cells off the diagonals leave some of them in place.
+     *
+     * @param puzzle the puzzle
+     * @param swaps  the number of swaps
+     * @requires {@code swaps >= 1}
+     * @return a shuffled grid of the given puzzle
+     */
+    public char[][] shuffle(Puzzle puzzle, int swaps) {
+        BoardLayout layout = puzzle.layout();
+        int[] movable = new int[layout.nrCells()];
+        int m = 0;
+
+        for (int k = 0; k < layout.nrCells(); k++) {
+            if (!layout.isDiagonal(k))
+                movable[m++] = k;
+        }
+
+        // n cells in c cycles take n - c swaps, and every cycle has two or more
+        swaps = Math.min(swaps, m - 1);
+        int n = Math.min(m, 2 * swaps);
+        int cycles = n - swaps;
+
+        int[] order = new int[n];
+        int[] cycleOf = new int[n];
+        int[] cycleStart = new int[cycles + 1];
+        char[][] best = null;
+        int bestScore = Integer.MIN_VALUE;
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            pickCells(movable, m, order);
+            splitInCycles(n, cycles, cycleStart, cycleOf);
+            int greens = separateEqualLetters(puzzle, order, cycleStart, cycleOf)
+                    ? 0
+                    : repairEqualLetters(puzzle, order, movable, m, cycleStart, cycleOf);
+
+            char[][] grid = permutedGrid(puzzle, order, cycleStart, cycleOf);
+            // a grid with letters green by chance is worse than any other
+            int score = greens == 0 ? WaffleSolver.minSwaps(puzzle, grid) : -greens;
+
+            if (score == swaps)
+                return grid;
+            if (score > bestScore) {
+                best = grid;
+                bestScore = score;
+            }
+        }
+
+        // no attempt kept every letter off the cells that want it
+        if (bestScore < 0 && interleaveLetters(puzzle, movable, m, order, cycles, cycleStart, cycleOf))
+            return permutedGrid(puzzle, order, cycleStart, cycleOf);
+
+        return best;
+    }
+
+    /**
+     * Returns the solved grid of the given puzzle with the cells in the given
+     * cycles permuted, each receiving the letter of the one that follows it
+     *
+     * @param puzzle     the puzzle
+     * @param order      the cells, in cycle order
+     * @param cycleStart the first position of each cycle
+     * @param cycleOf    the cycle of each position
+     * @return a new matrix with the permuted grid
+     */
+    private static char[][] permutedGrid(Puzzle puzzle, int[] order, int[] cycleStart, int[] cycleOf) {
+        BoardLayout layout = puzzle.layout();
+        char[][] grid = solvedGrid(puzzle);
+
+        for (int i = 0; i < order.length; i++) {
+            int k = order[i];
+            int next = order[successor(i, cycleStart, cycleOf)];
+
+            grid[layout.row(k)][layout.col(k)] = (char) ('A' + puzzle.letterInCell(next));
+        }
+
+        return grid;
+    }
+
+    /**
+     * Tells whether no letter off the diagonals of a grid is in its place
+     *
+     * @param puzzle the puzzle
+     * @param grid   a grid of the puzzle
+     * @return true if every letter off the diagonals differs from the one the
+     *         solution has there
+     */
+    public static boolean greenFree(Puzzle puzzle, char[][] grid) {
+        BoardLayout layout = puzzle.layout();
+
+        for (int k = 0; k < layout.nrCells(); k++) {
+            if (!layout.isDiagonal(k)
+                    && grid[layout.row(k)][layout.col(k)] == (char) ('A' + puzzle.letterInCell(k)))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Puts a random selection of the movable cells, in random order, in the
+     * given array
+     *
+     * @param movable the movable cells; reordered
+     * @param m       the number of movable cells
+     * @param order   the array to fill
+     */
+    private void pickCells(int[] movable, int m, int[] order) {
+        for (int i = 0; i < order.length; i++) {
+            int j = i + this.rand.nextInt(m - i);
+            int cell = movable[j];
+
+            movable[j] = movable[i];
+            movable[i] = cell;
+            order[i] = cell;
+        }
+    }
+
+    /**
+     * Splits the positions 0 to n - 1 into the given number of consecutive
+     * cycles, each of two or more positions, with random lengths
+     *
+     * @param n          the number of positions
+     * @param cycles     the number of cycles
+     * @param cycleStart filled with the first position of each cycle, and n at
+     *                   the end
+     * @param cycleOf    filled with the cycle of each position
+     */
+    private void splitInCycles(int n, int cycles, int[] cycleStart, int[] cycleOf) {
+        int[] lengths = new int[cycles];
+
+        for (int c = 0; c < cycles; c++)
+            lengths[c] = 2;
+        for (int extra = n - 2 * cycles; extra > 0; extra--)
+            lengths[this.rand.nextInt(cycles)]++;
+
+        int start = 0;
+        for (int c = 0; c < cycles; c++) {
+            cycleStart[c] = start;
+
+            for (int i = 0; i < lengths[c]; i++)
+                cycleOf[start + i] = c;
+
+            start += lengths[c];
+        }
+        cycleStart[cycles] = n;
+    }
+
+    /**
+     * Returns the position that follows the given one in its cycle
+     *
+     * @param i          the position
+     * @param cycleStart the first position of each cycle
+     * @param cycleOf    the cycle of each position
+     * @return the position that follows the given one in its cycle
+     */
+    private static int successor(int i, int[] cycleStart, int[] cycleOf) {
+        int c = cycleOf[i];
+
+        return i + 1 < cycleStart[c + 1] ? i + 1 : cycleStart[c];
+    }
+
+    /**
+     * Reorders the cells so that no cell receives the letter it wants. Each pass
+     * moves every offending follower to a random position; after
+     * {@code MAX_PASSES} passes it gives up.
+     *
+     * @param puzzle     the puzzle
+     * @param order      the cells, in cycle order
+     * @param cycleStart the first position of each cycle
+     * @param cycleOf    the cycle of each position
+     * @return true if no cell receives the letter it wants, false otherwise
+     */
+    private boolean separateEqualLetters(Puzzle puzzle, int[] order, int[] cycleStart, int[] cycleOf) {
+        int n = order.length;
+
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean separated = true;
+
+            for (int i = 0; i < n; i++) {
+                int next = successor(i, cycleStart, cycleOf);
+
+                if (puzzle.letterInCell(order[i]) == puzzle.letterInCell(order[next])) {
+                    int j = this.rand.nextInt(n);
+                    int cell = order[next];
+
+                    order[next] = order[j];
+                    order[j] = cell;
+                    separated = false;
+                }
+            }
+
+            if (separated)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Tells whether the cell in the given position receives the letter it
+     * wants
+     *
+     * @param puzzle     the puzzle
+     * @param order      the cells, in cycle order
+     * @param i          the position
+     * @param cycleStart the first position of each cycle
+     * @param cycleOf    the cycle of each position
+     * @return true if the cell receives the letter it wants
+     */
+    private static boolean receivesOwnLetter(Puzzle puzzle, int[] order, int i, int[] cycleStart,
+            int[] cycleOf) {
+        return puzzle.letterInCell(order[i]) == puzzle.letterInCell(order[successor(i, cycleStart, cycleOf)]);
+    }
+
+    /**
+     * Replaces the follower of each cell that receives the letter it wants by
+     * the first cell, in the cycles or among the unused movable cells, that
+     * makes none of the cells it touches receive the letter it wants. Each
+     * replacement removes one such cell and adds none, so the pass ends.
+     *
+     * @param puzzle     the puzzle
+     * @param order      the cells, in cycle order
+     * @param movable    the movable cells, those in {@code order} first
+     * @param m          the number of movable cells
+     * @param cycleStart the first position of each cycle
+     * @param cycleOf    the cycle of each position
+     * @return the number of cells that still receive the letter they want
+     */
+    private static int repairEqualLetters(Puzzle puzzle, int[] order, int[] movable, int m, int[] cycleStart,
+            int[] cycleOf) {
+        int n = order.length;
+
+        for (int i = 0; i < n; i++) {
+            if (!receivesOwnLetter(puzzle, order, i, cycleStart, cycleOf))
+                continue;
+
+            int next = successor(i, cycleStart, cycleOf);
+            int cell = order[next];
+            boolean repaired = false;
+
+            for (int j = 0; j < n && !repaired; j++) {
+                int before = predecessor(j, cycleStart, cycleOf);
+
+                if (j == next || puzzle.letterInCell(order[j]) == puzzle.letterInCell(cell))
+                    continue;
+
+                order[next] = order[j];
+                order[j] = cell;
+                repaired = !receivesOwnLetter(puzzle, order, i, cycleStart, cycleOf)
+                        && !receivesOwnLetter(puzzle, order, next, cycleStart, cycleOf)
+                        && !receivesOwnLetter(puzzle, order, before, cycleStart, cycleOf)
+                        && !receivesOwnLetter(puzzle, order, j, cycleStart, cycleOf);
+
+                if (!repaired) {
+                    order[j] = order[next];
+                    order[next] = cell;
+                }
+            }
+
+            for (int u = n; u < m && !repaired; u++) {
+                if (puzzle.letterInCell(movable[u]) == puzzle.letterInCell(cell))
+                    continue;
+
+                order[next] = movable[u];
+                repaired = !receivesOwnLetter(puzzle, order, i, cycleStart, cycleOf)
+                        && !receivesOwnLetter(puzzle, order, next, cycleStart, cycleOf);
+
+                if (!repaired) {
+                    order[next] = cell;
+                } else {
+                    // keep the cells in use at the front of movable
+                    for (int k = 0; k < n; k++) {
+                        if (movable[k] == cell)
+                            movable[k] = movable[u];
+                    }
+                    movable[u] = cell;
+                }
+            }
+        }
+
+        int left = 0;
+        for (int i = 0; i < n; i++) {
+            if (receivesOwnLetter(puzzle, order, i, cycleStart, cycleOf))
+                left++;
+        }
+
+        return left;
+    }
+
+    /**
+     * Arranges the cells in cycles so that no cell receives the letter it
+     * wants, whenever no letter fills more than half of the cells. The cells
+     * are picked taking each letter in turn, sorted with the most common letter
+     * first and dealt to the even positions and then to the odd ones, and the
+     * cycles are cut there with even lengths; two equal letters then never
+     * follow each other in a cycle. With an odd number of cells, one cell of
+     * the rarest letter is set aside and then put back between two cells of
+     * other letters.
+     *
+     * @param puzzle     the puzzle
+     * @param movable    the movable cells; reordered
+     * @param m          the number of movable cells
+     * @param order      filled with the cells, in cycle order
+     * @param cycles     the number of cycles
+     * @param cycleStart filled with the first position of each cycle, and the
+     *                   number of cells at the end
+     * @param cycleOf    filled with the cycle of each position
+     * @requires {@code 2 * cycles <= order.length}
+     * @return true if no cell receives the letter it wants, false if the
+     *         letters do not allow it
+     */
+    private boolean interleaveLetters(Puzzle puzzle, int[] movable, int m, int[] order, int cycles,
+            int[] cycleStart, int[] cycleOf) {
+        int n = order.length;
+        int[] available = new int[26];
+        int[] picked = new int[26];
+
+        for (int u = 0; u < m; u++)
+            available[puzzle.letterInCell(movable[u])]++;
+
+        // take one cell of each letter in turn, so no letter fills more than it must
+        for (int taken = 0, letter = 0; taken < n; letter = (letter + 1) % 26) {
+            if (picked[letter] < available[letter]) {
+                picked[letter]++;
+                taken++;
+            }
+        }
+
+        int[] letters = new int[26];
+        for (int i = 0; i < 26; i++) {
+            letters[i] = i;
+
+            if (2 * picked[i] > n)
+                return false;
+        }
+
+        // sort the letters by how many of their cells are picked, most first
+        for (int i = 1; i < 26; i++) {
+            for (int j = i; j > 0 && picked[letters[j]] > picked[letters[j - 1]]; j--) {
+                int letter = letters[j];
+
+                letters[j] = letters[j - 1];
+                letters[j - 1] = letter;
+            }
+        }
+
+        int[] next = new int[26];
+        int rarest = letters[0];
+        for (int i = 0, from = 0; i < 26; i++) {
+            next[letters[i]] = from;
+            from += picked[letters[i]];
+
+            if (picked[letters[i]] > 0)
+                rarest = letters[i];
+        }
+
+        // the rarest letter comes last, so the cell set aside leaves no gap
+        int[] sorted = new int[n];
+        int aside = -1;
+        for (int u = 0; u < m; u++) {
+            int letter = puzzle.letterInCell(movable[u]);
+
+            if (picked[letter] == 0)
+                continue;
+
+            picked[letter]--;
+            if (n % 2 == 1 && letter == rarest && aside < 0)
+                aside = movable[u];
+            else
+                sorted[next[letter]++] = movable[u];
+        }
+
+        int even = n - n % 2;
+        for (int a = 0; a < even / 2; a++) {
+            order[2 * a] = sorted[a];
+            order[2 * a + 1] = sorted[even / 2 + a];
+        }
+
+        int[] lengths = new int[cycles];
+        for (int c = 0; c < cycles; c++)
+            lengths[c] = 2;
+        for (int extra = even - 2 * cycles; extra > 0; extra -= 2)
+            lengths[this.rand.nextInt(cycles)] += 2;
+
+        for (int c = 0, from = 0; c < cycles; c++) {
+            cycleStart[c] = from;
+
+            for (int i = 0; i < lengths[c]; i++)
+                cycleOf[from + i] = c;
+
+            from += lengths[c];
+        }
+        cycleStart[cycles] = even;
+
+        if (aside >= 0) {
+            int letter = puzzle.letterInCell(aside);
+            int p = 0;
+
+            while (puzzle.letterInCell(order[p]) == letter
+                    || puzzle.letterInCell(order[successor(p, cycleStart, cycleOf)]) == letter)
+                p++;
+
+            // put the cell set aside right after p, in the cycle of p
+            int c = cycleOf[p];
+            for (int i = even; i > p + 1; i--) {
+                order[i] = order[i - 1];
+                cycleOf[i] = cycleOf[i - 1];
+            }
+            order[p + 1] = aside;
+            cycleOf[p + 1] = c;
+
+            for (int d = c + 1; d <= cycles; d++)
+                cycleStart[d]++;
+        }
+
+        for (int i = 0; i < n; i++) {
+            if (receivesOwnLetter(puzzle, order, i, cycleStart, cycleOf))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the position that comes before the given one in its cycle
+     *
+     * @param i          the position
+     * @param cycleStart the first position of each cycle
+     * @param cycleOf    the cycle of each position
+     * @return the position that comes before the given one in its cycle
+     */
+    private static int predecessor(int i, int[] cycleStart, int[] cycleOf) {
+        int c = cycleOf[i];
+
+        return i > cycleStart[c] ? i - 1 : cycleStart[c + 1] - 1;
+    }
+
+    /**
+     * Returns the solved grid of the given puzzle
+     *
+     * @param puzzle the puzzle
+     * @return a new matrix with the solved grid of the given puzzle
+     */
+    private static char[][] solvedGrid(Puzzle puzzle) {
+        BoardLayout layout = puzzle.layout();
+        int size = layout.size();
+        char[][] grid = new char[size][size];
+
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int cell = layout.cellAt(i, j);
+
+                grid[i][j] = cell < 0 ? '*' : (char) ('A' + puzzle.letterInCell(cell));
+            }
+        }
+
+        return grid;
+    }
+}
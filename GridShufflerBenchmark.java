@@ -0,0 +1,98 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * GridShufflerBenchmark
+ *
+ * Times GridShuffler on random puzzles and checks every grid: how many swaps
+ * it takes to solve, and whether some letter off the diagonals is already in
+ * its place. Such a letter is only allowed when one letter fills more than
+ * half of the cells off the diagonals; any other exits with status 1. Usage:
+ * {@code java GridShufflerBenchmark [grids per size] [letters] [largest size]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class GridShufflerBenchmark {
+
+    public static void main(String[] args) {
+        int grids = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int letters = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        int maxSize = args.length > 2 ? Integer.parseInt(args[2]) : 7;
+        Random rand = new Random(2023);
+        GridShuffler shuffler = new GridShuffler(2023);
+
+        for (int size = 5; size <= maxSize; size += 2) {
+            Puzzle[] puzzles = new Puzzle[grids];
+            for (int i = 0; i < grids; i++)
+                puzzles[i] = WaffleSolverBenchmark.randomPuzzle(size, letters, rand);
+
+            // warm up
+            for (int i = 0; i < Math.min(grids, 2_000); i++)
+                shuffler.shuffle(puzzles[i]);
+
+            long[] times = new long[grids];
+            int exact = 0;
+            int green = 0;
+            int avoidable = 0;
+
+            for (int i = 0; i < grids; i++) {
+                long start = System.nanoTime();
+                char[][] grid = shuffler.shuffle(puzzles[i]);
+                times[i] = System.nanoTime() - start;
+
+                if (WaffleSolver.minSwaps(puzzles[i], grid) == puzzles[i].shuffleSwaps())
+                    exact++;
+
+                WaffleGame game = new WaffleGame(puzzles[i], grid);
+                BoardLayout layout = puzzles[i].layout();
+                for (int k = 0; k < layout.nrCells(); k++) {
+                    if (!layout.isDiagonal(k)
+                            && game.clue(layout.row(k) + 1, layout.col(k) + 1) == LetterStatus.CORRECT_POS)
+                        green++;
+                }
+
+                if (!GridShuffler.greenFree(puzzles[i], grid) && !mostlyOneLetter(puzzles[i]))
+                    avoidable++;
+            }
+
+            Arrays.sort(times);
+            System.out.printf("%dx%d: %d grids, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                    size, size, grids, Arrays.stream(times).average().orElse(0) / 1e6,
+                    times[grids / 2] / 1e6, times[grids * 99 / 100] / 1e6, times[grids - 1] / 1e6);
+            System.out.printf("      %d grids at exactly shuffleSwaps(), %d letters green off the diagonals, "
+                    + "%d grids with avoidable ones%n", exact, green, avoidable);
+
+            if (avoidable > 0)
+                System.exit(1);
+        }
+    }
+
+    /**
+     * Tells whether one letter fills more than half of the cells off the
+     * diagonals of a puzzle, so that some of them must stay green
+     *
+     * @param puzzle the puzzle
+     * @return true if one letter fills more than half of the cells off the
+     *         diagonals
+     */
+    private static boolean mostlyOneLetter(Puzzle puzzle) {
+        BoardLayout layout = puzzle.layout();
+        int[] counts = new int[26];
+        int movable = 0;
+
+        for (int k = 0; k < layout.nrCells(); k++) {
+            if (!layout.isDiagonal(k)) {
+                counts[puzzle.letterInCell(k)]++;
+                movable++;
+            }
+        }
+
+        for (int count : counts) {
+            if (2 * count > movable)
+                return true;
+        }
+
+        return false;
+    }
+}
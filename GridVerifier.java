@@ -0,0 +1,115 @@
+/**
+ * GridVerifier
+ *
+ * Checks that a shuffled grid is fair: that it can be solved within the swaps
+ * a player has, {@code puzzle.shuffleSwaps() + WaffleGame.EXTRA_SWAPS}, and
+ * leaves neither too few nor too many of them spare. The exact minimum number
+ * of swaps to the solution, repeated letters included, comes from
+ * {@link WaffleSolver}, in a fraction of the time shuffling the grid took; a
+ * grid that surely takes too many swaps is rejected without searching. On
+ * boards far larger than 7x7 the solver may only bound that number, and a
+ * grid whose bounds straddle an end of the band is undecided, and so not
+ * accepted.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class GridVerifier {
+
+    /**
+     * What a verifier makes of a grid
+     */
+    public enum Verdict {
+        ACCEPTED, NOT_A_SHUFFLE, TOO_EASY, TOO_HARD, UNDECIDED
+    }
+
+    // accepts every grid that can be solved in time
+    public static final GridVerifier SOLVABLE = new GridVerifier(0, Integer.MAX_VALUE);
+
+    private final int minSpare;
+    private final int maxSpare;
+
+    /**
+     * Creates a verifier that accepts the grids that leave a number of spare
+     * swaps within the given band, when solved with the fewest swaps
+     *
+     * @param minSpare the fewest spare swaps; 0 accepts the grids solved with
+     *                 the last swap
+     * @param maxSpare the most spare swaps; {@code WaffleGame.EXTRA_SWAPS}
+     *                 only accepts grids that take at least
+     *                 {@code shuffleSwaps()} swaps
+     * @requires {@code minSpare >= 0 && minSpare <= maxSpare}
+     */
+    public GridVerifier(int minSpare, int maxSpare) {
+        this.minSpare = minSpare;
+        this.maxSpare = maxSpare;
+    }
+
+    /**
+     * Returns the fewest spare swaps of an accepted grid
+     *
+     * @return the fewest spare swaps of an accepted grid
+     */
+    public int minSpare() {
+        return this.minSpare;
+    }
+
+    /**
+     * Returns the most spare swaps of an accepted grid
+     *
+     * @return the most spare swaps of an accepted grid
+     */
+    public int maxSpare() {
+        return this.maxSpare;
+    }
+
+    /**
+     * Tells whether the given grid of the given puzzle is accepted
+     *
+     * @param puzzle the puzzle
+     * @param grid   the grid
+     * @return true if {@code verify(puzzle, grid) == Verdict.ACCEPTED}
+     */
+    public boolean accepts(Puzzle puzzle, char[][] grid) {
+        return verify(puzzle, grid) == Verdict.ACCEPTED;
+    }
+
+    /**
+     * Checks the given grid of the given puzzle
+     *
+     * @param puzzle the puzzle
+     * @param grid   the grid
+     * @return NOT_A_SHUFFLE if {@code !WaffleGame.validGrid(puzzle, grid)};
+     *         TOO_EASY or TOO_HARD if it leaves more or fewer spare swaps than
+     *         the band allows; ACCEPTED if it leaves a number within the band;
+     *         UNDECIDED if that number could not be found exactly and may be
+     *         either
+     */
+    public Verdict verify(Puzzle puzzle, char[][] grid) {
+        if (!WaffleGame.validGrid(puzzle, grid))
+            return Verdict.NOT_A_SHUFFLE;
+
+        BoardLayout layout = puzzle.layout();
+        byte[] cells = new byte[layout.nrCells()];
+
+        for (int k = 0; k < cells.length; k++) {
+            cells[k] = (byte) (grid[layout.row(k)][layout.col(k)] - 'A');
+            if (cells[k] < 0 || cells[k] > 25)
+                return Verdict.NOT_A_SHUFFLE;
+        }
+
+        int maxSwaps = puzzle.shuffleSwaps() + WaffleGame.EXTRA_SWAPS;
+        long bounds = WaffleSolver.swapBounds(puzzle, cells, maxSwaps - this.minSpare);
+        int lower = (int) (bounds >>> 32);
+        int upper = (int) bounds;
+
+        if (maxSwaps - lower < this.minSpare)
+            return Verdict.TOO_HARD;
+        if (maxSwaps - upper > this.maxSpare)
+            return Verdict.TOO_EASY;
+        if (maxSwaps - upper >= this.minSpare && maxSwaps - lower <= this.maxSpare)
+            return Verdict.ACCEPTED;
+
+        return Verdict.UNDECIDED;
+    }
+}
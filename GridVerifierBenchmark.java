@@ -0,0 +1,84 @@
+import java.util.Random;
+
+/**
+ * GridVerifierBenchmark
+ *
+ * Shuffles grids of random puzzles of every size and verifies them, and
+ * reports how long each takes, how many grids fall in each band of spare
+ * swaps and how many the solver could only bound. Few distinct letters make
+ * the shuffler often miss {@code shuffleSwaps()}, so those are the
+ * interesting runs. Usage:
+ * {@code java GridVerifierBenchmark [grids per size] [letters]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class GridVerifierBenchmark {
+
+    public static void main(String[] args) {
+        int grids = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int letters = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        Random rand = new Random(2023);
+        GridVerifier exact = new GridVerifier(WaffleGame.EXTRA_SWAPS, WaffleGame.EXTRA_SWAPS);
+        GridVerifier fair = new GridVerifier(WaffleGame.EXTRA_SWAPS, WaffleGame.EXTRA_SWAPS + 2);
+
+        // the first round over every size only warms up
+        for (int round = 0; round < 2; round++) {
+            if (round == 1)
+                System.out.println(" size  shuffle us  verify us  verify/shuffle  solvable  spare 5..7  spare 5  undecided");
+
+            for (int size = BoardLayout.MIN_SIZE; size <= BoardLayout.MAX_SIZE; size += 2)
+                run(size, round == 0 ? grids / 4 : grids, letters, rand, exact, fair, round == 1);
+        }
+    }
+
+    /**
+     * Shuffles and verifies grids of one size
+     *
+     * @param size    the length of each word
+     * @param grids   how many grids
+     * @param letters how many distinct letters the puzzles use
+     * @param rand    the random generator
+     * @param exact   a verifier of grids that take exactly shuffleSwaps()
+     * @param fair    a verifier of grids that take up to two swaps less
+     * @param print   whether to print the results
+     */
+    private static void run(int size, int grids, int letters, Random rand, GridVerifier exact, GridVerifier fair,
+            boolean print) {
+        Puzzle[] puzzles = new Puzzle[grids];
+        char[][][] shuffled = new char[grids][][];
+        GridShuffler shuffler = new GridShuffler(2023);
+        int[] counts = new int[4];
+
+        for (int i = 0; i < grids; i++)
+            puzzles[i] = WaffleSolverBenchmark.randomPuzzle(size, letters, rand);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < grids; i++)
+            shuffled[i] = shuffler.shuffle(puzzles[i]);
+        double shuffleNanos = (System.nanoTime() - start) / (double) grids;
+
+        start = System.nanoTime();
+        for (int i = 0; i < grids; i++) {
+            if (GridVerifier.SOLVABLE.accepts(puzzles[i], shuffled[i]))
+                counts[0]++;
+        }
+        double verifyNanos = (System.nanoTime() - start) / (double) grids;
+
+        for (int i = 0; i < grids; i++) {
+            GridVerifier.Verdict verdict = exact.verify(puzzles[i], shuffled[i]);
+
+            if (fair.accepts(puzzles[i], shuffled[i]))
+                counts[1]++;
+            if (verdict == GridVerifier.Verdict.ACCEPTED)
+                counts[2]++;
+            if (verdict == GridVerifier.Verdict.UNDECIDED)
+                counts[3]++;
+        }
+
+        if (print)
+            System.out.printf("%5d %11.1f %10.1f %15.2f %8.1f%% %10.1f%% %7.1f%% %9.1f%%%n", size,
+                    shuffleNanos / 1e3, verifyNanos / 1e3, verifyNanos / shuffleNanos, 100.0 * counts[0] / grids,
+                    100.0 * counts[1] / grids, 100.0 * counts[2] / grids, 100.0 * counts[3] / grids);
+    }
+}
@@ -0,0 +1,134 @@
+import java.util.Random;
+
+/**
+ * HintBenchmark
+ *
+ * Times a hint on shuffled games of random puzzles of every size, both with
+ * {@code hint()} and by trying every pair of swappable positions with
+ * {@code swappablePosition} and {@code clue}, and checks that every hint puts
+ * at least one letter in place, and two whenever some swap does. The hints
+ * are timed with a swap between them, so the index is updated as in a game.
+ * Usage: {@code java HintBenchmark [games per size]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class HintBenchmark {
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Random rand = new Random(2023);
+
+        // the first round over every size only warms up
+        for (int round = 0; round < 2; round++) {
+            if (round == 1)
+                System.out.println(" size  search us   hint us  search/hint  fixing two  wrong");
+
+            for (int size = BoardLayout.MIN_SIZE; size <= BoardLayout.MAX_SIZE; size += 2)
+                run(size, games, rand, round == 1);
+        }
+    }
+
+    /**
+     * Times and checks hints on games of one size
+     *
+     * @param size  the length of each word
+     * @param games how many games
+     * @param rand  the random generator
+     * @param print whether to print the results
+     */
+    private static void run(int size, int games, Random rand, boolean print) {
+        GridShuffler shuffler = new GridShuffler(rand.nextLong());
+        long searchNanos = 0;
+        long hintNanos = 0;
+        int hints = 0;
+        int fixingTwo = 0;
+        int wrong = 0;
+
+        for (int g = 0; g < games; g++) {
+            Puzzle puzzle = WaffleSolverBenchmark.randomPuzzle(size, 12, rand);
+            WaffleGame game = new WaffleGame(puzzle, shuffler.shuffle(puzzle));
+
+            while (!game.puzzleFound()) {
+                long start = System.nanoTime();
+                int best = bestFix(game, size);
+                searchNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int[] hint = game.hint();
+                hintNanos += System.nanoTime() - start;
+                hints++;
+
+                int fixed = fixes(game, hint);
+                if (fixed == 2)
+                    fixingTwo++;
+                if (fixed < 1 || fixed < best)
+                    wrong++;
+
+                game.swap(hint[0], hint[1], hint[2], hint[3]);
+            }
+        }
+
+        if (print)
+            System.out.printf("%5d %10.2f %9.3f %12.0f %10.1f%% %6d%n", size, searchNanos / 1000.0 / hints,
+                    hintNanos / 1000.0 / hints, searchNanos / (double) hintNanos, 100.0 * fixingTwo / hints, wrong);
+    }
+
+    /**
+     * Returns how many letters the best swap puts in place, trying every pair
+     * of swappable positions
+     *
+     * @param game the game
+     * @param size the length of each word
+     * @return how many letters the best swap puts in place
+     */
+    private static int bestFix(WaffleGame game, int size) {
+        int best = 0;
+
+        for (int row1 = 1; row1 <= size; row1++) {
+            for (int col1 = 1; col1 <= size; col1++) {
+                if (!game.swappablePosition(row1, col1))
+                    continue;
+
+                for (int row2 = row1; row2 <= size; row2++) {
+                    for (int col2 = row2 == row1 ? col1 + 1 : 1; col2 <= size; col2++) {
+                        // equal letters fix nothing, and their swap is not logged
+                        if (!game.swappablePosition(row2, col2)
+                                || game.letterAt(row1, col1) == game.letterAt(row2, col2))
+                            continue;
+
+                        game.swap(row1, col1, row2, col2);
+                        int fixed = (game.clue(row1, col1) == LetterStatus.CORRECT_POS ? 1 : 0)
+                                + (game.clue(row2, col2) == LetterStatus.CORRECT_POS ? 1 : 0);
+                        game.undo();
+
+                        best = Math.max(best, fixed);
+                    }
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Returns how many letters the given swap puts in place
+     *
+     * @param game the game
+     * @param hint the swap, as returned by {@code hint()}
+     * @return how many letters the swap puts in place, or -1 if it is not a
+     *         swap of two swappable positions
+     */
+    private static int fixes(WaffleGame game, int[] hint) {
+        if (!game.swappablePosition(hint[0], hint[1]) || !game.swappablePosition(hint[2], hint[3])
+                || game.letterAt(hint[0], hint[1]) == game.letterAt(hint[2], hint[3]))
+            return -1;
+
+        game.swap(hint[0], hint[1], hint[2], hint[3]);
+        int fixed = (game.clue(hint[0], hint[1]) == LetterStatus.CORRECT_POS ? 1 : 0)
+                + (game.clue(hint[2], hint[3]) == LetterStatus.CORRECT_POS ? 1 : 0);
+        game.undo();
+
+        return fixed;
+    }
+}
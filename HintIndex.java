@@ -0,0 +1,152 @@
+import java.util.Arrays;
+
+/**
+ * HintIndex
+ *
+ * Keeps the misplaced cells of a game grouped by the letter each one holds and
+ * the letter it wants, so that a swap that puts letters in place can be found
+ * without looking at the board. Each group is a linked list threaded through
+ * arrays indexed by cell, and for each letter a bitmask tells which groups are
+ * not empty, so moving a letter updates the index in constant time and a hint
+ * only looks at the 26 letters, whatever the size of the board.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+final class HintIndex {
+
+    private static final short NONE = -1;
+
+    private final Puzzle puzzle;
+    // the first cell of each group, indexed by have * 26 + want
+    private final short[] heads;
+    private final short[] next;
+    private final short[] previous;
+    // wants[a] has bit b set if a misplaced cell holds a and wants b
+    private final int[] wants;
+    // wantedFrom[b] has bit a set if a misplaced cell holds a and wants b
+    private final int[] wantedFrom;
+
+    /**
+     * Creates the index of the misplaced cells of the given letters
+     *
+     * @param puzzle the puzzle
+     * @param cells  the letters of the board, one per cell of the layout of
+     *               the puzzle
+     */
+    HintIndex(Puzzle puzzle, byte[] cells) {
+        this.puzzle = puzzle;
+        this.heads = new short[26 * 26];
+        this.next = new short[cells.length];
+        this.previous = new short[cells.length];
+        this.wants = new int[26];
+        this.wantedFrom = new int[26];
+
+        Arrays.fill(this.heads, NONE);
+
+        for (int k = 0; k < cells.length; k++) {
+            if (cells[k] != puzzle.letterInCell(k))
+                add(k, cells[k], puzzle.letterInCell(k));
+        }
+    }
+
+    /**
+     * Updates the index after the letter in a cell changed
+     *
+     * @param cell   the cell
+     * @param before the letter the cell held
+     * @param after  the letter the cell holds now
+     */
+    void moved(int cell, int before, int after) {
+        int want = this.puzzle.letterInCell(cell);
+
+        if (before != want)
+            remove(cell, before, want);
+        if (after != want)
+            add(cell, after, want);
+    }
+
+    /**
+     * Returns a swap that puts two letters in place if there is one, or else
+     * one that puts one letter in place and takes none out of place
+     *
+     * @return the two cells of the swap, the first in the lower 16 bits and the
+     *         second in the upper ones, or -1 if no letter is misplaced
+     */
+    int hint() {
+        int any = -1;
+
+        for (int a = 0; a < 26; a++) {
+            if (this.wants[a] == 0)
+                continue;
+
+            // a cell holding a wants b, and another holding b wants a
+            int pairs = this.wants[a] & this.wantedFrom[a];
+
+            if (pairs != 0) {
+                int b = Integer.numberOfTrailingZeros(pairs);
+
+                return this.heads[a * 26 + b] | this.heads[b * 26 + a] << 16;
+            }
+
+            if (any < 0)
+                any = a;
+        }
+
+        if (any < 0)
+            return -1;
+
+        // some misplaced cell holds the letter the first one wants, since every
+        // letter is held as many times as it is wanted
+        int b = Integer.numberOfTrailingZeros(this.wants[any]);
+        int c = Integer.numberOfTrailingZeros(this.wants[b]);
+
+        return this.heads[any * 26 + b] | this.heads[b * 26 + c] << 16;
+    }
+
+    /**
+     * Adds a misplaced cell to its group
+     *
+     * @param cell the cell
+     * @param have the letter it holds
+     * @param want the letter it wants
+     */
+    private void add(int cell, int have, int want) {
+        int group = have * 26 + want;
+        short head = this.heads[group];
+
+        this.next[cell] = head;
+        this.previous[cell] = NONE;
+        if (head != NONE)
+            this.previous[head] = (short) cell;
+        this.heads[group] = (short) cell;
+
+        this.wants[have] |= 1 << want;
+        this.wantedFrom[want] |= 1 << have;
+    }
+
+    /**
+     * Removes a cell from its group
+     *
+     * @param cell the cell
+     * @param have the letter it held
+     * @param want the letter it wants
+     */
+    private void remove(int cell, int have, int want) {
+        int group = have * 26 + want;
+        short next = this.next[cell];
+        short previous = this.previous[cell];
+
+        if (previous != NONE)
+            this.next[previous] = next;
+        else
+            this.heads[group] = next;
+        if (next != NONE)
+            this.previous[next] = previous;
+
+        if (this.heads[group] == NONE) {
+            this.wants[have] &= ~(1 << want);
+            this.wantedFrom[want] &= ~(1 << have);
+        }
+    }
+}
@@ -1,4 +1,5 @@
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Puzzle
@@ -11,90 +12,53 @@ public class Puzzle {
     private final int size;
     private final String[] hWords;
     private final String[] vWords;
+    private final BoardLayout layout;
+    private final byte[] solution;
+    private final byte[] wordLetters;
 
     /**
-     * Returns a grid filled with the words in hWords and vWords
+     * Returns the letters of the solved board, one per cell of the layout, coded
+     * from 0 ('A') to 25 ('Z')
      * 
-     * @param size   the length of each word
+     * @param layout the layout of the board
      * @param hWords a valid array of horizontal words
      * @param vWords a valid array of vertical words
-     * @requires {@code validWords(size, hWords, vWords)}
-     * @return a grid filled with the words in hWords and vWords
+     * @requires {@code validWords(layout.size(), hWords, vWords)}
+     * @return the letters of the solved board
      */
-    private static char[][] fillGrid(int size, String[] hWords, String[] vWords) {
-        char[][] grid = new char[size][size];
-
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (i % 2 != 0 && j % 2 != 0)
-                    grid[i][j] = '*';
-
-                if (i < (size + 1) / 2) {
-                    grid[2 * i][j] = hWords[i].charAt(j);
-                    grid[j][2 * i] = vWords[i].charAt(j);
-                }
-            }
-        }
+    private static byte[] solutionCells(BoardLayout layout, String[] hWords, String[] vWords) {
+        byte[] cells = new byte[layout.nrCells()];
 
-        return grid;
-    }
+        for (int k = 0; k < cells.length; k++) {
+            int word = layout.horizontalWord(k);
 
-    /**
-     * Checks if the given coordinates belong to a diagonal
-     * 
-     * @param k    the row
-     * @param l    the column
-     * @param size the length of each word in the grid
-     * @return true if the coordinates belong to a diagonal and false otherwise
-     */
-    private static boolean isDiagonal(int k, int l, int size) {
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (i != j && (i + j) != size - 1) {
-                    if (i == k && j == l)
-                        return false;
-                }
-            }
+            if (word >= 0)
+                cells[k] = (byte) (hWords[word].charAt(layout.indexInHorizontalWord(k)) - 'A');
+            else
+                cells[k] = (byte) (vWords[layout.verticalWord(k) - hWords.length]
+                        .charAt(layout.indexInVerticalWord(k)) - 'A');
         }
 
-        return true;
+        return cells;
     }
 
     /**
-     * Return a valid correct random position
+     * Returns how many times each letter appears in each word of the solved board
      * 
-     * @param size the length of each word in the grid
-     * @ensures the coordinates do not belong to a diagonal; the position is
-     *          contains a letter in the correct position
-     * @return a valid correct random position
+     * @param layout   the layout of the board
+     * @param solution the letters of the solved board
+     * @return an array where the entry {@code word * 26 + letter} holds the
+     *         number of times the letter appears in the word
      */
-    private static int[] getRandomCorrectPosition(int size, char[][] grid, String[] hWords, String[] vWords) {
-        int i, j;
-        boolean valid = false;
-
-        Puzzle puzzle = new Puzzle(size, hWords, vWords);
-        Random rand = new Random();
-        WaffleGame game = new WaffleGame(puzzle, grid);
-
-        do {
-            i = rand.nextInt(size);
-            j = rand.nextInt(size);
-
-            if (i % 2 == 0 || j % 2 == 0) {
-                if (i != j && (i + j) != (size - 1)) {
-                    if (game.clue(j + 1, i + 1) == LetterStatus.CORRECT_POS) {
-                        valid = true;
-                    }
-                } else {
-                    i = rand.nextInt(size);
-                    j = rand.nextInt(size);
-                }
-            }
-        } while (!valid);
+    private static byte[] countWordLetters(BoardLayout layout, byte[] solution) {
+        byte[] counts = new byte[layout.nrWords() * 26];
+
+        for (int w = 0; w < layout.nrWords(); w++) {
+            for (int i = 0; i < layout.size(); i++)
+                counts[w * 26 + solution[layout.wordCell(w, i)]]++;
+        }
 
-        return new int[] {
-                i, j
-        };
+        return counts;
     }
 
     /**
@@ -108,7 +72,7 @@ public class Puzzle {
      * @return true if all the words are valid and false otherwise
      */
     public static boolean validWords(int size, String[] hWords, String[] vWords) {
-        if (size % 2 == 0 || size < 5 || size > 7)
+        if (size % 2 == 0 || size < BoardLayout.MIN_SIZE || size > BoardLayout.MAX_SIZE)
             return false;
 
         if (hWords.length != (size + 1) / 2 || vWords.length != (size + 1) / 2)
@@ -156,11 +120,143 @@ public class Puzzle {
      * @param size   the length of each word
      * @param hWords a valid array of horizontal words
      * @param vWords a valid array of vertical words
+     * @requires {@code validWords(size, hWords, vWords)}
      */
     public Puzzle(int size, String[] hWords, String[] vWords) {
-        this.size = size;
+        this(BoardLayout.of(size), hWords, vWords, solutionCells(BoardLayout.of(size), hWords, vWords));
+    }
+
+    /**
+     * Creates a new puzzle with the given words and solved board
+     * 
+     * @param layout   the layout of the board
+     * @param hWords   the horizontal words
+     * @param vWords   the vertical words
+     * @param solution the letters of the solved board, kept by the puzzle
+     * @requires {@code solution} has the letters of the given words
+     */
+    private Puzzle(BoardLayout layout, String[] hWords, String[] vWords, byte[] solution) {
+        this.size = layout.size();
         this.hWords = hWords;
         this.vWords = vWords;
+        this.layout = layout;
+        this.solution = solution;
+        this.wordLetters = countWordLetters(layout, solution);
+    }
+
+    /**
+     * Creates the puzzle whose solved board has the given letters
+     *
+     * @param size     the length of each word
+     * @param solution the letters of the solved board, one per cell of
+     *                 {@code BoardLayout.of(size)}, coded from 0 ('A') to 25
+     *                 ('Z')
+     * @requires {@code size % 2 == 1 && size >= BoardLayout.MIN_SIZE && size <= BoardLayout.MAX_SIZE}
+     * @return the puzzle whose solved board has the given letters, built
+     *         without reading its words back
+     */
+    static Puzzle fromCells(int size, byte[] solution) {
+        BoardLayout layout = BoardLayout.of(size);
+        String[] hWords = new String[layout.nrWords() / 2];
+        String[] vWords = new String[layout.nrWords() / 2];
+        char[] word = new char[size];
+
+        for (int w = 0; w < layout.nrWords(); w++) {
+            for (int i = 0; i < size; i++)
+                word[i] = (char) ('A' + solution[layout.wordCell(w, i)]);
+
+            if (w < hWords.length)
+                hWords[w] = new String(word);
+            else
+                vWords[w - hWords.length] = new String(word);
+        }
+
+        return new Puzzle(layout, hWords, vWords, Arrays.copyOf(solution, layout.nrCells()));
+    }
+
+    /**
+     * Returns the puzzle whose horizontal words are the vertical words of this
+     * one and the other way round, the mirror of this one along its diagonal
+     * 
+     * @return the transpose of this puzzle
+     */
+    public Puzzle transpose() {
+        return new Puzzle(this.layout, this.vWords.clone(), this.hWords.clone(), transposedCells());
+    }
+
+    /**
+     * Returns the one of this puzzle and its transpose whose solved board,
+     * read row by row, comes first in alphabetical order, so that a puzzle and
+     * its transpose have the same canonical form
+     * 
+     * @return this puzzle or its transpose
+     */
+    public Puzzle canonical() {
+        return isCanonical() ? this : transpose();
+    }
+
+    /**
+     * Tells whether this puzzle is its own canonical form
+     * 
+     * @return true if the solved board of this puzzle, read row by row, does
+     *         not come after that of its transpose
+     */
+    boolean isCanonical() {
+        for (int k = 0; k < this.solution.length; k++) {
+            int mirror = this.solution[this.layout.cellAt(this.layout.col(k), this.layout.row(k))];
+
+            if (this.solution[k] != mirror)
+                return this.solution[k] < mirror;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the letters of the solved board of the transpose of this puzzle
+     * 
+     * @return the letters, one per cell of the layout
+     */
+    private byte[] transposedCells() {
+        byte[] cells = new byte[this.solution.length];
+
+        for (int k = 0; k < cells.length; k++)
+            cells[k] = this.solution[this.layout.cellAt(this.layout.col(k), this.layout.row(k))];
+
+        return cells;
+    }
+
+    /**
+     * Returns the layout of the board of this puzzle
+     * 
+     * @return the layout of the board of this puzzle
+     */
+    public BoardLayout layout() {
+        return this.layout;
+    }
+
+    /**
+     * Returns the letter that belongs in the given cell of the solved board
+     * 
+     * @param cell the cell index in {@code layout()}
+     * @requires {@code cell >= 0 && cell < layout().nrCells()}
+     * @return the letter that belongs in the given cell, coded from 0 ('A') to
+     *         25 ('Z')
+     */
+    byte letterInCell(int cell) {
+        return this.solution[cell];
+    }
+
+    /**
+     * Returns how many times a letter appears in a word of the solved board
+     * 
+     * @param word   the word index in {@code layout()}
+     * @param letter the letter, coded from 0 ('A') to 25 ('Z')
+     * @requires {@code word >= 0 && word < layout().nrWords()}
+     * @return how many times the letter appears in the word
+     */
+    int occurrencesInWord(int word, int letter) {
+        return this.wordLetters[word * 26 + letter];
     }
 
     /**
@@ -183,13 +279,17 @@ public class Puzzle {
 
     /**
      * Returns the number of swaps that must be made in the puzzle to obtain an
-     * initial grid
+     * initial grid: 10 for 5x5 and 20 for 7x7, growing by 5 per size, but
+     * from 11x11 up at least half the cells off the diagonals, so that every
+     * one of them can be moved
      * 
      * @return the number of swaps that must be made in the puzzle to obtain an
      *         initial grid
      */
     public int shuffleSwaps() {
-        return 5 * (this.size - 3);
+        int movable = this.layout.nrCells() - this.layout.nrDiagonalCells();
+
+        return Math.max(5 * (this.size - 3), (movable + 1) / 2);
     }
 
     /**
@@ -221,165 +321,22 @@ public class Puzzle {
     /**
      * Returns a matrix with the puzzle shuffled
      * 
-     * @return a matrix with the puzzle shuffled
+     * @return a matrix with the puzzle shuffled, which takes
+     *         {@code shuffleSwaps()} swaps to solve
      */
-    /* public char[][] getShuffledGrid() {
-        char[][] grid = fillGrid(this.size, this.hWords, this.vWords);
-
-        Random rand = new Random();
-
-        for (int i = 0; i < (this.size + 1) / 2; i++) {
-            int rowLetterIndex = rand.nextInt(this.size - 1);
-            int colLetterIndex = rand.nextInt(this.size - 1);
-
-            int k = 2 * i;
-
-            if (!isDiagonal(k, rowLetterIndex, this.size)) {
-                if (!isDiagonal(k, rowLetterIndex + 1, this.size)) {
-                    char temp = grid[k][rowLetterIndex];
-                    grid[k][rowLetterIndex] = grid[k][rowLetterIndex + 1];
-                    grid[k][rowLetterIndex + 1] = temp;
-                } else {
-                    char temp = grid[k][rowLetterIndex];
-                    grid[k][rowLetterIndex] = grid[k][rowLetterIndex - 1];
-                    grid[k][rowLetterIndex - 1] = temp;
-                }
-            }
-
-            if (!isDiagonal(colLetterIndex, k, this.size)) {
-                if (!isDiagonal(colLetterIndex + 1, k, this.size)) {
-                    char temp = grid[colLetterIndex + 1][k];
-                    grid[colLetterIndex][k] = grid[colLetterIndex + 1][k];
-                    grid[colLetterIndex + 1][k] = temp;
-                } else {
-                    char temp = grid[colLetterIndex][k];
-                    grid[colLetterIndex][k] = grid[colLetterIndex - 1][k];
-                    grid[colLetterIndex - 1][k] = temp;
-                }
-            }
-
-            int selectedLetters = 0;
-
-            while (selectedLetters < (this.size - 3) / 2) {
-                int col = rand.nextInt(this.size - 1);
-
-                if (!isDiagonal(k, col, this.size)) {
-                    char temp = grid[k][col];
-                    grid[k][col] = grid[col][k];
-                    grid[col][k] = temp;
-
-                    selectedLetters++;
-                }
-            }
-        }
-
-        return grid;
-    } */
+    public char[][] getShuffledGrid() {
+        return getShuffledGrid(ThreadLocalRandom.current().nextLong());
+    }
 
     /**
-     * Returns a matrix with the puzzle shuffled, with at least 80% of the swaps being between correct letters
+     * Returns a matrix with the puzzle shuffled, always the same for the same
+     * seed
      * 
-     * @return a matrix with the puzzle shuffled, with at least 80% of the swaps being between correct letters
+     * @param seed the seed
+     * @return a matrix with the puzzle shuffled, which takes
+     *         {@code shuffleSwaps()} swaps to solve
      */
-    public char[][] getShuffledGrid() {
-        char[][] grid = fillGrid(this.size, this.hWords, this.vWords);
-
-        Puzzle puzzle = new Puzzle(this.size, this.hWords, this.vWords);
-        Random rand = new Random();
-        WaffleGame game = new WaffleGame(puzzle, grid);
-
-        int correctSwaps = 0;
-
-        for (int i = 0; i < (this.size + 1) / 2; i++) {
-            int rowLetterIndex = rand.nextInt(this.size - 1);
-            int colLetterIndex = rand.nextInt(this.size - 1);
-
-            int k = 2 * i;
-
-            if (!isDiagonal(k, rowLetterIndex, this.size) 
-            && game.clue(k+1, rowLetterIndex+1) == LetterStatus.CORRECT_POS) {
-                if (!isDiagonal(k, rowLetterIndex + 1, this.size) 
-                && game.clue(k+1, rowLetterIndex+2) == LetterStatus.CORRECT_POS) {
-                    char temp = grid[k][rowLetterIndex];
-                    grid[k][rowLetterIndex] = grid[k][rowLetterIndex + 1];
-                    grid[k][rowLetterIndex + 1] = temp;
-
-                    correctSwaps++;
-                } else if (game.clue(k+1, rowLetterIndex) == LetterStatus.CORRECT_POS) {
-                    char temp = grid[k][rowLetterIndex];
-                    grid[k][rowLetterIndex] = grid[k][rowLetterIndex - 1];
-                    grid[k][rowLetterIndex - 1] = temp;
-
-                    correctSwaps++;
-                }
-            }
-
-            if (!isDiagonal(colLetterIndex, k, this.size) 
-            && game.clue(colLetterIndex+1, k+1) == LetterStatus.CORRECT_POS) {
-                if (!isDiagonal(colLetterIndex + 1, k, this.size) 
-                && game.clue(colLetterIndex+2, k+1) == LetterStatus.CORRECT_POS) {
-                    char temp = grid[colLetterIndex + 1][k];
-                    grid[colLetterIndex][k] = grid[colLetterIndex + 1][k];
-                    grid[colLetterIndex + 1][k] = temp;
-
-                    correctSwaps++;
-                } else if(game.clue(colLetterIndex, k+1) == LetterStatus.CORRECT_POS) {
-                    char temp = grid[colLetterIndex][k];
-                    grid[colLetterIndex][k] = grid[colLetterIndex - 1][k];
-                    grid[colLetterIndex - 1][k] = temp;
-
-                    correctSwaps++;
-                }
-            }
-
-            int selectedLetters = 0;
-
-            while (selectedLetters < (this.size - 3) / 2) {
-                int col = rand.nextInt(this.size - 1);
-
-                if (!isDiagonal(k, col, this.size)) {
-                    if (game.clue(k+1, col+1) == LetterStatus.CORRECT_POS && game.clue(col+1, k+1) == LetterStatus.CORRECT_POS) {
-                        char temp = grid[k][col];
-                        grid[k][col] = grid[col][k];
-                        grid[col][k] = temp;
-
-                        selectedLetters++;
-                        correctSwaps++;
-                    }
-                }
-            }
-        }
-
-        int totalSwaps = 100 * correctSwaps / 80;
-        int swapsLeft = totalSwaps - correctSwaps;
-
-        // does the normal shuffleSwap function simplified if make it as close as possible to 80% (always 80% or more correct swaps)
-        for (int i = 0; i < (this.size + 1) / 2; i++) {
-            if (swapsLeft < shuffleSwaps() - correctSwaps) {
-            
-                int rowLetterIndex = rand.nextInt(this.size - 1);
-    
-                int k = 2 * i;
-    
-                if (!isDiagonal(k, rowLetterIndex, this.size)) {
-                    if (!isDiagonal(k, rowLetterIndex + 1, this.size)) {
-                        char temp = grid[k][rowLetterIndex];
-                        grid[k][rowLetterIndex] = grid[k][rowLetterIndex + 1];
-                        grid[k][rowLetterIndex + 1] = temp;
-
-                        swapsLeft++;
-                    } else {
-                        char temp = grid[k][rowLetterIndex];
-                        grid[k][rowLetterIndex] = grid[k][rowLetterIndex - 1];
-                        grid[k][rowLetterIndex - 1] = temp;
-
-                        swapsLeft++;
-                    }
-                }
-            }
-        }
-
-        return grid;
-    } 
-
+    public char[][] getShuffledGrid(long seed) {
+        return new GridShuffler(seed).shuffle(this);
+    }
 }
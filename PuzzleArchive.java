@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * PuzzleArchive
+ *
+ * A catalogue of puzzles of one size kept in a file, each with the initial
+ * grid it is played from, read through a memory mapping of the file so that
+ * opening it loads nothing onto the heap and only the puzzles looked up are
+ * read. Every puzzle takes a record of the same length, so a puzzle is found
+ * by its ID, from 0, in constant time; the puzzle of a day is the one whose
+ * ID is the number of days since the first day of the archive.
+ *
+ * The file starts with a header of 32 bytes: a magic number, the version, the
+ * size of the boards, the length of a record, the number of puzzles, a
+ * reserved int and the first day, as a count of days since 1970-01-01. Each
+ * record holds the letters of the solved board and then those of the initial
+ * grid, five bits each in cell order, from the lowest bit of each byte up,
+ * padded to a whole byte; a 7x7 puzzle takes 50 bytes.
+ *
+ * An archive is never changed once opened, so it can be read by many threads
+ * at once.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class PuzzleArchive {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x57505A41;
+    private static final int HEADER = 32;
+
+    private final MappedByteBuffer records;
+    private final BoardLayout layout;
+    private final int recordBytes;
+    private final int count;
+    private final long firstDay;
+
+    /**
+     * Creates an archive over the given mapping of its file
+     *
+     * @param records  the mapping of the whole file
+     * @param size     the length of each word
+     * @param count    the number of puzzles
+     * @param firstDay the day of the puzzle with ID 0, in days since 1970-01-01
+     */
+    private PuzzleArchive(MappedByteBuffer records, int size, int count, long firstDay) {
+        this.records = records;
+        this.layout = BoardLayout.of(size);
+        this.recordBytes = recordBytes(this.layout);
+        this.count = count;
+        this.firstDay = firstDay;
+    }
+
+    /**
+     * Returns the length of a record for boards of the given layout
+     *
+     * @param layout the layout of the boards
+     * @return the length of a record, in bytes
+     */
+    private static int recordBytes(BoardLayout layout) {
+        return (2 * 5 * layout.nrCells() + 7) / 8;
+    }
+
+    /**
+     * Writes an archive of the given puzzles, replacing what the file held.
+     * Each puzzle gets an initial grid from a GridShuffler with the given seed.
+     *
+     * @param path     the file
+     * @param firstDay the day of the first puzzle
+     * @param puzzles  the puzzles, in the order of their IDs
+     * @param seed     the seed for shuffling the grids
+     * @requires {@code !puzzles.isEmpty()}
+     * @throws IllegalArgumentException if the puzzles are not all of the same
+     *                                  size
+     * @throws IOException              if the file cannot be written
+     */
+    public static void write(Path path, LocalDate firstDay, List<Puzzle> puzzles, long seed) throws IOException {
+        BoardLayout layout = puzzles.get(0).layout();
+        int nrCells = layout.nrCells();
+        int recordBytes = recordBytes(layout);
+        GridShuffler shuffler = new GridShuffler(seed);
+        byte[] record = new byte[recordBytes];
+        ByteBuffer out = ByteBuffer.allocate(Math.max(HEADER, 1024 * recordBytes));
+
+        out.putInt(MAGIC).putInt(VERSION).putInt(layout.size()).putInt(recordBytes).putInt(puzzles.size())
+                .putInt(0).putLong(firstDay.toEpochDay());
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Puzzle puzzle : puzzles) {
+                if (puzzle.layout() != layout)
+                    throw new IllegalArgumentException("puzzles of sizes " + layout.size() + " and " + puzzle.size());
+
+                char[][] grid = shuffler.shuffle(puzzle);
+
+                for (int k = 0; k < nrCells; k++)
+                    putLetter(record, k, puzzle.letterInCell(k));
+                for (int k = 0; k < nrCells; k++)
+                    putLetter(record, nrCells + k, grid[layout.row(k)][layout.col(k)] - 'A');
+
+                if (out.remaining() < recordBytes)
+                    flush(channel, out);
+                out.put(record);
+            }
+
+            flush(channel, out);
+        }
+    }
+
+    /**
+     * Opens an archive written by {@code write}
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be read or is not a valid archive
+     * @return the archive
+     */
+    public static PuzzleArchive open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+
+            if (fileSize < HEADER)
+                throw new IOException("not a puzzle archive");
+            if (fileSize > Integer.MAX_VALUE)
+                throw new IOException("puzzle archive too large to map");
+
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            int magic = records.getInt(0);
+            int version = records.getInt(4);
+            int size = records.getInt(8);
+            int recordBytes = records.getInt(12);
+            int count = records.getInt(16);
+
+            if (magic != MAGIC)
+                throw new IOException("not a puzzle archive");
+            if (version != VERSION)
+                throw new IOException("unsupported puzzle archive version " + version);
+            if (size % 2 == 0 || size < BoardLayout.MIN_SIZE || size > BoardLayout.MAX_SIZE
+                    || recordBytes != recordBytes(BoardLayout.of(size)))
+                throw new IOException("invalid puzzle archive header");
+            if (count < 0 || HEADER + (long) count * recordBytes > fileSize)
+                throw new IOException("puzzle archive ends before its " + count + " puzzles");
+
+            return new PuzzleArchive(records, size, count, records.getLong(24));
+        }
+    }
+
+    /**
+     * Returns the length of each word of the puzzles in the archive
+     *
+     * @return the length of each word
+     */
+    public int size() {
+        return this.layout.size();
+    }
+
+    /**
+     * Returns the number of puzzles in the archive
+     *
+     * @return the number of puzzles in the archive
+     */
+    public int count() {
+        return this.count;
+    }
+
+    /**
+     * Returns the day of the puzzle with ID 0
+     *
+     * @return the first day of the archive
+     */
+    public LocalDate firstDay() {
+        return LocalDate.ofEpochDay(this.firstDay);
+    }
+
+    /**
+     * Returns the ID of the puzzle of the given day
+     *
+     * @param day the day
+     * @throws NoSuchElementException if the archive has no puzzle for that day
+     * @return the ID of the puzzle of the given day
+     */
+    public int idOf(LocalDate day) {
+        long id = day.toEpochDay() - this.firstDay;
+
+        if (id < 0 || id >= this.count)
+            throw new NoSuchElementException("no puzzle for " + day);
+
+        return (int) id;
+    }
+
+    /**
+     * Returns the puzzle with the given ID
+     *
+     * @param id the ID
+     * @requires {@code id >= 0 && id < count()}
+     * @throws IllegalStateException if the record of the puzzle is not valid
+     * @return the puzzle with the given ID
+     */
+    public Puzzle puzzle(int id) {
+        return Puzzle.fromCells(size(), readLetters(id, 0));
+    }
+
+    /**
+     * Returns a new game of the puzzle with the given ID, from the initial grid
+     * kept with it
+     *
+     * @param id the ID
+     * @requires {@code id >= 0 && id < count()}
+     * @throws IllegalStateException if the record of the puzzle is not valid
+     * @return a new game of the puzzle with the given ID
+     */
+    public WaffleGame game(int id) {
+        int nrCells = this.layout.nrCells();
+        byte[] solution = readLetters(id, 0);
+        byte[] grid = readLetters(id, nrCells);
+        int[] counts = new int[26];
+
+        for (int k = 0; k < nrCells; k++) {
+            counts[solution[k]]++;
+            counts[grid[k]]--;
+        }
+        for (int c : counts) {
+            if (c != 0)
+                throw new IllegalStateException("the grid of puzzle " + id + " is not a shuffle of its solution");
+        }
+
+        return new WaffleGame(Puzzle.fromCells(size(), solution), grid);
+    }
+
+    /**
+     * Returns a new game of the puzzle of the given day
+     *
+     * @param day the day
+     * @throws NoSuchElementException if the archive has no puzzle for that day
+     * @throws IllegalStateException  if the record of the puzzle is not valid
+     * @return a new game of the puzzle of the given day
+     */
+    public WaffleGame game(LocalDate day) {
+        return game(idOf(day));
+    }
+
+    /**
+     * Reads one board of letters of a record
+     *
+     * @param id    the ID of the puzzle
+     * @param first the index in the record of the first letter to read
+     * @throws IllegalStateException if a letter is not valid
+     * @return the letters, one per cell of the layout
+     */
+    private byte[] readLetters(int id, int first) {
+        int start = HEADER + id * this.recordBytes;
+        byte[] letters = new byte[this.layout.nrCells()];
+
+        for (int k = 0; k < letters.length; k++) {
+            int bit = 5 * (first + k);
+            int at = start + (bit >>> 3);
+            int bits = this.records.get(at) & 0xFF;
+
+            // the letter spills into the next byte
+            if ((bit & 7) > 3)
+                bits |= (this.records.get(at + 1) & 0xFF) << 8;
+
+            letters[k] = (byte) (bits >>> (bit & 7) & 0x1F);
+            if (letters[k] > 25)
+                throw new IllegalStateException("invalid letter in puzzle " + id);
+        }
+
+        return letters;
+    }
+
+    /**
+     * Writes a letter in a record
+     *
+     * @param record the record
+     * @param i      the index of the letter in the record
+     * @param letter the letter, coded from 0 ('A') to 25 ('Z')
+     */
+    private static void putLetter(byte[] record, int i, int letter) {
+        int bit = 5 * i;
+        int at = bit >>> 3;
+        int bits = letter << (bit & 7);
+
+        // letters go in order, so each byte is written whole by the first letter in it
+        record[at] = (byte) ((bit & 7) == 0 ? bits : record[at] | bits);
+        if ((bit & 7) > 3)
+            record[at + 1] = (byte) (bits >>> 8);
+    }
+
+    /**
+     * Writes what a buffer holds to a channel and empties it
+     *
+     * @param channel the channel
+     * @param out     the buffer
+     * @throws IOException if the channel cannot be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+        out.clear();
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * PuzzleArchiveBenchmark
+ *
+ * Writes an archive of random puzzles, then times opening it and starting
+ * games from random IDs and days. It compares that with building each puzzle
+ * from its words and shuffling a grid for it, which is what starting a game
+ * costs without an archive. Usage:
+ * {@code java PuzzleArchiveBenchmark [puzzles] [size] [lookups]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class PuzzleArchiveBenchmark {
+
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+        int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        Random rand = new Random(2023);
+        List<Puzzle> puzzles = new ArrayList<>(count);
+        Path file = Files.createTempFile("puzzles", ".bin");
+        LocalDate firstDay = LocalDate.of(2023, 1, 1);
+
+        for (int i = 0; i < count; i++)
+            puzzles.add(WaffleSolverBenchmark.randomPuzzle(size, 12, rand));
+
+        try {
+            long start = System.nanoTime();
+
+            PuzzleArchive.write(file, firstDay, puzzles, 2023);
+            System.out.printf("%,d %dx%d puzzles written in %.2f s, %,d bytes%n", count, size, size,
+                    (System.nanoTime() - start) / 1e9, Files.size(file));
+
+            for (int round = 0; round < 5; round++) {
+                SplittableRandom ids = new SplittableRandom(round);
+
+                start = System.nanoTime();
+                PuzzleArchive archive = PuzzleArchive.open(file);
+                long opened = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < lookups; i++)
+                    sink += archive.game(ids.nextInt(count)).remainingSwaps();
+                long byId = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < lookups; i++)
+                    sink += archive.game(firstDay.plusDays(ids.nextInt(count))).remainingSwaps();
+                long byDay = System.nanoTime() - start;
+
+                // the same number of games without the archive is much slower, so only a tenth of them
+                int built = lookups / 10;
+
+                start = System.nanoTime();
+                for (int i = 0; i < built; i++) {
+                    Puzzle puzzle = puzzles.get(ids.nextInt(count));
+                    String[] hWords = new String[(size + 1) / 2];
+                    String[] vWords = new String[(size + 1) / 2];
+
+                    for (int w = 0; w < hWords.length; w++) {
+                        StringBuilder h = new StringBuilder();
+                        StringBuilder v = new StringBuilder();
+
+                        for (int j = 1; j <= size; j++) {
+                            h.append(puzzle.getLetterInHorizontalWord(j, w + 1));
+                            v.append(puzzle.getLetterInVerticalWord(j, w + 1));
+                        }
+
+                        hWords[w] = h.toString();
+                        vWords[w] = v.toString();
+                    }
+
+                    Puzzle copy = new Puzzle(size, hWords, vWords);
+
+                    sink += new WaffleGame(copy, copy.getShuffledGrid(i)).remainingSwaps();
+                }
+                long fromWords = System.nanoTime() - start;
+
+                System.out.printf("open %,7.0f us, by ID %,10.0f games/s, by day %,10.0f games/s,"
+                        + " from words and shuffled %,8.0f games/s%n", opened / 1e3, lookups * 1e9 / byId,
+                        lookups * 1e9 / byDay, built * 1e9 / fromWords);
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        if (sink == 42)
+            System.out.println();
+    }
+}
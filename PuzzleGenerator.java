@@ -0,0 +1,310 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PuzzleGenerator
+ *
+ * Searches a word list for sets of crossing words that make a valid puzzle.
+ * The words are placed in the order h1, v1, h2, v2, ... and the candidates for
+ * each one are the AND of the bitsets of the letters already fixed by the words
+ * it crosses. After each word every word still to be placed must have some
+ * candidate left, or the search backs off. The first horizontal word is split
+ * among the threads of a fork/join pool.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class PuzzleGenerator {
+
+    private static final int FIRST_WORDS_PER_TASK = 16;
+
+    private final WordIndex index;
+    private final int size;
+    private final int nrWords;
+
+    /**
+     * Creates a generator of puzzles whose words come from the given index
+     *
+     * @param index the index of the words, all of the puzzle size
+     * @requires {@code index.length() % 2 == 1 && index.length() >= 5}
+     */
+    public PuzzleGenerator(WordIndex index) {
+        this.index = index;
+        this.size = index.length();
+        this.nrWords = this.size + 1;
+    }
+
+    /**
+     * Generates distinct puzzles on the common fork/join pool
+     *
+     * @param count        how many puzzles to generate
+     * @param perFirstWord how many puzzles at most share the same first
+     *                     horizontal word
+     * @param seed         the seed of the order in which words are tried
+     * @requires {@code count <= DuplicateFilter.maxPuzzles(size)}, for the
+     *           length {@code size} of the words
+     * @return up to {@code count} distinct puzzles, no two the transpose of
+     *         each other, fewer if the word list does not have that many
+     */
+    public List<Puzzle> generate(int count, int perFirstWord, long seed) {
+        return generate(ForkJoinPool.commonPool(), count, perFirstWord, seed);
+    }
+
+    /**
+     * Generates distinct puzzles on the given fork/join pool
+     *
+     * @param pool         the pool
+     * @param count        how many puzzles to generate
+     * @param perFirstWord how many puzzles at most share the same first
+     *                     horizontal word
+     * @param seed         the seed of the order in which words are tried
+     * @requires {@code count <= DuplicateFilter.maxPuzzles(size)}, for the
+     *           length {@code size} of the words
+     * @return up to {@code count} distinct puzzles, no two the transpose of
+     *         each other, fewer if the word list does not have that many
+     */
+    public List<Puzzle> generate(ForkJoinPool pool, int count, int perFirstWord, long seed) {
+        int[] firstWords = new int[this.index.nrWords()];
+        SplittableRandom rand = new SplittableRandom(seed);
+
+        for (int i = 0; i < firstWords.length; i++) {
+            int j = rand.nextInt(i + 1);
+
+            firstWords[i] = firstWords[j];
+            firstWords[j] = i;
+        }
+
+        ConcurrentLinkedQueue<Puzzle> found = new ConcurrentLinkedQueue<>();
+        AtomicInteger remaining = new AtomicInteger(count);
+        DuplicateFilter unique = new DuplicateFilter(this.size, Math.max(1, count));
+
+        pool.invoke(new GenerateTask(firstWords, 0, firstWords.length, perFirstWord, seed, found, remaining,
+                unique));
+
+        List<Puzzle> puzzles = new ArrayList<>(found);
+        return puzzles.size() > count ? puzzles.subList(0, count) : puzzles;
+    }
+
+    /**
+     * Splits the first horizontal words among tasks until each task has a few
+     */
+    private final class GenerateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] firstWords;
+        private final int from;
+        private final int to;
+        private final int perFirstWord;
+        private final long seed;
+        private final ConcurrentLinkedQueue<Puzzle> found;
+        private final AtomicInteger remaining;
+        private final DuplicateFilter unique;
+
+        GenerateTask(int[] firstWords, int from, int to, int perFirstWord, long seed,
+                ConcurrentLinkedQueue<Puzzle> found, AtomicInteger remaining, DuplicateFilter unique) {
+            this.firstWords = firstWords;
+            this.from = from;
+            this.to = to;
+            this.perFirstWord = perFirstWord;
+            this.seed = seed;
+            this.found = found;
+            this.remaining = remaining;
+            this.unique = unique;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.remaining.get() <= 0)
+                return;
+
+            if (this.to - this.from > FIRST_WORDS_PER_TASK) {
+                int middle = (this.from + this.to) >>> 1;
+
+                invokeAll(new GenerateTask(this.firstWords, this.from, middle, this.perFirstWord, this.seed,
+                        this.found, this.remaining, this.unique),
+                        new GenerateTask(this.firstWords, middle, this.to, this.perFirstWord, this.seed,
+                                this.found, this.remaining, this.unique));
+                return;
+            }
+
+            Search search = new Search(new SplittableRandom(this.seed ^ this.from), this.found, this.remaining,
+                    this.unique);
+
+            for (int i = this.from; i < this.to && this.remaining.get() > 0; i++)
+                search.run(this.firstWords[i], this.perFirstWord);
+        }
+    }
+
+    /**
+     * The backtracking state of one thread
+     */
+    private final class Search {
+
+        private final SplittableRandom rand;
+        private final ConcurrentLinkedQueue<Puzzle> found;
+        private final AtomicInteger remaining;
+        // the puzzles found so far, shared by all threads, which lock it
+        private final DuplicateFilter unique;
+
+        // placed word of each slot; slot 2i is h(i+1) and slot 2i+1 is v(i+1)
+        private final int[] placed;
+        private final long[][] candidates;
+        private final long[] check;
+        private int budget;
+
+        Search(SplittableRandom rand, ConcurrentLinkedQueue<Puzzle> found, AtomicInteger remaining,
+                DuplicateFilter unique) {
+            this.rand = rand;
+            this.found = found;
+            this.remaining = remaining;
+            this.unique = unique;
+            this.placed = new int[PuzzleGenerator.this.nrWords];
+            this.candidates = new long[PuzzleGenerator.this.nrWords][index.longs()];
+            this.check = new long[index.longs()];
+        }
+
+        /**
+         * Looks for puzzles whose first horizontal word is the given one
+         *
+         * @param firstWord the first horizontal word
+         * @param limit     how many puzzles to look for at most
+         */
+        void run(int firstWord, int limit) {
+            this.placed[0] = firstWord;
+            this.budget = limit;
+
+            if (canComplete(1))
+                place(1);
+        }
+
+        /**
+         * Fills the given bitset with the candidates for a slot, given the
+         * words placed in the slots before {@code placedSlots}
+         *
+         * @param slot        the slot
+         * @param placedSlots the number of slots already placed
+         * @param set         the bitset
+         * @return true if there is some candidate, false otherwise
+         */
+        private boolean candidatesFor(int slot, int placedSlots, long[] set) {
+            int i = slot / 2;
+            boolean horizontal = slot % 2 == 0;
+
+            index.fill(set);
+
+            // h(i) crosses v(j) at h(i)[2j] == v(j)[2i]
+            for (int j = 0; j < (size + 1) / 2; j++) {
+                int other = horizontal ? 2 * j + 1 : 2 * j;
+
+                if (other < placedSlots) {
+                    if (!index.retain(2 * j, index.letter(this.placed[other], 2 * i), set))
+                        return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Checks that every slot from the given one on still has a candidate
+         *
+         * @param slot the first slot not placed
+         * @return true if every slot still has a candidate, false otherwise
+         */
+        private boolean canComplete(int slot) {
+            for (int s = slot; s < PuzzleGenerator.this.nrWords; s++) {
+                if (!candidatesFor(s, slot, this.check))
+                    return false;
+            }
+
+            return true;
+        }
+
+        /**
+         * Tries every candidate for the given slot, starting from a random one
+         *
+         * @param slot the slot
+         */
+        private void place(int slot) {
+            if (slot == PuzzleGenerator.this.nrWords) {
+                report();
+                return;
+            }
+
+            long[] set = this.candidates[slot];
+            candidatesFor(slot, slot, set);
+
+            int longs = set.length;
+            int start = this.rand.nextInt(longs);
+
+            for (int n = 0; n < longs; n++) {
+                int l = (start + n) % longs;
+                long bits = set[l];
+
+                while (bits != 0) {
+                    int word = (l << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+
+                    if (isPlaced(word, slot))
+                        continue;
+
+                    this.placed[slot] = word;
+
+                    if (canComplete(slot + 1))
+                        place(slot + 1);
+
+                    if (this.budget <= 0 || this.remaining.get() <= 0)
+                        return;
+                }
+            }
+        }
+
+        /**
+         * Checks if a word is already in one of the slots before the given one
+         *
+         * @param word the word
+         * @param slot the slot
+         * @return true if the word is already placed, false otherwise
+         */
+        private boolean isPlaced(int word, int slot) {
+            for (int s = 0; s < slot; s++) {
+                if (this.placed[s] == word)
+                    return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Builds the puzzle of the placed words and hands it over
+         */
+        private void report() {
+            String[] hWords = new String[(size + 1) / 2];
+            String[] vWords = new String[(size + 1) / 2];
+
+            for (int i = 0; i < hWords.length; i++) {
+                hWords[i] = index.word(this.placed[2 * i]);
+                vWords[i] = index.word(this.placed[2 * i + 1]);
+            }
+
+            this.budget--;
+
+            Puzzle puzzle = new Puzzle(size, hWords, vWords);
+
+            synchronized (this.unique) {
+                if (this.remaining.get() <= 0 || !this.unique.add(puzzle))
+                    return;
+
+                this.remaining.decrementAndGet();
+            }
+
+            this.found.add(puzzle);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * PuzzleGeneratorBenchmark
+ *
+ * Measures how many puzzles per second PuzzleGenerator finds with 1, 2, 4, ...
+ * threads, up to the number of cores. Usage:
+ * {@code java PuzzleGeneratorBenchmark [word list] [puzzles per run]}. Without a
+ * word list, random words following the English letter frequencies are used.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class PuzzleGeneratorBenchmark {
+
+    private static final String LETTERS_BY_FREQUENCY = "EEEEEEEEEEEETTTTTTTTTAAAAAAAAOOOOOOOIIIIIII"
+            + "NNNNNNNSSSSSSHHHHHHRRRRRRDDDDLLLLUUUCCCMMMWWFFGGYYPPBVKJXQZ";
+
+    /**
+     * Returns random words with the English letter frequencies
+     *
+     * @param length the length of each word
+     * @param count  how many words
+     * @param rand   the random generator
+     * @return random words with the English letter frequencies
+     */
+    static List<String> randomWords(int length, int count, SplittableRandom rand) {
+        List<String> words = new ArrayList<>(count);
+        char[] word = new char[length];
+
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < length; j++)
+                word[j] = LETTERS_BY_FREQUENCY.charAt(rand.nextInt(LETTERS_BY_FREQUENCY.length()));
+
+            words.add(new String(word));
+        }
+
+        return words;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+        List<String> words = new ArrayList<>();
+
+        if (args.length > 0) {
+            for (String line : Files.readAllLines(Paths.get(args[0])))
+                words.add(line.trim().toUpperCase(Locale.ROOT));
+        } else {
+            SplittableRandom rand = new SplittableRandom(2023);
+            words.addAll(randomWords(5, 20_000, rand));
+            words.addAll(randomWords(7, 20_000, rand));
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        for (int size = 5; size <= 7; size += 2) {
+            PuzzleGenerator generator = new PuzzleGenerator(new WordIndex(size, words));
+
+            // warm up
+            generator.generate(count / 10, 1, 1);
+
+            for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(2 * threads, cores)
+                    : threads + 1) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long start = System.nanoTime();
+                int found = generator.generate(pool, count, 1, threads).size();
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                pool.shutdown();
+                System.out.printf("%dx%d, %2d threads: %d puzzles in %.2f s, %.0f puzzles/s, %.0f puzzles/s/core%n",
+                        size, size, threads, found, seconds, found / seconds, found / seconds / threads);
+            }
+        }
+    }
+}
@@ -0,0 +1,531 @@
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * PuzzleScheduler
+ *
+ * Keeps games ready to be served, each a puzzle with its shuffled initial
+ * grid, so that starting a game does not wait for a grid to be shuffled and
+ * checked. For each size there is a queue of up to a chosen number of ready
+ * games, refilled by tasks on a fork/join pool with a bounded number of
+ * threads. Taking a game starts the refill at once; a ticker thread also tops
+ * the queues up every {@code TICK_MILLIS} and measures how fast they are
+ * refilled.
+ *
+ * While the given foreground load signal says the foreground is busy, no
+ * refills start and tasks not started yet give up, and the pause doubles each
+ * tick the foreground stays busy, up to {@code MAX_BACKOFF_MILLIS}; but a queue
+ * with fewer than {@code LOW_WATER_FRACTION} of its games ready, or with a
+ * take waiting, is refilled all the same. A take that finds the queue empty is
+ * counted as a miss: {@code take} shuffles a grid on the calling thread, while
+ * {@code takeLater} waits for the next game the pool makes.
+ *
+ * Every grid is checked with a GridVerifier before it is served; a rejected
+ * grid is replaced by one of another random puzzle, up to
+ * {@code MAX_TRIES} grids for each game. A refill that finds no grid
+ * accepted gives up; a take never fails, and serves the grid that came
+ * closest, counted as unverified.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class PuzzleScheduler implements AutoCloseable {
+
+    public static final int TICK_MILLIS = 20;
+    public static final int MAX_BACKOFF_MILLIS = 1280;
+    public static final int MAX_TRIES = 16;
+    public static final double LOW_WATER_FRACTION = 0.25;
+
+    /**
+     * The ready games of one size
+     */
+    private static final class Shelf {
+        private final List<Puzzle> puzzles;
+        private final int depth;
+        private final GridVerifier verifier;
+        private final int lowWater;
+        private final ConcurrentLinkedQueue<WaffleGame> ready;
+        // the takes waiting for the next game made; the shelf is locked to
+        // add to it when nothing is ready, and to pick from it or add a game
+        private final ConcurrentLinkedQueue<CompletableFuture<WaffleGame>> waiting;
+        // the games ready and the ones being made
+        private final AtomicInteger queued;
+        private final AtomicInteger nrReady;
+        private final AtomicInteger nrWaiting;
+        private final LongAdder made;
+        private final LongAdder misses;
+        private final LongAdder rejected;
+        private final LongAdder unverified;
+        private long lastMade;
+        private volatile double rate;
+
+        private Shelf(List<Puzzle> puzzles, int depth, GridVerifier verifier) {
+            this.puzzles = puzzles;
+            this.depth = depth;
+            this.verifier = verifier;
+            this.lowWater = (int) Math.ceil(LOW_WATER_FRACTION * depth);
+            this.ready = new ConcurrentLinkedQueue<>();
+            this.waiting = new ConcurrentLinkedQueue<>();
+            this.queued = new AtomicInteger();
+            this.nrReady = new AtomicInteger();
+            this.nrWaiting = new AtomicInteger();
+            this.made = new LongAdder();
+            this.misses = new LongAdder();
+            this.rejected = new LongAdder();
+            this.unverified = new LongAdder();
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService ticker;
+    private final BooleanSupplier busy;
+    private final ConcurrentHashMap<Integer, Shelf> shelves;
+    private final AtomicLong seeds;
+    private volatile long resumeAt;
+    private volatile boolean closed;
+    private long backoff;
+    private long lastTick;
+
+    /**
+     * Creates a scheduler with no sizes to keep games of
+     *
+     * @param threads how many threads make games at most
+     * @param busy    tells whether the foreground is busy; it is asked from the
+     *                ticker thread only
+     * @param seed    the seed for picking and shuffling puzzles
+     * @requires {@code threads >= 1}
+     */
+    public PuzzleScheduler(int threads, BooleanSupplier busy, long seed) {
+        this.pool = new ForkJoinPool(threads);
+        this.busy = busy;
+        this.shelves = new ConcurrentHashMap<>();
+        this.seeds = new AtomicLong(seed);
+        this.lastTick = System.nanoTime();
+        this.resumeAt = this.lastTick;
+        this.ticker = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "PuzzleScheduler ticker");
+
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts keeping ready games of the given puzzles, which are all of the
+     * same size, and no other puzzles of that size, whose grids can be solved
+     * within the swaps a player has
+     *
+     * @param puzzles the puzzles new games are picked from
+     * @param depth   how many ready games to keep
+     * @requires {@code !puzzles.isEmpty() && depth >= 0}
+     */
+    public void addSize(List<Puzzle> puzzles, int depth) {
+        addSize(puzzles, depth, GridVerifier.SOLVABLE);
+    }
+
+    /**
+     * Starts keeping ready games of the given puzzles, which are all of the
+     * same size, and no other puzzles of that size, whose grids the given
+     * verifier accepts
+     *
+     * @param puzzles  the puzzles new games are picked from
+     * @param depth    how many ready games to keep
+     * @param verifier the verifier of the grids
+     * @requires {@code !puzzles.isEmpty() && depth >= 0}
+     */
+    public void addSize(List<Puzzle> puzzles, int depth, GridVerifier verifier) {
+        Shelf shelf = new Shelf(puzzles, depth, verifier);
+
+        this.shelves.put(puzzles.get(0).size(), shelf);
+        refill(shelf);
+    }
+
+    /**
+     * Returns a new game of a random puzzle of the given size, one made ahead
+     * if there is one, or else one made on the calling thread
+     *
+     * @param size the length of each word
+     * @throws IllegalArgumentException if no puzzles of that size were added
+     * @return a new game of the given size, whose grid the verifier may not
+     *         have accepted if none was ready and {@code MAX_TRIES} grids
+     *         were rejected
+     */
+    public WaffleGame take(int size) {
+        Shelf shelf = shelfOf(size);
+        WaffleGame game = poll(shelf);
+
+        if (game == null) {
+            shelf.misses.increment();
+            game = makeGame(shelf, true);
+        }
+
+        if (!backingOff() || low(shelf))
+            refill(shelf);
+
+        return game;
+    }
+
+    /**
+     * Returns a new game of a random puzzle of the given size, one made ahead
+     * if there is one, or else the next one the pool makes; the calling
+     * thread never shuffles a grid
+     *
+     * @param size the length of each word
+     * @throws IllegalArgumentException if no puzzles of that size were added
+     * @return a future completed at once with a game made ahead, or later,
+     *         on a thread of the pool, with the next game made, whose grid the
+     *         verifier may not have accepted if {@code MAX_TRIES} grids were
+     *         rejected; it is cancelled if the scheduler is closed first
+     */
+    public CompletableFuture<WaffleGame> takeLater(int size) {
+        Shelf shelf = shelfOf(size);
+        CompletableFuture<WaffleGame> future = new CompletableFuture<>();
+        WaffleGame game;
+
+        synchronized (shelf) {
+            game = poll(shelf);
+
+            if (game == null) {
+                shelf.misses.increment();
+                shelf.waiting.add(future);
+                shelf.nrWaiting.incrementAndGet();
+            }
+        }
+
+        if (game != null)
+            future.complete(game);
+        else if (this.closed)
+            cancelWaiting(shelf);
+
+        if (!backingOff() || low(shelf))
+            refill(shelf);
+
+        return future;
+    }
+
+    /**
+     * Returns how many games of the given size are ready
+     *
+     * @param size the length of each word
+     * @throws IllegalArgumentException if no puzzles of that size were added
+     * @return how many games of the given size are ready
+     */
+    public int depth(int size) {
+        return shelfOf(size).nrReady.get();
+    }
+
+    /**
+     * Returns how many games of the given size were made per second in the
+     * background over the last second or so
+     *
+     * @param size the length of each word
+     * @throws IllegalArgumentException if no puzzles of that size were added
+     * @return how many games of the given size were made per second
+     */
+    public double refillRate(int size) {
+        return shelfOf(size).rate;
+    }
+
+    /**
+     * Returns how many games of the given size were made in the background
+     *
+     * @param size the length of each word
+     * @throws IllegalArgumentException if no puzzles of that size were added
+     * @return how many games of the given size were made in the background
+     */
+    public long made(int size) {
+        return shelfOf(size).made.sum();
+    }
+
+    /**
+     * Returns how many games of the given size were taken when none was ready
+     *
+     * @param size the length of each word
+     * @throws IllegalArgumentException if no puzzles of that size were added
+     * @return how many games of the given size {@code take} made, or
+     *         {@code takeLater} waited for
+     */
+    public long misses(int size) {
+        return shelfOf(size).misses.sum();
+    }
+
+    /**
+     * Returns how many grids of the given size the verifier rejected
+     *
+     * @param size the length of each word
+     * @throws IllegalArgumentException if no puzzles of that size were added
+     * @return how many grids of the given size were rejected
+     */
+    public long rejected(int size) {
+        return shelfOf(size).rejected.sum();
+    }
+
+    /**
+     * Returns how many games of the given size were served with a grid the
+     * verifier had rejected, because none was ready and no grid was accepted
+     *
+     * @param size the length of each word
+     * @throws IllegalArgumentException if no puzzles of that size were added
+     * @return how many games of the given size were served unverified
+     */
+    public long unverified(int size) {
+        return shelfOf(size).unverified.sum();
+    }
+
+    /**
+     * Tells whether refills are paused because the foreground was busy
+     *
+     * @return true if refills are paused
+     */
+    public boolean backingOff() {
+        return System.nanoTime() - this.resumeAt < 0;
+    }
+
+    /**
+     * Stops making games and cancels the takes waiting for one; the games
+     * ready can still be taken
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.ticker.shutdownNow();
+        this.pool.shutdownNow();
+
+        for (Shelf shelf : this.shelves.values())
+            cancelWaiting(shelf);
+    }
+
+    /**
+     * Returns the ready games of the given size
+     *
+     * @param size the length of each word
+     * @throws IllegalArgumentException if no puzzles of that size were added
+     * @return the ready games of the given size
+     */
+    private Shelf shelfOf(int size) {
+        Shelf shelf = this.shelves.get(size);
+
+        if (shelf == null)
+            throw new IllegalArgumentException("no puzzles of size " + size);
+
+        return shelf;
+    }
+
+    /**
+     * Takes a ready game off a queue
+     *
+     * @param shelf the queue
+     * @return a ready game, or null if there is none
+     */
+    private static WaffleGame poll(Shelf shelf) {
+        WaffleGame game = shelf.ready.poll();
+
+        if (game != null) {
+            shelf.nrReady.decrementAndGet();
+            shelf.queued.decrementAndGet();
+        }
+
+        return game;
+    }
+
+    /**
+     * Hands a game just made to the oldest take waiting for one, or else
+     * puts it in its queue
+     *
+     * @param shelf the queue
+     * @param game  the game
+     */
+    private static void deliver(Shelf shelf, WaffleGame game) {
+        CompletableFuture<WaffleGame> waiter;
+
+        synchronized (shelf) {
+            waiter = shelf.waiting.poll();
+
+            if (waiter == null) {
+                shelf.ready.add(game);
+                shelf.nrReady.incrementAndGet();
+            } else {
+                shelf.nrWaiting.decrementAndGet();
+                shelf.queued.decrementAndGet();
+            }
+        }
+
+        if (waiter != null)
+            waiter.complete(game);
+    }
+
+    /**
+     * Cancels every take waiting for a game of a queue
+     *
+     * @param shelf the queue
+     */
+    private static void cancelWaiting(Shelf shelf) {
+        CompletableFuture<WaffleGame> waiter;
+
+        while ((waiter = shelf.waiting.poll()) != null) {
+            shelf.nrWaiting.decrementAndGet();
+            waiter.cancel(false);
+        }
+    }
+
+    /**
+     * Tells whether a queue is refilled even while the foreground is busy:
+     * a take waits for one of its games, or fewer than
+     * {@code LOW_WATER_FRACTION} of them are ready
+     *
+     * @param shelf the queue
+     * @return true if the queue is low
+     */
+    private static boolean low(Shelf shelf) {
+        return shelf.nrWaiting.get() > 0 || shelf.nrReady.get() < shelf.lowWater;
+    }
+
+    /**
+     * Checks the foreground load, and unless it is busy tops up every queue,
+     * and the low ones in any case; also measures the refill rates once a
+     * second. Runs on the ticker thread.
+     */
+    private void tick() {
+        long now = System.nanoTime();
+
+        if (this.busy.getAsBoolean()) {
+            this.backoff = Math.min(this.backoff == 0 ? TICK_MILLIS : 2 * this.backoff, MAX_BACKOFF_MILLIS);
+            this.resumeAt = now + TimeUnit.MILLISECONDS.toNanos(this.backoff);
+        } else if (!backingOff()) {
+            this.backoff = 0;
+        }
+
+        for (Shelf shelf : this.shelves.values()) {
+            if (!backingOff() || low(shelf))
+                refill(shelf);
+        }
+
+        if (now - this.lastTick >= TimeUnit.SECONDS.toNanos(1)) {
+            for (Shelf shelf : this.shelves.values()) {
+                long made = shelf.made.sum();
+
+                shelf.rate = (made - shelf.lastMade) * 1e9 / (now - this.lastTick);
+                shelf.lastMade = made;
+            }
+
+            this.lastTick = now;
+        }
+    }
+
+    /**
+     * Starts making games for a queue until it has as many, ready or being
+     * made, as it should, and at least one for each take waiting
+     *
+     * @param shelf the queue
+     */
+    private void refill(Shelf shelf) {
+        while (shelf.queued.get() < Math.max(shelf.depth, shelf.nrWaiting.get())) {
+            if (shelf.queued.incrementAndGet() > Math.max(shelf.depth, shelf.nrWaiting.get())) {
+                shelf.queued.decrementAndGet();
+                return;
+            }
+
+            try {
+                this.pool.execute(() -> {
+                    if (backingOff() && !low(shelf)) {
+                        shelf.queued.decrementAndGet();
+                        return;
+                    }
+
+                    WaffleGame game;
+
+                    try {
+                        // a take waiting settles, as it would on its own
+                        game = makeGame(shelf, shelf.nrWaiting.get() > 0);
+                    } catch (IllegalStateException e) {
+                        // the next refill tries again
+                        shelf.queued.decrementAndGet();
+                        return;
+                    }
+
+                    shelf.made.increment();
+                    deliver(shelf, game);
+                });
+            } catch (RejectedExecutionException e) {
+                // closed
+                shelf.queued.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Makes a new game of a random puzzle of a queue, with a grid the verifier
+     * of the queue accepts
+     *
+     * @param shelf  the queue
+     * @param settle whether to settle for the grid that came closest when the
+     *               verifier rejected {@code MAX_TRIES} grids in a row
+     * @throws IllegalStateException if the verifier rejected {@code MAX_TRIES}
+     *                               grids in a row and {@code !settle}
+     * @return a new game
+     */
+    private WaffleGame makeGame(Shelf shelf, boolean settle) {
+        Puzzle closestPuzzle = null;
+        char[][] closestGrid = null;
+        int closest = -1;
+
+        for (int tries = 0; tries < MAX_TRIES; tries++) {
+            long seed = this.seeds.getAndAdd(0x9E3779B97F4A7C15L);
+            Puzzle puzzle = shelf.puzzles.get(new SplittableRandom(seed).nextInt(shelf.puzzles.size()));
+            char[][] grid = new GridShuffler(seed).shuffle(puzzle);
+            GridVerifier.Verdict verdict = shelf.verifier.verify(puzzle, grid);
+
+            if (verdict == GridVerifier.Verdict.ACCEPTED)
+                return new WaffleGame(puzzle, grid);
+
+            shelf.rejected.increment();
+
+            if (closeness(verdict) > closest) {
+                closestPuzzle = puzzle;
+                closestGrid = grid;
+                closest = closeness(verdict);
+            }
+        }
+
+        if (!settle)
+            throw new IllegalStateException("no grid accepted after " + MAX_TRIES + " tries");
+
+        shelf.unverified.increment();
+        return new WaffleGame(closestPuzzle, closestGrid);
+    }
+
+    /**
+     * Tells how close to accepted a verdict is: a grid that may be in the band
+     * comes first, then one that is too easy, which can still be won, and
+     * last one that may not be solvable in time
+     *
+     * @param verdict the verdict on a rejected grid
+     * @return a higher number the closer the verdict is to accepted
+     */
+    private static int closeness(GridVerifier.Verdict verdict) {
+        switch (verdict) {
+            case UNDECIDED:
+                return 3;
+            case TOO_EASY:
+                return 2;
+            case TOO_HARD:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+}
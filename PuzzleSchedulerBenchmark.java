@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * PuzzleSchedulerBenchmark
+ *
+ * Starts games in bursts, as players arriving together do, and reports the
+ * latency of starting each one when the grid is shuffled on the spot and when
+ * it comes ready from a PuzzleScheduler, together with the queue depth, the
+ * refill rate and the misses. Then it marks the foreground busy for a while
+ * and reports how many games were made meanwhile, to show the back off, which
+ * stops at the low-water mark.
+ * Usage: {@code java PuzzleSchedulerBenchmark [size] [burst] [ready games]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class PuzzleSchedulerBenchmark {
+
+    private static final int BURSTS = 20;
+    private static final long PAUSE_MILLIS = 500;
+
+    private static long sink;
+    private static volatile boolean busy;
+
+    /**
+     * Returns a percentile of the given sorted latencies
+     *
+     * @param nanos    the latencies, sorted
+     * @param fraction the fraction of latencies at or below the percentile
+     * @return the percentile, in microseconds
+     */
+    private static double percentile(long[] nanos, double fraction) {
+        return nanos[(int) Math.min(nanos.length - 1, Math.ceil(fraction * nanos.length) - 1)] / 1e3;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        int burst = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int ready = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        Random rand = new Random(2023);
+        List<Puzzle> puzzles = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++)
+            puzzles.add(WaffleSolverBenchmark.randomPuzzle(size, 12, rand));
+
+        System.out.printf("%dx%d, bursts of %d games every %d ms, %d ready, %d processors%n", size, size, burst,
+                PAUSE_MILLIS, ready, Runtime.getRuntime().availableProcessors());
+
+        try (PuzzleScheduler scheduler = new PuzzleScheduler(
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1), () -> busy, 2023)) {
+            GridShuffler shuffler = new GridShuffler(2023);
+
+            scheduler.addSize(puzzles, ready);
+
+            for (boolean ahead : new boolean[] { false, true }) {
+                long[] nanos = new long[BURSTS * burst];
+                long misses = scheduler.misses(size);
+
+                Thread.sleep(2 * PAUSE_MILLIS);
+
+                for (int b = 0; b < BURSTS; b++) {
+                    for (int i = 0; i < burst; i++) {
+                        long start = System.nanoTime();
+                        WaffleGame game;
+
+                        if (ahead) {
+                            game = scheduler.take(size);
+                        } else {
+                            Puzzle puzzle = puzzles.get(rand.nextInt(puzzles.size()));
+
+                            game = new WaffleGame(puzzle, shuffler.shuffle(puzzle));
+                        }
+
+                        nanos[b * burst + i] = System.nanoTime() - start;
+                        sink += game.remainingSwaps();
+                    }
+
+                    Thread.sleep(PAUSE_MILLIS);
+                }
+
+                Arrays.sort(nanos);
+                System.out.printf("%-18s p50 %,8.1f us, p99 %,8.1f us, max %,8.1f us", ahead ? "scheduler:"
+                        : "shuffled on take:", percentile(nanos, 0.5), percentile(nanos, 0.99),
+                        percentile(nanos, 1.0));
+                if (ahead)
+                    System.out.printf(", %d misses, depth %d, refill %,.0f games/s", scheduler.misses(size) - misses,
+                            scheduler.depth(size), scheduler.refillRate(size));
+                System.out.println();
+            }
+
+            // drain the queue and keep the foreground busy; only the games up
+            // to the low-water mark should be made
+            busy = true;
+            Thread.sleep(2 * PAUSE_MILLIS);
+            for (int i = 0; i < ready; i++)
+                sink += scheduler.take(size).remainingSwaps();
+
+            long made = scheduler.made(size);
+
+            Thread.sleep(2000);
+            System.out.printf("busy for 2 s:      %d games made, depth %d%n", scheduler.made(size) - made,
+                    scheduler.depth(size));
+
+            busy = false;
+            made = scheduler.made(size);
+            Thread.sleep(2000);
+            System.out.printf("idle for 2 s:      %d games made, depth %d%n", scheduler.made(size) - made,
+                    scheduler.depth(size));
+        }
+
+        if (sink == 42)
+            System.out.println();
+    }
+}
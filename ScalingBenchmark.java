@@ -0,0 +1,99 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntToLongFunction;
+
+/**
+ * ScalingBenchmark
+ *
+ * Times the operations on a board for every size from 5x5 to the largest one,
+ * and reports the time per cell, which stays roughly flat when an operation
+ * scales linearly with the number of cells. Usage:
+ * {@code java ScalingBenchmark [games per size] [letters]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class ScalingBenchmark {
+
+    private static long sink;
+
+    /**
+     * Returns the mean time, in nanoseconds, of running the given operation on
+     * each game
+     *
+     * @param rounds how many times to run over all the games
+     * @param games  how many games
+     * @param op     the operation, given the index of a game
+     * @return the mean time of one operation, in nanoseconds
+     */
+    private static double time(int rounds, int games, IntToLongFunction op) {
+        long start = System.nanoTime();
+
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < games; i++)
+                sink += op.applyAsLong(i);
+        }
+
+        return (System.nanoTime() - start) / (double) (rounds * games);
+    }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int letters = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        Random rand = new Random(2023);
+
+        System.out.println(" size  cells  clues ns/cell  render ns/cell  validGrid ns/cell  validWords ns/cell  shuffle us/cell");
+
+        for (int size = BoardLayout.MIN_SIZE; size <= BoardLayout.MAX_SIZE; size += 2) {
+            Puzzle[] puzzles = new Puzzle[games];
+            String[][] words = new String[games][];
+            char[][][] grids = new char[games][][];
+            WaffleGame[] played = new WaffleGame[games];
+            ClueBoard clues = new ClueBoard(size);
+            GridShuffler shuffler = new GridShuffler(2023);
+            int cells = BoardLayout.of(size).nrCells();
+
+            for (int i = 0; i < games; i++) {
+                puzzles[i] = WaffleSolverBenchmark.randomPuzzle(size, letters, rand);
+                grids[i] = shuffler.shuffle(puzzles[i]);
+                played[i] = new WaffleGame(puzzles[i], grids[i]);
+                words[i] = new String[size + 1];
+
+                for (int w = 0; w <= size / 2; w++) {
+                    StringBuilder h = new StringBuilder();
+                    StringBuilder v = new StringBuilder();
+
+                    for (int k = 1; k <= size; k++) {
+                        h.append(puzzles[i].getLetterInHorizontalWord(k, w + 1));
+                        v.append(puzzles[i].getLetterInVerticalWord(k, w + 1));
+                    }
+
+                    words[i][w] = h.toString();
+                    words[i][size / 2 + 1 + w] = v.toString();
+                }
+            }
+
+            final int n = size;
+            int rounds = Math.max(1, 20_000 / cells);
+
+            // warm up
+            for (int r = 0; r < 3; r++) {
+                time(rounds, games, i -> played[i].clues(clues).bits()[0]);
+                time(rounds, games, i -> played[i].toString().length());
+            }
+
+            double cluesTime = time(rounds, games, i -> played[i].clues(clues).bits()[0]);
+            double renderTime = time(rounds, games, i -> played[i].toString().length());
+            double gridTime = time(rounds, games, i -> WaffleGame.validGrid(puzzles[i], grids[i]) ? 1 : 0);
+            double wordsTime = time(rounds, games, i -> Puzzle.validWords(n, Arrays.copyOf(words[i], n / 2 + 1),
+                    Arrays.copyOfRange(words[i], n / 2 + 1, n + 1)) ? 1 : 0);
+            double shuffleTime = time(1, games, i -> shuffler.shuffle(puzzles[i]).length);
+
+            System.out.printf("%5d %6d %15.2f %15.2f %18.2f %19.2f %16.2f%n", size, cells, cluesTime / cells,
+                    renderTime / cells, gridTime / cells, wordsTime / cells, shuffleTime / 1e3 / cells);
+        }
+
+        if (sink == 42)
+            System.out.println();
+    }
+}
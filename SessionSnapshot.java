@@ -0,0 +1,537 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * SessionSnapshot
+ *
+ * Writes the state of a game in a compact binary form and reads it back, so
+ * that sessions can be kept across restarts or moved to another node. A
+ * snapshot holds the words of the puzzle, the initial grid and the log of
+ * moves with the number of them made, from which the current grid is found
+ * again. Its layout, in version 1, is a byte with the version in the upper
+ * four bits and {@code (size - 5) / 2} in the lower ones, the number of moves
+ * in the log and the number of moves made, as varints of seven bits a byte,
+ * and then a stream of bits, from the lowest bit of each byte up:
+ * <ul>
+ * <li>the letters of the solved board, five bits each, in cell order;</li>
+ * <li>one bit per cell, set if the letter of the initial grid in that cell is
+ * not the one of the solved board;</li>
+ * <li>the initial grid as a permutation of the solved board over those cells:
+ * for each of them in order, which of the cells not used yet its letter is
+ * taken from, in as many bits as needed for the number of cells left;</li>
+ * <li>the two cells of each move of the log, in as many bits as needed for
+ * the number of cells.</li>
+ * </ul>
+ * The stream is padded to a whole byte. A freshly shuffled 7x7 session takes
+ * about 45 bytes, less as letters fall into place, plus a byte and a half per
+ * move.
+ *
+ * A SessionSnapshot keeps the arrays it works on and the last puzzle it read,
+ * which the following snapshots of the same puzzle reuse, so it is meant to be
+ * used by a single thread.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class SessionSnapshot {
+
+    public static final int VERSION = 1;
+    public static final int MAX_MOVES = 65535;
+
+    // the header of a file of snapshots: magic, version and number of sessions
+    private static final int MAGIC = 0x57534E50;
+    private static final int FILE_HEADER = 4 + 4 + 8;
+    private static final long WINDOW = 64L << 20;
+
+    private final byte[] solution;
+    private final byte[] initial;
+    private final int[] misplaced;
+    private final boolean[] used;
+    private int[] moves;
+    private Puzzle lastPuzzle;
+    private long bits;
+    private int nrBits;
+
+    /**
+     * Creates a SessionSnapshot for boards of any size
+     */
+    public SessionSnapshot() {
+        int nrCells = BoardLayout.of(BoardLayout.MAX_SIZE).nrCells();
+
+        this.solution = new byte[nrCells];
+        this.initial = new byte[nrCells];
+        this.misplaced = new int[nrCells];
+        this.used = new boolean[nrCells];
+        this.moves = new int[64];
+    }
+
+    /**
+     * Returns the most bytes a snapshot of a game of the given size takes
+     *
+     * @param size    the length of each word
+     * @param nrMoves the number of moves in the log of the game
+     * @requires {@code size % 2 == 1 && size >= BoardLayout.MIN_SIZE && size <= BoardLayout.MAX_SIZE}
+     * @requires {@code nrMoves >= 0 && nrMoves <= MAX_MOVES}
+     * @return the most bytes a snapshot of a game of the given size takes
+     */
+    public static int maxBytes(int size, int nrMoves) {
+        int nrCells = BoardLayout.of(size).nrCells();
+        int cellBits = bitsFor(nrCells);
+        long streamBits = nrCells * (5L + 1 + cellBits) + 2L * nrMoves * cellBits;
+
+        return (int) (1 + 3 + 3 + (streamBits + 7) / 8);
+    }
+
+    /**
+     * Writes a snapshot of the given game
+     *
+     * @param game the game
+     * @param out  where to write it
+     * @requires {@code out.remaining() >= maxBytes(game.puzzle().size(), game.nrMoves())}
+     * @throws IllegalArgumentException if the log of the game has more than
+     *                                  {@code MAX_MOVES} moves
+     * @return the given ByteBuffer
+     */
+    public ByteBuffer write(WaffleGame game, ByteBuffer out) {
+        Puzzle puzzle = game.puzzle();
+        int nrCells = puzzle.layout().nrCells();
+        int cellBits = bitsFor(nrCells);
+        int nrMoves = game.nrMoves();
+        int cursor = game.currentMove();
+        byte[] initial = this.initial;
+
+        if (nrMoves > MAX_MOVES)
+            throw new IllegalArgumentException("too many moves to snapshot: " + nrMoves);
+
+        // the initial grid is the current one with the moves made undone
+        for (int k = 0; k < nrCells; k++)
+            initial[k] = game.currentLetterInCell(k);
+        for (int i = cursor - 1; i >= 0; i--) {
+            int move = game.loggedMove(i);
+            int cell1 = move & 0xFFFF;
+            int cell2 = move >>> 16;
+            byte letter = initial[cell1];
+
+            initial[cell1] = initial[cell2];
+            initial[cell2] = letter;
+        }
+
+        out.put((byte) (VERSION << 4 | (puzzle.size() - BoardLayout.MIN_SIZE) / 2));
+        putVarint(out, nrMoves);
+        putVarint(out, cursor);
+        this.bits = 0;
+        this.nrBits = 0;
+
+        for (int k = 0; k < nrCells; k++)
+            putBits(out, puzzle.letterInCell(k), 5);
+
+        int m = 0;
+
+        for (int k = 0; k < nrCells; k++) {
+            boolean misplaced = initial[k] != puzzle.letterInCell(k);
+
+            putBits(out, misplaced ? 1 : 0, 1);
+            if (misplaced) {
+                this.used[m] = false;
+                this.misplaced[m++] = k;
+            }
+        }
+
+        for (int i = 0; i < m; i++) {
+            byte letter = initial[this.misplaced[i]];
+            int rank = 0;
+            int t = 0;
+
+            // the first cell not used yet with the same letter in the solved board
+            for (;; t++) {
+                if (this.used[t])
+                    continue;
+                if (puzzle.letterInCell(this.misplaced[t]) == letter)
+                    break;
+                rank++;
+            }
+
+            this.used[t] = true;
+            putBits(out, rank, bitsFor(m - i));
+        }
+
+        for (int i = 0; i < nrMoves; i++) {
+            int move = game.loggedMove(i);
+
+            putBits(out, move & 0xFFFF, cellBits);
+            putBits(out, move >>> 16, cellBits);
+        }
+
+        if (this.nrBits > 0)
+            out.put((byte) this.bits);
+
+        return out;
+    }
+
+    /**
+     * Reads a snapshot and returns the game it holds, with the same grid,
+     * log of moves and number of moves made as the game it was taken of
+     *
+     * @param in where to read it from
+     * @throws IOException              if the snapshot is of another version or
+     *                                  is not a valid one
+     * @throws BufferUnderflowException if {@code in} ends before the snapshot
+     * @return the game the snapshot holds
+     */
+    public WaffleGame read(ByteBuffer in) throws IOException {
+        int header = in.get() & 0xFF;
+
+        if (header >>> 4 != VERSION)
+            throw new IOException("unsupported snapshot version " + (header >>> 4));
+
+        int size = BoardLayout.MIN_SIZE + 2 * (header & 0xF);
+
+        if (size > BoardLayout.MAX_SIZE)
+            throw new IOException("invalid board size " + size);
+
+        int nrMoves = getVarint(in);
+        int cursor = getVarint(in);
+
+        if (nrMoves > MAX_MOVES || cursor > nrMoves)
+            throw new IOException("invalid number of moves " + cursor + "/" + nrMoves);
+
+        BoardLayout layout = BoardLayout.of(size);
+        int nrCells = layout.nrCells();
+        int cellBits = bitsFor(nrCells);
+        byte[] solution = this.solution;
+        byte[] initial = this.initial;
+
+        this.bits = 0;
+        this.nrBits = 0;
+
+        for (int k = 0; k < nrCells; k++) {
+            solution[k] = (byte) getBits(in, 5);
+            if (solution[k] > 25)
+                throw new IOException("invalid letter in cell " + k);
+        }
+
+        int m = 0;
+
+        for (int k = 0; k < nrCells; k++) {
+            initial[k] = solution[k];
+            if (getBits(in, 1) != 0) {
+                // the letters on the diagonals never leave their cells
+                if (layout.isDiagonal(k))
+                    throw new IOException("misplaced letter on the diagonal in cell " + k);
+
+                this.used[m] = false;
+                this.misplaced[m++] = k;
+            }
+        }
+
+        for (int i = 0; i < m; i++) {
+            int rank = getBits(in, bitsFor(m - i));
+            int t = 0;
+
+            if (rank >= m - i)
+                throw new IOException("invalid initial grid");
+
+            for (;; t++) {
+                if (!this.used[t] && rank-- == 0)
+                    break;
+            }
+
+            this.used[t] = true;
+            initial[this.misplaced[i]] = solution[this.misplaced[t]];
+        }
+
+        if (this.moves.length < nrMoves)
+            this.moves = Arrays.copyOf(this.moves, Math.max(nrMoves, 2 * this.moves.length));
+
+        for (int i = 0; i < nrMoves; i++) {
+            int cell1 = getBits(in, cellBits);
+            int cell2 = getBits(in, cellBits);
+
+            if (cell1 >= nrCells || cell2 >= nrCells || layout.isDiagonal(cell1) || layout.isDiagonal(cell2))
+                throw new IOException("invalid move " + i);
+
+            this.moves[i] = cell1 | cell2 << 16;
+        }
+
+        WaffleGame game = new WaffleGame(puzzleOf(size, nrCells), Arrays.copyOf(initial, nrCells));
+
+        for (int i = 0; i < nrMoves; i++) {
+            int cell1 = this.moves[i] & 0xFFFF;
+            int cell2 = this.moves[i] >>> 16;
+
+            if (game.currentLetterInCell(cell1) == game.currentLetterInCell(cell2))
+                throw new IOException("invalid move " + i);
+
+            game.swapCells(cell1, cell2);
+        }
+
+        game.jumpTo(cursor);
+
+        return game;
+    }
+
+    /**
+     * Writes snapshots of the given games to a file, through a memory mapping
+     * of a temporary file next to it, which then replaces the file. Every
+     * window is forced to the disk, so a crash leaves either the old file or
+     * the whole new one.
+     *
+     * @param path  the file
+     * @param games the games
+     * @throws IOException if the file cannot be written
+     * @return the number of games written
+     */
+    public static long writeAll(Path path, Iterable<WaffleGame> games) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        long count = 0;
+        long end;
+        boolean truncated;
+
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                SessionSnapshot snapshot = new SessionSnapshot();
+                long start = 0;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_WRITE, start, WINDOW);
+
+                window.position(FILE_HEADER);
+
+                for (WaffleGame game : games) {
+                    int bytes = maxBytes(game.puzzle().size(), Math.min(game.nrMoves(), MAX_MOVES));
+
+                    if (window.remaining() < bytes) {
+                        window.force();
+                        start += window.position();
+                        window = channel.map(FileChannel.MapMode.READ_WRITE, start, WINDOW);
+                    }
+
+                    snapshot.write(game, window);
+                    count++;
+                }
+
+                window.force();
+                end = start + window.position();
+                // the mapping goes away with the buffer; there is no way to unmap it
+                window = null;
+
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).putInt(VERSION).putLong(count);
+
+                header.flip();
+                while (header.hasRemaining())
+                    channel.write(header, header.position());
+
+                // some systems, Windows among them, refuse to truncate a file
+                // that is still mapped, and the last window may still be
+                try {
+                    channel.truncate(end);
+                    truncated = true;
+                } catch (IOException e) {
+                    truncated = false;
+                }
+                channel.force(true);
+            }
+
+            if (truncated) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                // copy the snapshots without the rest of the last window
+                try (FileChannel from = FileChannel.open(temporary, StandardOpenOption.READ);
+                        FileChannel to = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING)) {
+                    for (long done = 0; done < end;)
+                        done += from.transferTo(done, end - done, to);
+                    to.force(true);
+                }
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException e) {
+                // still mapped; it is replaced by the next write
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads the snapshots of a file written by {@code writeAll}, through a
+     * memory mapping of it, and gives each game they hold to an action, in
+     * the order they were written
+     *
+     * @param path   the file
+     * @param action what to do with each game
+     * @throws IOException if the file cannot be read or is not a valid file of
+     *                     snapshots
+     * @return the number of games read
+     */
+    public static long readAll(Path path, Consumer<? super WaffleGame> action) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0)
+                    throw new EOFException("not a file of session snapshots");
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC)
+                throw new IOException("not a file of session snapshots");
+            if (header.getInt() != VERSION)
+                throw new IOException("unsupported snapshot file version");
+
+            long count = header.getLong();
+            long start = FILE_HEADER;
+            SessionSnapshot snapshot = new SessionSnapshot();
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(WINDOW, fileSize - start));
+
+            for (long i = 0; i < count; i++) {
+                int position = window.position();
+                WaffleGame game = null;
+
+                while (game == null) {
+                    try {
+                        game = snapshot.read(window);
+                    } catch (BufferUnderflowException e) {
+                        // the snapshot goes past the window, so map the next one from it
+                        if (start + window.limit() == fileSize)
+                            throw new EOFException("file of session snapshots ends after " + i + " of " + count);
+
+                        start += position;
+                        position = 0;
+                        window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                Math.min(WINDOW, fileSize - start));
+                    }
+                }
+
+                action.accept(game);
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Returns the puzzle whose solved board has the letters read, the last one
+     * read if it is the same
+     *
+     * @param size    the length of each word
+     * @param nrCells the number of cells of the board
+     * @return the puzzle whose solved board has the letters read
+     */
+    private Puzzle puzzleOf(int size, int nrCells) {
+        Puzzle last = this.lastPuzzle;
+
+        if (last != null && last.size() == size) {
+            int k = 0;
+
+            while (k < nrCells && last.letterInCell(k) == this.solution[k])
+                k++;
+
+            if (k == nrCells)
+                return last;
+        }
+
+        this.lastPuzzle = Puzzle.fromCells(size, this.solution);
+        return this.lastPuzzle;
+    }
+
+    /**
+     * Returns how many bits are needed to tell apart the given number of values
+     *
+     * @param n the number of values
+     * @return how many bits are needed to write any value from 0 to n - 1
+     */
+    private static int bitsFor(int n) {
+        return n <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    /**
+     * Adds the lower bits of a value to the stream of bits, writing the bytes
+     * that get full
+     *
+     * @param out   where to write the bytes
+     * @param value the value
+     * @param n     how many bits of the value to add, at most 16
+     */
+    private void putBits(ByteBuffer out, int value, int n) {
+        this.bits |= (long) value << this.nrBits;
+        this.nrBits += n;
+
+        while (this.nrBits >= 8) {
+            out.put((byte) this.bits);
+            this.bits >>>= 8;
+            this.nrBits -= 8;
+        }
+    }
+
+    /**
+     * Takes the next bits of the stream of bits, reading more bytes as needed
+     *
+     * @param in where to read the bytes from
+     * @param n  how many bits to take, at most 16
+     * @return the value of the bits
+     */
+    private int getBits(ByteBuffer in, int n) {
+        while (this.nrBits < n) {
+            this.bits |= (in.get() & 0xFFL) << this.nrBits;
+            this.nrBits += 8;
+        }
+
+        int value = (int) (this.bits & ((1L << n) - 1));
+
+        this.bits >>>= n;
+        this.nrBits -= n;
+        return value;
+    }
+
+    /**
+     * Writes a non-negative number in seven bits a byte, lowest first, with the
+     * upper bit of each byte set when more follow
+     *
+     * @param out where to write it
+     * @param n   the number
+     * @requires {@code n >= 0}
+     */
+    private static void putVarint(ByteBuffer out, int n) {
+        while (n >= 0x80) {
+            out.put((byte) (n | 0x80));
+            n >>>= 7;
+        }
+
+        out.put((byte) n);
+    }
+
+    /**
+     * Reads a number written by {@code putVarint}
+     *
+     * @param in where to read it from
+     * @throws IOException if the number is too large
+     * @return the number
+     */
+    private static int getVarint(ByteBuffer in) throws IOException {
+        int n = 0;
+
+        for (int shift = 0; shift < 21; shift += 7) {
+            int b = in.get();
+
+            n |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return n;
+        }
+
+        throw new IOException("invalid number of moves");
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * SessionSnapshotBenchmark
+ *
+ * Plays random moves on random games and times taking snapshots of them and
+ * restoring them, in memory and through a file, reporting sessions per second
+ * and bytes per session. The file holds many copies of a smaller set of
+ * games, so that millions of sessions go through it without keeping them all
+ * in memory. Usage:
+ * {@code java SessionSnapshotBenchmark [sessions in the file] [size] [distinct games]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class SessionSnapshotBenchmark {
+
+    private static long sink;
+
+    /**
+     * Returns a game of a random puzzle with some random moves made, and some
+     * of them undone
+     *
+     * @param size the length of each word
+     * @param rand the random generator
+     * @return a game of a random puzzle
+     */
+    private static WaffleGame randomGame(int size, Random rand) {
+        Puzzle puzzle = WaffleSolverBenchmark.randomPuzzle(size, 12, rand);
+        WaffleGame game = new WaffleGame(puzzle, puzzle.getShuffledGrid(rand.nextLong()));
+        int moves = rand.nextInt(game.maxSwaps() + 1);
+
+        while (game.nrMoves() < moves) {
+            int r1 = 1 + rand.nextInt(size);
+            int c1 = 1 + rand.nextInt(size);
+            int r2 = 1 + rand.nextInt(size);
+            int c2 = 1 + rand.nextInt(size);
+
+            if ((r1 != r2 || c1 != c2) && game.swappablePosition(r1, c1) && game.swappablePosition(r2, c2))
+                game.swap(r1, c1, r2, c2);
+        }
+
+        game.jumpTo(rand.nextInt(game.nrMoves() + 1));
+        return game;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+        int distinct = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        Random rand = new Random(2023);
+        WaffleGame[] games = new WaffleGame[distinct];
+        SessionSnapshot snapshot = new SessionSnapshot();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(distinct * SessionSnapshot.maxBytes(size, 64));
+
+        for (int i = 0; i < distinct; i++)
+            games[i] = randomGame(size, rand);
+
+        System.out.printf("%dx%d sessions, %d distinct%n", size, size, distinct);
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+
+            buffer.clear();
+            for (WaffleGame game : games)
+                snapshot.write(game, buffer);
+
+            long written = System.nanoTime() - start;
+            int bytes = buffer.position();
+
+            buffer.flip();
+            start = System.nanoTime();
+            for (int i = 0; i < distinct; i++)
+                sink += snapshot.read(buffer).remainingSwaps();
+
+            long read = System.nanoTime() - start;
+
+            System.out.printf("memory: %5.1f bytes/session, snapshot %,11.0f sessions/s, restore %,11.0f sessions/s%n",
+                    bytes / (double) distinct, distinct * 1e9 / written, distinct * 1e9 / read);
+        }
+
+        Path file = Files.createTempFile("sessions", ".bin");
+
+        try {
+            Iterable<WaffleGame> many = () -> new Iterator<WaffleGame>() {
+                private int i;
+
+                @Override
+                public boolean hasNext() {
+                    return this.i < sessions;
+                }
+
+                @Override
+                public WaffleGame next() {
+                    return games[this.i++ % distinct];
+                }
+            };
+
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                long written = SessionSnapshot.writeAll(file, many);
+                long writeTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long read = SessionSnapshot.readAll(file, game -> sink += game.remainingSwaps());
+                long readTime = System.nanoTime() - start;
+
+                System.out.printf("file:   %,d sessions, %,d bytes, write %,11.0f sessions/s, read %,11.0f sessions/s%n",
+                        read, Files.size(file), written * 1e9 / writeTime, read * 1e9 / readTime);
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        if (sink == 42)
+            System.out.println();
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * StringColouring
+ *
+ * Wraps strings in ANSI escape codes so that they show in colour on a
+ * terminal.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class StringColouring {
+
+    static final String RESET = "\u001B[0m";
+    static final String GREEN = "\u001B[32m";
+    static final String YELLOW = "\u001B[33m";
+
+    /**
+     * Returns the given string coloured in green
+     *
+     * @param s the string
+     * @return the given string coloured in green
+     */
+    public static String toGreenString(String s) {
+        return GREEN + s + RESET;
+    }
+
+    /**
+     * Returns the given string coloured in yellow
+     *
+     * @param s the string
+     * @return the given string coloured in yellow
+     */
+    public static String toYellowString(String s) {
+        return YELLOW + s + RESET;
+    }
+}
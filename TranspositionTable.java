@@ -0,0 +1,227 @@
+import java.util.Arrays;
+
+/**
+ * TranspositionTable
+ *
+ * A map from 64-bit state hashes, such as those of {@link Zobrist}, to ints,
+ * for searches that meet the same state along different paths. It is an
+ * open-addressing table over parallel primitive arrays, so lookups neither
+ * box nor allocate. A key is looked for only in the {@code PROBES} slots from
+ * its home slot on. The table starts small and doubles as it fills, up to the
+ * capacity it was created with; after that, a new key whose slots are all
+ * taken replaces the entry among them that was written longest ago, so the
+ * memory stays bounded and the table keeps the recent states of the search.
+ * Keys are trusted as they are: two states with the same hash are the same
+ * entry.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class TranspositionTable {
+
+    public static final int PROBES = 8;
+
+    private static final int MIN_CAPACITY = 64;
+
+    private final int maxCapacity;
+    private long[] keys;
+    private int[] values;
+    // when each slot was last written, 0 if it is empty
+    private int[] stamps;
+    private int shift;
+    private int size;
+    private int clock;
+    private long evictions;
+
+    /**
+     * Creates an empty table that holds up to the given number of entries,
+     * rounded up to a power of two
+     *
+     * @param maxEntries the most entries the table holds
+     * @requires {@code maxEntries >= 1 && maxEntries <= 1 << 30}
+     */
+    public TranspositionTable(int maxEntries) {
+        this.maxCapacity = Math.max(PROBES, Integer.highestOneBit(maxEntries - 1) << 1);
+        allocate(Math.min(MIN_CAPACITY, this.maxCapacity));
+    }
+
+    /**
+     * Returns the value of the given key
+     *
+     * @param key     the key
+     * @param missing the value to return if the key is not in the table
+     * @return the value of the key, or {@code missing} if it is not in the
+     *         table
+     */
+    public int get(long key, int missing) {
+        int slot = find(key);
+
+        return slot >= 0 ? this.values[slot] : missing;
+    }
+
+    /**
+     * Tells whether the given key is in the table
+     *
+     * @param key the key
+     * @return true if the key is in the table
+     */
+    public boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Sets the value of the given key, evicting another key if the table is
+     * at its capacity and the slots of the key are all taken
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(long key, int value) {
+        int mask = this.keys.length - 1;
+        int home = home(key);
+        int empty = -1;
+        int oldest = home;
+
+        if (++this.clock == 0)
+            this.clock = 1;
+
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (home + i) & mask;
+
+            if (this.stamps[slot] == 0) {
+                if (empty < 0)
+                    empty = slot;
+            } else if (this.keys[slot] == key) {
+                this.values[slot] = value;
+                this.stamps[slot] = this.clock;
+                return;
+            } else if (this.clock - this.stamps[slot] > this.clock - this.stamps[oldest]) {
+                oldest = slot;
+            }
+        }
+
+        if (empty < 0 || this.size >= this.keys.length / 4 * 3) {
+            if (this.keys.length < this.maxCapacity) {
+                grow();
+                put(key, value);
+                return;
+            }
+        }
+
+        int slot = empty;
+        if (slot < 0) {
+            slot = oldest;
+            this.evictions++;
+        } else {
+            this.size++;
+        }
+
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.stamps[slot] = this.clock;
+    }
+
+    /**
+     * Removes every entry, keeping the memory of the table
+     */
+    public void clear() {
+        Arrays.fill(this.stamps, 0);
+        this.size = 0;
+        this.clock = 0;
+    }
+
+    /**
+     * Returns the number of entries in the table
+     *
+     * @return the number of entries in the table
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the most entries the table holds
+     *
+     * @return the capacity of the table
+     */
+    public int capacity() {
+        return this.maxCapacity;
+    }
+
+    /**
+     * Returns how many entries were replaced by new keys since the table was
+     * created
+     *
+     * @return the number of evictions
+     */
+    public long evictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Returns the slot of the given key
+     *
+     * @param key the key
+     * @return the slot, or -1 if the key is not in the table
+     */
+    private int find(long key) {
+        int mask = this.keys.length - 1;
+        int home = home(key);
+
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (home + i) & mask;
+
+            if (this.stamps[slot] != 0 && this.keys[slot] == key)
+                return slot;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the first slot a key may be in
+     *
+     * @param key the key
+     * @return the first slot of the key
+     */
+    private int home(long key) {
+        // the high bits of the product depend on every bit of the key
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> this.shift);
+    }
+
+    /**
+     * Replaces the arrays by empty ones of the given length
+     *
+     * @param capacity the number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.stamps = new int[capacity];
+        this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        this.size = 0;
+    }
+
+    /**
+     * Doubles the number of slots, keeping every entry and when it was
+     * written
+     */
+    private void grow() {
+        long[] keys = this.keys;
+        int[] values = this.values;
+        int[] stamps = this.stamps;
+        int clock = this.clock;
+
+        allocate(2 * keys.length);
+
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (stamps[slot] != 0) {
+                // put stamps the entry with the clock after this one
+                this.clock = stamps[slot] - 1;
+                put(keys[slot], values[slot]);
+            }
+        }
+
+        this.clock = clock;
+    }
+}
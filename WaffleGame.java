@@ -1,15 +1,35 @@
+import java.util.Arrays;
+
 /**
  * WaffleGame
  * 
+ * Every swap that changes the board is kept in a move log, and the board can
+ * be moved back and forth along it with {@code undo()}, {@code redo()} and
+ * {@code jumpTo(int)}. The number of swaps made is always the position in the
+ * log, so undoing a swap also gives it back.
+ * 
  * @author pedrosilva 59886
  * @author diogolopes 60447
  */
 public class WaffleGame {
 
+    // the swaps a player has on top of the ones the grid was shuffled with
+    public static final int EXTRA_SWAPS = 5;
+
+    private static final int[] NO_MOVES = new int[0];
+
     private Puzzle puzzle;
-    private final char[][] initialGrid;
-    private char[][] grid;
+    private final BoardLayout layout;
+    private final byte[] cells;
+    private final byte[] presentLetters;
+    private final byte[] correctLetters;
+    // each move holds its two cells, the first in the lower 16 bits
+    private int[] moves;
+    private int nrMoves;
     private int swapCount;
+    // built on the first hint
+    private HintIndex hints;
+    private long hash;
 
     /**
      * Checks if the given array only contains zeros
@@ -26,51 +46,35 @@ public class WaffleGame {
     }
 
     /**
-     * Check if a letter in the given position is correct
+     * Check if a letter in the given cell is correct
      * 
      * @param puzzle the puzzle
-     * @param grid   the grid
-     * @param row    the row
-     * @param col    the column
-     * @requires {@code validPosition(row, col)}
-     * @return true if the letter in the given position is correct, false otherwise
+     * @param cells  the letters of the board
+     * @param cell   the cell index
+     * @requires {@code cell >= 0 && cell < puzzle.layout().nrCells()}
+     * @return true if the letter in the given cell is correct, false otherwise
      */
-    private static boolean isCorrectPosition(Puzzle puzzle, char[][] grid, int row, int col) {
-        char c = grid[row - 1][col - 1];
-
-        if (row % 2 == 1) {
-            char c2 = puzzle.getLetterInHorizontalWord(col, (row + 1) / 2);
-
-            if (c == c2)
-                return true;
-        } else if (col % 2 == 1) {
-            char c2 = puzzle.getLetterInVerticalWord(row, (col + 1) / 2);
-
-            if (c == c2)
-                return true;
-        }
-
-        return false;
+    private static boolean isCorrectPosition(Puzzle puzzle, byte[] cells, int cell) {
+        return cells[cell] == puzzle.letterInCell(cell);
     }
 
     /**
-     * Gets the number of occurrences in Puzzle of a given character in a given
-     * column until a given row
+     * Gets the number of occurrences of a given letter in a given word of the
+     * board before a given position
      * 
-     * @param puzzle the puzzle
-     * @param row    the row
-     * @param col    the column
-     * @param c      the character
-     * @requires {@code validPosition(row, col)}
-     * @return the number of occurrences of the given character in the given column
-     *         until the given row
+     * @param layout the layout of the board
+     * @param cells  the letters of the board
+     * @param word   the word
+     * @param pos    the position in the word
+     * @param c      the letter
+     * @return the number of occurrences of the given letter in the given word
+     *         before the given position
      */
-    private static int countOccurrencesInPuzzleColumnUntilRow(Puzzle puzzle, int row, int col, char c) {
+    private static int countOccurrencesInWordUntil(BoardLayout layout, byte[] cells, int word, int pos, byte c) {
         int count = 0;
-        int wordIndex = (col + 1) / 2;
 
-        for (int i = 0; i < row; i++) {
-            if (puzzle.getLetterInVerticalWord(i + 1, wordIndex) == c)
+        for (int i = 0; i < pos; i++) {
+            if (cells[layout.wordCell(word, i)] == c)
                 count++;
         }
 
@@ -78,192 +82,138 @@ public class WaffleGame {
     }
 
     /**
-     * Gets the number of occurrences in Grid of a given character in a given
-     * column until a given row
+     * Verifies if the letter in a given position of a given word belongs to that
+     * word but is in the wrong position, according to some rules
      * 
-     * @param grid the grid
-     * @param row  the row
-     * @param col  the column
-     * @param c    the character
-     * @requires {@code validPosition(row, col)}
-     * @return the number of occurrences of the given character in the given column
-     *         until the given row
+     * @param word the word
+     * @param pos  the position in the word
+     * @param c    the letter in that position
+     * @return true if the letter is in the word but in the wrong position, false
+     *         otherwise
      */
-    private static int countOccurrencesInGridColumnUntilRow(char[][] grid, int row, int col, char c) {
-        int count = 0;
+    private boolean letterInWordWrongPos(int word, int pos, byte c) {
+        int occurrencesPuzzle = this.puzzle.occurrencesInWord(word, c);
+        int correctOccurrences = this.correctLetters[word * 26 + c];
 
-        for (int i = 0; i < row; i++) {
-            if (grid[i][col - 1] == c)
-                count++;
-        }
+        if (occurrencesPuzzle == 0)
+            return false;
+        if (correctOccurrences == occurrencesPuzzle)
+            return false;
 
-        return count;
+        // only when the word holds more copies of the letter than the puzzle does
+        // the ones further along have to be told apart
+        if (this.presentLetters[word * 26 + c] <= occurrencesPuzzle)
+            return true;
+
+        int occurrencesGridUntilNow = countOccurrencesInWordUntil(this.layout, this.cells, word, pos, c);
+        if (occurrencesPuzzle <= occurrencesGridUntilNow)
+            return false;
+
+        return true;
     }
 
     /**
-     * Gets the number of correct occurrences of a given character in a given row
-     * until a given column
+     * Verifies if the letter in a given cell is in the correct column according
+     * to some rules
      * 
-     * @param puzzle a valid grid
-     * @param grid   a valid grid
-     * @param col    a valid column
-     * @param c      a valid character
-     * @return the number of correct occurrences of the given character
-     *         in the given
-     *         row until the given column
+     * @param cell the cell
+     * @return true if the letter in the given cell is in the correct column, false
+     *         otherwise
      */
-    private static int countCorrectOccurrencesInColumn(Puzzle puzzle, char[][] grid, int col, char c) {
-        int count = 0;
-
-        for (int i = 0; i < puzzle.size(); i++) {
-            char charGrid = grid[i][col - 1];
-            char charPuzzle = puzzle.getLetterInVerticalWord(i + 1, (col + 1) / 2);
+    private boolean letterInColWrongPos(int cell) {
+        int word = this.layout.verticalWord(cell);
 
-            if (charGrid == charPuzzle && charPuzzle == c)
-                count++;
-        }
+        if (word < 0)
+            return false;
 
-        return count;
+        return letterInWordWrongPos(word, this.layout.indexInVerticalWord(cell), this.cells[cell]);
     }
 
     /**
-     * Verifies if a letter in a given row and column is in the correct column
-     * according to some rules
+     * Verifies if the letter in a given cell is in the correct row according to
+     * some rules
      * 
-     * @param puzzle the puzzle
-     * @param grid   the grid
-     * @param row    the row
-     * @param col    the column
-     * @requires {@code validPosition(row, col)}
-     * @return true if the letter in the given position is in the correct column,
-     *         false otherwise
+     * @param cell the cell
+     * @return true if the letter in the given cell is in the correct row, false
+     *         otherwise
      */
-    private static boolean letterInColWrongPos(Puzzle puzzle, char[][] grid, int row, int col) {
-        if (col % 2 == 0)
-            return false;
+    private boolean letterInRowWrongPos(int cell) {
+        int word = this.layout.horizontalWord(cell);
 
-        char c = grid[row - 1][col - 1];
-
-        int occurrencesPuzzle = countOccurrencesInPuzzleColumnUntilRow(puzzle, puzzle.size(), col, c);
-        int correctOccurrences = countCorrectOccurrencesInColumn(puzzle, grid, col,
-                c);
-
-        if (occurrencesPuzzle == 0)
-            return false;
-        if (correctOccurrences == occurrencesPuzzle)
-            return false;
-
-        int occurrencesGridUntilNow = countOccurrencesInGridColumnUntilRow(grid, row - 1,
-                col, c);
-        if (occurrencesPuzzle <= occurrencesGridUntilNow)
+        if (word < 0)
             return false;
 
-        return true;
+        return letterInWordWrongPos(word, this.layout.indexInHorizontalWord(cell), this.cells[cell]);
     }
 
     /**
-     * Gets the number of occurrences in Puzzle of a given character in a given
-     * column until a given row
+     * Adds or removes the letter in a given cell from the letter counts of the
+     * words the cell belongs to
      * 
-     * @param puzzle the puzzle
-     * @param row    the row
-     * @param col    the column
-     * @param c      the character
-     * @requires {@code validPosition(row, col)}
-     * @return the number of occurrences of the given character in the given column
-     *         until the given row
+     * @param cell  the cell
+     * @param delta 1 to add the letter, -1 to remove it
      */
-    private static int countOccurrencesInPuzzleRowUntilColumn(Puzzle puzzle, int row, int col, char c) {
-        int count = 0;
-        int wordIndex = (row + 1) / 2;
-
-        for (int i = 0; i < col; i++) {
-            if (puzzle.getLetterInHorizontalWord(i + 1, wordIndex) == c)
-                count++;
+    private void countLetter(int cell, int delta) {
+        byte c = this.cells[cell];
+        boolean correct = isCorrectPosition(this.puzzle, this.cells, cell);
+        int hWord = this.layout.horizontalWord(cell);
+        int vWord = this.layout.verticalWord(cell);
+
+        if (hWord >= 0) {
+            this.presentLetters[hWord * 26 + c] += delta;
+            if (correct)
+                this.correctLetters[hWord * 26 + c] += delta;
         }
 
-        return count;
+        if (vWord >= 0) {
+            this.presentLetters[vWord * 26 + c] += delta;
+            if (correct)
+                this.correctLetters[vWord * 26 + c] += delta;
+        }
     }
 
     /**
-     * Gets the number of occurrences in Grid of a given character in a given
-     * column until a given row
+     * Returns the status of the letter in the given cell
      * 
-     * @param grid the grid
-     * @param row  the row
-     * @param col  the column
-     * @param c    the character
-     * @requires {@code validPosition(row, col)}
-     * @return the number of occurrences of the given character in the given column
-     *         until the given row
+     * @param cell the cell
+     * @return the ordinal of the status of the letter in the given cell
      */
-    private static int countOccurrencesInGridRowUntilColumn(char[][] grid, int row, int col, char c) {
-        int count = 0;
+    private int status(int cell) {
+        if (isCorrectPosition(this.puzzle, this.cells, cell))
+            return LetterStatus.CORRECT_POS.ordinal();
+        if (letterInColWrongPos(cell) || letterInRowWrongPos(cell))
+            return LetterStatus.WRONG_POS.ordinal();
 
-        for (int i = 0; i < col; i++) {
-            if (grid[row - 1][i] == c)
-                count++;
-        }
-
-        return count;
+        return LetterStatus.INEXISTENT.ordinal();
     }
 
     /**
-     * Gets the number of correct occurrences of a given character in a given row
-     * until a given column
+     * Remembers in a ClueDelta the current status of every cell of a word
      * 
-     * @param puzzle a valid grid
-     * @param grid   a valid grid
-     * @param col    a valid column
-     * @param c      a valid character
-     * @return the number of correct occurrences of the given character
-     *         in the given
-     *         row until the given column
+     * @param delta the ClueDelta
+     * @param word  the word, or -1 for none
      */
-    private static int countCorrectOccurrencesInRow(Puzzle puzzle, char[][] grid, int row, char c) {
-        int count = 0;
+    private void rememberWord(ClueDelta delta, int word) {
+        if (word < 0)
+            return;
 
-        for (int i = 0; i < puzzle.size(); i++) {
-            char charGrid = grid[row - 1][i];
-            char charPuzzle = puzzle.getLetterInHorizontalWord(i + 1, (row + 1) / 2);
+        for (int i = 0; i < this.layout.size(); i++) {
+            int cell = this.layout.wordCell(word, i);
 
-            if (charGrid == charPuzzle && charPuzzle == c)
-                count++;
+            if (!delta.remembers(cell))
+                delta.remember(cell, status(cell));
         }
-
-        return count;
     }
 
     /**
-     * Verifies if a letter in a given row and column is in the correct row
-     * according to some rules
-     * 
-     * @param puzzle the puzzle
-     * @param grid   the grid
-     * @param row    the row
-     * @param col    the column
-     * @requires {@code validPosition(row, col)}
-     * @return true if the letter in the given position is in the correct row,
-     *         false otherwise
+     * Recounts the letters of every word of the board
      */
-    private static boolean letterInRowWrongPos(Puzzle puzzle, char[][] grid, int row, int col) {
-        if (row % 2 == 0)
-            return false;
+    private void countAllLetters() {
+        Arrays.fill(this.presentLetters, (byte) 0);
+        Arrays.fill(this.correctLetters, (byte) 0);
 
-        char c = grid[row - 1][col - 1];
-        int occurrencesPuzzle = countOccurrencesInPuzzleRowUntilColumn(puzzle, row, puzzle.size(), c);
-        int correctOccurrences = countCorrectOccurrencesInRow(puzzle, grid, row, c);
-
-        if (occurrencesPuzzle == 0)
-            return false;
-        if (correctOccurrences == occurrencesPuzzle)
-            return false;
-
-        int occurrencesGridUntilNow = countOccurrencesInGridRowUntilColumn(grid, row, col - 1, c);
-        if (occurrencesPuzzle <= occurrencesGridUntilNow)
-            return false;
-
-        return true;
+        for (int k = 0; k < this.cells.length; k++)
+            countLetter(k, 1);
     }
 
     /**
@@ -291,12 +241,13 @@ public class WaffleGame {
                 return false;
         }
 
+        BoardLayout layout = puzzle.layout();
         int[] letters = new int[26];
         for (int i = 0; i < size; i++) {
             for (int j = 0; j < size; j++) {
                 char c = grid[i][j];
 
-                if (i % 2 == 1 && j % 2 == 1) {
+                if (layout.isHole(i, j)) {
                     if (c != '*')
                         return false;
                 } else {
@@ -310,17 +261,8 @@ public class WaffleGame {
             }
         }
 
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (i % 2 == 0) {
-                    char c = puzzle.getLetterInHorizontalWord(j + 1, (i + 1) / 2 + 1);
-                    letters[c - 'A']--;
-                } else if (j % 2 == 0) {
-                    char c = puzzle.getLetterInVerticalWord(i + 1, (j + 1) / 2 + 1);
-                    letters[c - 'A']--;
-                }
-            }
-        }
+        for (int k = 0; k < layout.nrCells(); k++)
+            letters[puzzle.letterInCell(k)]--;
 
         if (!doesArrayOnlyContainZeros(letters))
             return false;
@@ -336,18 +278,46 @@ public class WaffleGame {
      * @requires {@code validGrid(puzzle, grid)}
      */
     public WaffleGame(Puzzle puzzle, char[][] grid) {
+        this(puzzle, cellsOf(puzzle.layout(), grid));
+    }
+
+    /**
+     * Constructs a WaffleGame with the given puzzle and letters
+     * 
+     * @param puzzle the puzzle
+     * @param cells  the letters of the board, one per cell of the layout,
+     *               coded from 0 ('A') to 25 ('Z'); kept by the game
+     * @requires the letters are those of the solution of the puzzle, in any
+     *           order
+     */
+    WaffleGame(Puzzle puzzle, byte[] cells) {
         this.puzzle = puzzle;
+        this.layout = puzzle.layout();
         this.swapCount = 0;
+        this.moves = NO_MOVES;
+        this.nrMoves = 0;
+        this.cells = cells;
+        this.hash = Zobrist.hash(cells);
+
+        this.presentLetters = new byte[this.layout.nrWords() * 26];
+        this.correctLetters = new byte[this.layout.nrWords() * 26];
+        countAllLetters();
+    }
 
-        this.grid = new char[grid.length][grid.length];
-        this.initialGrid = new char[grid.length][grid.length];
-        
-        for (int i = 0; i < grid.length; i++) {
-            for (int j = 0; j < grid.length; j++) {
-                this.grid[i][j] = grid[i][j];
-                this.initialGrid[i][j] = grid[i][j];
-            }
-        }
+    /**
+     * Returns the letters of a grid, one per cell of the given layout
+     * 
+     * @param layout the layout of the board
+     * @param grid   the grid
+     * @return the letters of the grid, coded from 0 ('A') to 25 ('Z')
+     */
+    private static byte[] cellsOf(BoardLayout layout, char[][] grid) {
+        byte[] cells = new byte[layout.nrCells()];
+
+        for (int k = 0; k < cells.length; k++)
+            cells[k] = (byte) (grid[layout.row(k)][layout.col(k)] - 'A');
+
+        return cells;
     }
 
     /**
@@ -362,7 +332,7 @@ public class WaffleGame {
             return false;
         if (col < 1 || col > this.puzzle.size())
             return false;
-        if (row % 2 == 0 && col % 2 == 0)
+        if (this.layout.isHole(row - 1, col - 1))
             return false;
 
         return true;
@@ -377,18 +347,72 @@ public class WaffleGame {
      * @return the status of the letter in the given position
      */
     public LetterStatus clue(int row, int col) {
+        int cell = this.layout.cellAt(row - 1, col - 1);
 
-        if (isCorrectPosition(this.puzzle, this.grid, row, col)) {
+        if (isCorrectPosition(this.puzzle, this.cells, cell)) {
             return LetterStatus.CORRECT_POS;
-        } else if (letterInColWrongPos(this.puzzle, this.grid, row, col)) {
+        } else if (letterInColWrongPos(cell)) {
             return LetterStatus.WRONG_POS;
-        } else if (letterInRowWrongPos(this.puzzle, this.grid, row, col)) {
+        } else if (letterInRowWrongPos(cell)) {
             return LetterStatus.WRONG_POS;
         }
 
         return LetterStatus.INEXISTENT;
     }
 
+    /**
+     * Returns the status of every letter of the board
+     * 
+     * @return a new ClueBoard with the status of every letter of the board
+     */
+    public ClueBoard clues() {
+        return clues(new ClueBoard(this.layout.size()));
+    }
+
+    /**
+     * Fills the given ClueBoard with the status of every letter of the board.
+     * Gives the same result as calling {@code clue} on every position, but reads
+     * each word only once.
+     * 
+     * @param board the ClueBoard to fill
+     * @requires {@code board.size() == puzzle.size()}
+     * @return the given ClueBoard
+     */
+    public ClueBoard clues(ClueBoard board) {
+        int size = this.layout.size();
+        int correctPos = LetterStatus.CORRECT_POS.ordinal();
+        int wrongPos = LetterStatus.WRONG_POS.ordinal();
+        byte[] seen = board.seenLetters();
+
+        for (int k = 0; k < this.cells.length; k++) {
+            int pos = this.layout.row(k) * size + this.layout.col(k);
+
+            if (isCorrectPosition(this.puzzle, this.cells, k))
+                board.set(pos, correctPos);
+            else
+                board.set(pos, LetterStatus.INEXISTENT.ordinal());
+        }
+
+        for (int w = 0; w < this.layout.nrWords(); w++) {
+            Arrays.fill(seen, (byte) 0);
+
+            for (int i = 0; i < size; i++) {
+                int cell = this.layout.wordCell(w, i);
+                int pos = this.layout.row(cell) * size + this.layout.col(cell);
+                byte c = this.cells[cell];
+                int occurrencesPuzzle = this.puzzle.occurrencesInWord(w, c);
+
+                if (board.code(pos) != correctPos && seen[c] < occurrencesPuzzle
+                        && this.correctLetters[w * 26 + c] < occurrencesPuzzle)
+                    board.set(pos, wrongPos);
+
+                seen[c]++;
+            }
+        }
+
+        return board;
+    }
+
     /**
      * Verifies if the characters position in a given row and column is allowed to
      * be swapped
@@ -402,14 +426,16 @@ public class WaffleGame {
         if (!validPosition(row, col))
             return false;
 
-        if (isCorrectPosition(this.puzzle, this.grid, row, col))
+        if (isCorrectPosition(this.puzzle, this.cells, this.layout.cellAt(row - 1, col - 1)))
             return false;
 
         return true;
     }
 
     /**
-     * Swaps the characters in the given positions
+     * Swaps the characters in the given positions. Swapping two equal letters
+     * changes nothing and is not counted; any other swap is added to the log
+     * after the moves made, dropping the ones that were undone.
      * 
      * @param row1 the row of the first character
      * @param col1 the column of the first character
@@ -420,14 +446,235 @@ public class WaffleGame {
      * @requires {@code row1 != row2 || col1 != col2}
      */
     public void swap(int row1, int col1, int row2, int col2) {
-        char c1 = this.grid[row1 - 1][col1 - 1];
-        char c2 = this.grid[row2 - 1][col2 - 1];
+        int cell1 = this.layout.cellAt(row1 - 1, col1 - 1);
+        int cell2 = this.layout.cellAt(row2 - 1, col2 - 1);
+
+        if (this.cells[cell1] != this.cells[cell2])
+            swapCells(cell1, cell2);
+    }
 
-        this.grid[row1 - 1][col1 - 1] = c2;
-        this.grid[row2 - 1][col2 - 1] = c1;
+    /**
+     * Swaps the letters in the given cells and adds the swap to the log after
+     * the moves made, dropping the ones that were undone
+     * 
+     * @param cell1 the first cell
+     * @param cell2 the second cell
+     * @requires {@code currentLetterInCell(cell1) != currentLetterInCell(cell2)}
+     */
+    void swapCells(int cell1, int cell2) {
+        exchange(cell1, cell2);
 
-        if (c1 != c2)
-            this.swapCount++;
+        if (this.swapCount == this.moves.length)
+            this.moves = Arrays.copyOf(this.moves, Math.max(maxSwaps(), 2 * this.moves.length));
+
+        this.moves[this.swapCount++] = cell1 | cell2 << 16;
+        this.nrMoves = this.swapCount;
+    }
+
+    /**
+     * Returns the i-th move of the log
+     * 
+     * @param i the index of the move
+     * @requires {@code i >= 0 && i < nrMoves()}
+     * @return the move, its first cell in the lower 16 bits and the second in
+     *         the upper ones
+     */
+    int loggedMove(int i) {
+        return this.moves[i];
+    }
+
+    /**
+     * Returns the puzzle of this game
+     * 
+     * @return the puzzle of this game
+     */
+    Puzzle puzzle() {
+        return this.puzzle;
+    }
+
+    /**
+     * Returns the letter in the given cell of the current grid
+     * 
+     * @param cell the cell index in the layout of the puzzle
+     * @return the letter, coded from 0 ('A') to 25 ('Z')
+     */
+    byte currentLetterInCell(int cell) {
+        return this.cells[cell];
+    }
+
+    /**
+     * Swaps the letters in the given cells, keeping the letter counts right
+     * 
+     * @param cell1 the first cell
+     * @param cell2 the second cell
+     */
+    private void exchange(int cell1, int cell2) {
+        byte c1 = this.cells[cell1];
+        byte c2 = this.cells[cell2];
+
+        if (this.hints != null) {
+            this.hints.moved(cell1, c1, c2);
+            this.hints.moved(cell2, c2, c1);
+        }
+        this.hash ^= Zobrist.swap(cell1, c1, cell2, c2);
+
+        countLetter(cell1, -1);
+        countLetter(cell2, -1);
+
+        this.cells[cell1] = c2;
+        this.cells[cell2] = c1;
+
+        countLetter(cell1, 1);
+        countLetter(cell2, 1);
+    }
+
+    /**
+     * Returns a swap that puts two letters in their correct positions if there
+     * is one, or else one that puts one letter in its correct position. The
+     * misplaced letters are indexed on the first hint and the index is kept up
+     * to date by every swap after it, so a hint takes the same short time on
+     * any board.
+     * 
+     * @return the swap as {@code {row1, col1, row2, col2}}, in the coordinates
+     *         of {@link #swap(int, int, int, int)}, or null if
+     *         {@code puzzleFound()}
+     */
+    public int[] hint() {
+        if (this.hints == null)
+            this.hints = new HintIndex(this.puzzle, this.cells);
+
+        int move = this.hints.hint();
+
+        if (move < 0)
+            return null;
+
+        int cell1 = move & 0xFFFF;
+        int cell2 = move >>> 16;
+
+        return new int[] { this.layout.row(cell1) + 1, this.layout.col(cell1) + 1, this.layout.row(cell2) + 1,
+                this.layout.col(cell2) + 1 };
+    }
+
+    /**
+     * Returns the Zobrist hash of the current grid. It is kept up to date by
+     * every swap, undo and redo in constant time, and equals
+     * {@code Zobrist.hash(puzzle.layout(), getCurrentGrid())}.
+     * 
+     * @return the 64-bit hash of the current grid
+     */
+    public long stateHash() {
+        return this.hash;
+    }
+
+    /**
+     * Returns the number of moves in the log, both made and undone
+     * 
+     * @return the number of moves in the log
+     */
+    public int nrMoves() {
+        return this.nrMoves;
+    }
+
+    /**
+     * Returns the number of moves made, which is the position in the log
+     * 
+     * @return the number of moves made
+     */
+    public int currentMove() {
+        return this.swapCount;
+    }
+
+    /**
+     * Checks if there is a move to undo
+     * 
+     * @return true if there is a move to undo, false otherwise
+     */
+    public boolean canUndo() {
+        return this.swapCount > 0;
+    }
+
+    /**
+     * Checks if there is an undone move to redo
+     * 
+     * @return true if there is a move to redo, false otherwise
+     */
+    public boolean canRedo() {
+        return this.swapCount < this.nrMoves;
+    }
+
+    /**
+     * Undoes the last move made. It stays in the log, to be redone, until a
+     * new swap is made.
+     * 
+     * @requires {@code canUndo()}
+     */
+    public void undo() {
+        int move = this.moves[--this.swapCount];
+
+        exchange(move & 0xFFFF, move >>> 16);
+    }
+
+    /**
+     * Makes again the last move undone
+     * 
+     * @requires {@code canRedo()}
+     */
+    public void redo() {
+        int move = this.moves[this.swapCount++];
+
+        exchange(move & 0xFFFF, move >>> 16);
+    }
+
+    /**
+     * Undoes or redoes moves until the given number of moves is made
+     * 
+     * @param move the number of moves
+     * @requires {@code move >= 0 && move <= nrMoves()}
+     */
+    public void jumpTo(int move) {
+        while (this.swapCount > move)
+            undo();
+        while (this.swapCount < move)
+            redo();
+    }
+
+    /**
+     * Swaps the characters in the given positions and tells which positions
+     * changed status. Only the words that hold one of the two positions can
+     * change, so only those are looked at.
+     * 
+     * @param row1  the row of the first character
+     * @param col1  the column of the first character
+     * @param row2  the row of the second character
+     * @param col2  the column of the second character
+     * @param delta the ClueDelta to fill with the changes
+     * @requires {@code swappablePosition(row1, col1)}
+     * @requires {@code swappablePosition(row2, col2)}
+     * @requires {@code row1 != row2 || col1 != col2}
+     * @requires {@code delta} was created for a board of size {@code puzzle.size()}
+     * @return the given ClueDelta
+     */
+    public ClueDelta swap(int row1, int col1, int row2, int col2, ClueDelta delta) {
+        int cell1 = this.layout.cellAt(row1 - 1, col1 - 1);
+        int cell2 = this.layout.cellAt(row2 - 1, col2 - 1);
+
+        delta.clear();
+        rememberWord(delta, this.layout.horizontalWord(cell1));
+        rememberWord(delta, this.layout.verticalWord(cell1));
+        rememberWord(delta, this.layout.horizontalWord(cell2));
+        rememberWord(delta, this.layout.verticalWord(cell2));
+
+        swap(row1, col1, row2, col2);
+
+        for (int i = 0; i < delta.nrCells(); i++) {
+            int cell = delta.cell(i);
+            int status = status(cell);
+
+            if (status != delta.before(i))
+                delta.add(this.layout.row(cell), this.layout.col(cell), status);
+        }
+
+        return delta;
     }
 
     /**
@@ -436,7 +683,7 @@ public class WaffleGame {
      * @return the maximum number of swaps that can be made in the grid
      */
     public int maxSwaps() {
-        return this.puzzle.shuffleSwaps() + 5;
+        return this.puzzle.shuffleSwaps() + EXTRA_SWAPS;
     }
 
     /**
@@ -451,10 +698,34 @@ public class WaffleGame {
     /**
      * Returns the current grid
      * 
-     * @return the current grid
+     * @return a new matrix with the current grid; changing it does not change
+     *         the game
      */
     public char[][] getCurrentGrid() {
-        return this.grid;
+        int size = this.layout.size();
+        char[][] grid = new char[size][size];
+
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int cell = this.layout.cellAt(i, j);
+
+                grid[i][j] = cell < 0 ? '*' : (char) ('A' + this.cells[cell]);
+            }
+        }
+
+        return grid;
+    }
+
+    /**
+     * Returns the letter in the given position of the current grid
+     *
+     * @param row the row
+     * @param col the column
+     * @requires {@code validPosition(row, col)}
+     * @return the letter in the given position of the current grid
+     */
+    public char letterAt(int row, int col) {
+        return (char) ('A' + this.cells[this.layout.cellAt(row - 1, col - 1)]);
     }
 
     /**
@@ -463,13 +734,9 @@ public class WaffleGame {
      * @return true if the puzzle was found, false otherwise
      */
     public boolean puzzleFound() {
-        for (int i = 0; i < this.puzzle.size(); i++) {
-            for (int j = 0; j < this.puzzle.size(); j++) {
-                if (i % 2 == 0 || j % 2 == 0) {
-                    if (!isCorrectPosition(this.puzzle, this.grid, i + 1, j + 1))
-                        return false;
-                }
-            }
+        for (int k = 0; k < this.cells.length; k++) {
+            if (!isCorrectPosition(this.puzzle, this.cells, k))
+                return false;
         }
 
         return true;
@@ -491,49 +758,14 @@ public class WaffleGame {
     }
 
     /**
-     * Restarts the game
+     * Restarts the game by undoing every move made. The moves stay in the log
+     * and can be redone until a new swap is made.
      */
     public void restart() {
-        this.grid = new char[this.grid.length][this.grid.length];
-
-        for (int i = 0; i < this.grid.length; i++) {
-            for (int j = 0; j < this.grid[0].length; j++) {
-                this.grid[i][j] = this.initialGrid[i][j];
-            }
-        }
-
-        this.swapCount = 0;
+        jumpTo(0);
     }
 
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        String marginLeft = "      ";
-
-        for (int i = 0; i < this.puzzle.size(); i++) {
-            sb.append(marginLeft);
-
-            for (int j = 0; j < this.puzzle.size(); j++) {
-                String c = String.valueOf(grid[i][j]);
-                String outputChar;
-
-                if (c.equals("*")) {
-                    outputChar = " ";
-                } else if (clue(i + 1, j + 1) == LetterStatus.CORRECT_POS) {
-                    outputChar = StringColouring.toGreenString(c);
-                } else if (clue(i + 1, j + 1) == LetterStatus.WRONG_POS) {
-                    outputChar = StringColouring.toYellowString(c);
-                } else {
-                    outputChar = c;
-                }
-
-                sb.append(outputChar + " ");
-            }
-
-            sb.append("\n");
-        }
-
-        sb.append("> " + remainingSwaps() + " swaps remaining <");
-
-        return sb.toString();
+        return new BoardRenderer(this.puzzle.size()).render(this, new StringBuilder()).toString();
     }
 }
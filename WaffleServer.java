@@ -0,0 +1,636 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * WaffleServer
+ *
+ * Serves games over TCP with a line protocol, from a single thread that
+ * waits on a selector for every connection. Each connection plays one game at
+ * a time. The requests are
+ *
+ * <pre>
+ * NEW                  starts a new game with a random puzzle
+ * SWAP r1 c1 r2 c2     swaps two letters, rows and columns starting at 1
+ * CLUES                shows the board
+ * RESTART              restarts the game
+ * </pre>
+ *
+ * and the reply to each one is a single line, either
+ * {@code BOARD size remaining state letters statuses} or {@code ERR reason}.
+ * The state is PLAYING, WON or LOST; letters and statuses have one character
+ * per position of the board in row-major order, the statuses being G (correct
+ * position), Y (wrong position), X (not in the word) and * (no letter).
+ *
+ * Replies are written straight into direct ByteBuffers that come from a pool
+ * and go back to it as soon as they are sent, so idle connections hold no
+ * buffers. While a connection has a reply that the client is not reading, no
+ * more requests are read from it.
+ *
+ * New games come from a PuzzleScheduler, and the selector thread never
+ * shuffles grids: a NEW that finds no game ready is answered once a thread of
+ * the scheduler has made one, and until then no more requests are read from
+ * that connection. The scheduler holds back while the selector thread spends
+ * more than half of its time handling requests, except for a queue that is
+ * running low.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class WaffleServer implements Runnable, Closeable {
+
+    public static final int MAX_LINE = 64;
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final int MAX_FREE_BUFFERS = 1024;
+    private static final int MAX_REPLY = 40 + 2 * BoardLayout.MAX_SIZE * BoardLayout.MAX_SIZE;
+    private static final int READY_GAMES = 256;
+    private static final double BUSY_FRACTION = 0.5;
+
+    private static final int UNKNOWN = 0;
+    private static final int NEW = 1;
+    private static final int SWAP = 2;
+    private static final int CLUES = 3;
+    private static final int RESTART = 4;
+    private static final byte[][] COMMANDS = { null, ascii("NEW"), ascii("SWAP"), ascii("CLUES"),
+            ascii("RESTART") };
+
+    private static final byte[] BOARD = ascii("BOARD ");
+    private static final byte[] PLAYING = ascii(" PLAYING ");
+    private static final byte[] WON = ascii(" WON ");
+    private static final byte[] LOST = ascii(" LOST ");
+    private static final byte[] ERR_NO_GAME = ascii("ERR no game\n");
+    private static final byte[] ERR_INVALID_SWAP = ascii("ERR invalid swap\n");
+    private static final byte[] ERR_UNKNOWN = ascii("ERR unknown request\n");
+    private static final byte[] ERR_TOO_LONG = ascii("ERR line too long\n");
+    // indexed by the codes of ClueBoard
+    private static final byte[] STATUS_CHARS = { 'G', 'Y', 'X', '*' };
+
+    /**
+     * The game and the buffers of a connection
+     */
+    private static final class Connection {
+        private SelectionKey key;
+        private WaffleGame game;
+        // the game a NEW is waiting for, if any
+        private CompletableFuture<WaffleGame> nextGame;
+        private ClueBoard clues;
+        private ByteBuffer in;
+        private ByteBuffer out;
+        private boolean closing;
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final PuzzleScheduler scheduler;
+    private final int size;
+    private final ByteBufferPool pool;
+    private final Consumer<SelectionKey> handler;
+    // the connections whose next game was made, added by the scheduler threads
+    private final ConcurrentLinkedQueue<Connection> arrived;
+    private final int[] numbers;
+    private volatile boolean closed;
+    // time spent handling keys, written by the selector thread only
+    private volatile long busyNanos;
+    // read by the ticker thread of the scheduler only
+    private long lastBusyNanos;
+    private long lastBusyCheck;
+
+    /**
+     * Returns the ASCII bytes of the given string
+     *
+     * @param s the string
+     * @return the ASCII bytes of the given string
+     */
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Opens a server on the given address. It serves nothing until
+     * {@code run()} is called.
+     *
+     * @param address the address to listen on; port 0 picks a free port
+     * @param puzzles the puzzles new games are picked from, all of the same
+     *                size
+     * @param seed    the seed for picking and shuffling puzzles
+     * @requires {@code !puzzles.isEmpty()}
+     * @throws IOException if the address cannot be bound
+     */
+    public WaffleServer(InetSocketAddress address, List<Puzzle> puzzles, long seed) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.size = puzzles.get(0).size();
+        this.pool = new ByteBufferPool(BUFFER_SIZE, MAX_FREE_BUFFERS);
+        this.handler = this::handle;
+        this.arrived = new ConcurrentLinkedQueue<>();
+        this.numbers = new int[4];
+
+        this.server.bind(address, 4096);
+        this.server.configureBlocking(false);
+        this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+
+        this.lastBusyCheck = System.nanoTime();
+        this.scheduler = new PuzzleScheduler(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                this::busy, seed);
+        this.scheduler.addSize(puzzles, READY_GAMES);
+    }
+
+    /**
+     * Returns the port the server listens on
+     *
+     * @return the port the server listens on
+     * @throws IOException if the server is closed
+     */
+    public int port() throws IOException {
+        return ((InetSocketAddress) this.server.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Returns the scheduler that makes the games of this server
+     *
+     * @return the scheduler that makes the games of this server
+     */
+    public PuzzleScheduler scheduler() {
+        return this.scheduler;
+    }
+
+    /**
+     * Serves connections until the server is closed
+     */
+    public void run() {
+        try {
+            while (!this.closed) {
+                this.selector.select(this.handler);
+
+                Connection conn;
+                while ((conn = this.arrived.poll()) != null)
+                    arrive(conn);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.scheduler.close();
+
+            for (SelectionKey key : this.selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    // closing anyway
+                }
+            }
+
+            try {
+                this.selector.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    /**
+     * Stops serving and closes every connection
+     */
+    public void close() {
+        this.closed = true;
+        this.scheduler.close();
+        this.selector.wakeup();
+    }
+
+    /**
+     * Handles a key the selector found ready
+     *
+     * @param key the key
+     */
+    private void handle(SelectionKey key) {
+        long start = System.nanoTime();
+
+        try {
+            if (key.isAcceptable()) {
+                accept();
+            } else if (key.isWritable()) {
+                serve(key);
+            } else if (key.isReadable()) {
+                Connection conn = (Connection) key.attachment();
+
+                if (conn.in == null)
+                    conn.in = this.pool.acquire();
+
+                if (((SocketChannel) key.channel()).read(conn.in) < 0)
+                    disconnect(key);
+                else
+                    serve(key);
+            }
+        } catch (IOException e) {
+            disconnect(key);
+        } finally {
+            this.busyNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Answers the NEW a connection was waiting on with the game made for it,
+     * and then the requests that came after it
+     *
+     * @param conn the connection
+     */
+    private void arrive(Connection conn) {
+        long start = System.nanoTime();
+        SelectionKey key = conn.key;
+        CompletableFuture<WaffleGame> game = conn.nextGame;
+
+        conn.nextGame = null;
+
+        try {
+            if (!key.isValid() || game.isCompletedExceptionally()) {
+                disconnect(key);
+                return;
+            }
+
+            conn.game = game.join();
+
+            // the room for the reply was there when the NEW was read, and
+            // nothing was added since
+            if (conn.out == null)
+                conn.out = this.pool.acquire();
+            board(conn, conn.out);
+
+            // a reply the client is not reading yet is sent when it is
+            if ((key.interestOps() & SelectionKey.OP_WRITE) == 0)
+                serve(key);
+        } catch (IOException e) {
+            disconnect(key);
+        } finally {
+            this.busyNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Tells whether the selector thread spent more than {@code BUSY_FRACTION}
+     * of its time handling keys since the last time this was asked
+     *
+     * @return true if the server is busy
+     */
+    private boolean busy() {
+        long now = System.nanoTime();
+        long busyNanos = this.busyNanos;
+        boolean busy = busyNanos - this.lastBusyNanos > BUSY_FRACTION * (now - this.lastBusyCheck);
+
+        this.lastBusyNanos = busyNanos;
+        this.lastBusyCheck = now;
+        return busy;
+    }
+
+    /**
+     * Accepts the pending connections
+     *
+     * @throws IOException if a connection cannot be set up
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+
+        while ((channel = this.server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection conn = new Connection();
+
+            conn.key = channel.register(this.selector, SelectionKey.OP_READ, conn);
+        }
+    }
+
+    /**
+     * Answers the complete requests of a connection and sends the replies,
+     * until every request is answered or the client stops taking replies
+     *
+     * @param key the key of the connection
+     * @throws IOException if the connection fails
+     */
+    private void serve(SelectionKey key) throws IOException {
+        Connection conn = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+
+        while (true) {
+            boolean pending = answer(conn);
+
+            if (conn.out == null)
+                break;
+
+            conn.out.flip();
+            channel.write(conn.out);
+
+            if (conn.out.hasRemaining()) {
+                conn.out.compact();
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+
+            this.pool.release(conn.out);
+            conn.out = null;
+
+            if (!pending)
+                break;
+        }
+
+        if (conn.closing)
+            disconnect(key);
+        else
+            key.interestOps(conn.nextGame == null ? SelectionKey.OP_READ : 0);
+    }
+
+    /**
+     * Answers the complete requests read from a connection, while there is
+     * room for the replies and no NEW is waiting for its game
+     *
+     * @param conn the connection
+     * @return true if some complete request was left for lack of room, false
+     *         otherwise
+     */
+    private boolean answer(Connection conn) {
+        ByteBuffer in = conn.in;
+
+        if (in == null || conn.closing || conn.nextGame != null)
+            return false;
+
+        int start = 0;
+        int end = in.position();
+        boolean pending = false;
+
+        for (int i = 0; i < end; i++) {
+            if (in.get(i) != '\n')
+                continue;
+
+            if (conn.out == null)
+                conn.out = this.pool.acquire();
+            if (conn.out.remaining() < MAX_REPLY) {
+                pending = true;
+                break;
+            }
+
+            request(conn, in, start, i > start && in.get(i - 1) == '\r' ? i - 1 : i);
+            start = i + 1;
+
+            if (conn.nextGame != null)
+                break;
+        }
+
+        in.flip();
+        in.position(start);
+        in.compact();
+
+        if (!pending && conn.nextGame == null && in.position() > MAX_LINE) {
+            if (conn.out == null)
+                conn.out = this.pool.acquire();
+
+            conn.out.put(ERR_TOO_LONG);
+            conn.closing = true;
+        }
+
+        if (in.position() == 0) {
+            this.pool.release(in);
+            conn.in = null;
+        }
+
+        return pending;
+    }
+
+    /**
+     * Answers one request
+     *
+     * @param conn  the connection
+     * @param in    the buffer with the request
+     * @param start the position of the first byte of the request
+     * @param end   the position after the last byte of the request
+     */
+    private void request(Connection conn, ByteBuffer in, int start, int end) {
+        ByteBuffer out = conn.out;
+        int command = command(in, start, end);
+
+        if (command == UNKNOWN) {
+            out.put(ERR_UNKNOWN);
+            return;
+        }
+
+        if (command == NEW) {
+            if (!newGame(conn))
+                return;
+        } else if (conn.game == null) {
+            out.put(ERR_NO_GAME);
+            return;
+        } else if (command == RESTART) {
+            conn.game.restart();
+        } else if (command == SWAP) {
+            int[] n = this.numbers;
+
+            if (!parseNumbers(in, start + COMMANDS[SWAP].length, end, n) || conn.game.isOver()
+                    || !conn.game.swappablePosition(n[0], n[1]) || !conn.game.swappablePosition(n[2], n[3])
+                    || (n[0] == n[2] && n[1] == n[3])) {
+                out.put(ERR_INVALID_SWAP);
+                return;
+            }
+
+            conn.game.swap(n[0], n[1], n[2], n[3]);
+        }
+
+        board(conn, out);
+    }
+
+    /**
+     * Returns the command of a request
+     *
+     * @param in    the buffer with the request
+     * @param start the position of the first byte of the request
+     * @param end   the position after the last byte of the request
+     * @return the command, or {@code UNKNOWN}
+     */
+    private static int command(ByteBuffer in, int start, int end) {
+        for (int c = NEW; c <= RESTART; c++) {
+            byte[] name = COMMANDS[c];
+            int length = name.length;
+
+            if (end - start < length || (end - start > length && in.get(start + length) != ' '))
+                continue;
+
+            boolean same = true;
+            for (int i = 0; i < length && same; i++)
+                same = in.get(start + i) == name[i];
+
+            if (same && (c == SWAP) == (end - start > length))
+                return c;
+        }
+
+        return UNKNOWN;
+    }
+
+    /**
+     * Reads exactly {@code numbers.length} numbers separated by spaces
+     *
+     * @param in      the buffer
+     * @param start   the position to start reading at
+     * @param end     the position to stop reading at
+     * @param numbers filled with the numbers read
+     * @return true if there were exactly that many small numbers, false
+     *         otherwise
+     */
+    private static boolean parseNumbers(ByteBuffer in, int start, int end, int[] numbers) {
+        int count = 0;
+        int i = start;
+
+        while (i < end) {
+            if (in.get(i) == ' ') {
+                i++;
+                continue;
+            }
+
+            int value = 0;
+            int digits = 0;
+
+            while (i < end && in.get(i) != ' ') {
+                byte b = in.get(i++);
+
+                if (b < '0' || b > '9' || ++digits > 3 || count == numbers.length)
+                    return false;
+
+                value = 10 * value + (b - '0');
+            }
+
+            numbers[count++] = value;
+        }
+
+        return count == numbers.length;
+    }
+
+    /**
+     * Starts a new game on a connection with a random puzzle, or, if none is
+     * ready, has the connection wait for the next one made
+     *
+     * @param conn the connection
+     * @return true if the game started, false if the connection waits for it
+     */
+    private boolean newGame(Connection conn) {
+        CompletableFuture<WaffleGame> game = this.scheduler.takeLater(this.size);
+
+        if (conn.clues == null || conn.clues.size() != this.size)
+            conn.clues = new ClueBoard(this.size);
+
+        if (game.isDone() && !game.isCompletedExceptionally()) {
+            conn.game = game.join();
+            return true;
+        }
+
+        conn.nextGame = game;
+        game.whenComplete((made, e) -> {
+            this.arrived.add(conn);
+            this.selector.wakeup();
+        });
+        return false;
+    }
+
+    /**
+     * Writes the board of a connection as a reply
+     *
+     * @param conn the connection
+     * @param out  the buffer to write to
+     */
+    private static void board(Connection conn, ByteBuffer out) {
+        WaffleGame game = conn.game;
+        ClueBoard clues = game.clues(conn.clues);
+        int size = clues.size();
+
+        out.put(BOARD);
+        putNumber(out, size);
+        out.put((byte) ' ');
+        putNumber(out, game.remainingSwaps());
+        out.put(game.puzzleFound() ? WON : game.isOver() ? LOST : PLAYING);
+
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                boolean hole = clues.code(i * size + j) == ClueBoard.HOLE;
+
+                out.put(hole ? (byte) '*' : (byte) game.letterAt(i + 1, j + 1));
+            }
+        }
+
+        out.put((byte) ' ');
+
+        for (int pos = 0; pos < size * size; pos++)
+            out.put(STATUS_CHARS[clues.code(pos)]);
+
+        out.put((byte) '\n');
+    }
+
+    /**
+     * Writes a number in decimal
+     *
+     * @param out the buffer to write to
+     * @param n   the number
+     * @requires {@code n >= 0}
+     */
+    private static void putNumber(ByteBuffer out, int n) {
+        if (n >= 10)
+            putNumber(out, n / 10);
+
+        out.put((byte) ('0' + n % 10));
+    }
+
+    /**
+     * Closes a connection and gives its buffers back to the pool
+     *
+     * @param key the key of the connection
+     */
+    private void disconnect(SelectionKey key) {
+        Connection conn = (Connection) key.attachment();
+
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+
+        if (conn != null) {
+            if (conn.in != null)
+                this.pool.release(conn.in);
+            if (conn.out != null)
+                this.pool.release(conn.out);
+
+            conn.in = null;
+            conn.out = null;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: java WaffleServer port dictionary [size] [puzzles]");
+            return;
+        }
+
+        int port = Integer.parseInt(args[0]);
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int count = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        WordDictionary dictionary = WordDictionary.open(Paths.get(args[1]));
+        List<Puzzle> puzzles = new PuzzleGenerator(dictionary.index(size)).generate(count, 4, System.nanoTime());
+
+        if (puzzles.isEmpty()) {
+            System.out.println("the dictionary has no puzzles of size " + size);
+            return;
+        }
+
+        try (WaffleServer server = new WaffleServer(new InetSocketAddress(port), puzzles, System.nanoTime())) {
+            System.out.println("serving " + puzzles.size() + " puzzles on port " + server.port());
+            server.run();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * WaffleServerLoadTest
+ *
+ * A load generator for WaffleServer. Many clients, all driven from one
+ * selector, each send a request, wait for the reply, think for a while and
+ * send the next one: a mix of SWAP with random positions, CLUES, and now and
+ * then RESTART or NEW. It reports the requests per second and the latency
+ * percentiles. Without a host and port it starts a server with random puzzles
+ * in the same process. Usage:
+ * {@code java WaffleServerLoadTest [clients] [seconds] [think ms] [size] [host port]}.
+ * With no think time every client always has a request waiting, so the
+ * latency is mostly the time spent queued behind the other clients.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class WaffleServerLoadTest {
+
+    private static final int MAX_MICROS = 100_000;
+    private static final byte[] NEW_REQUEST = "NEW\n".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The state of a client
+     */
+    private static final class Client {
+        private final ByteBuffer in = ByteBuffer.allocate(4096);
+        private final SelectionKey key;
+        private ByteBuffer out;
+        private long sentAt;
+        private long dueAt;
+
+        private Client(SelectionKey key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Returns the next request of a client
+     *
+     * @param rand the random generator
+     * @param size the size of the board
+     * @return the next request
+     */
+    private static ByteBuffer nextRequest(SplittableRandom rand, int size) {
+        int r = rand.nextInt(100);
+        String request;
+
+        if (r < 1)
+            request = "NEW\n";
+        else if (r < 5)
+            request = "RESTART\n";
+        else if (r < 35)
+            request = "CLUES\n";
+        else
+            request = "SWAP " + (1 + rand.nextInt(size)) + " " + (1 + rand.nextInt(size)) + " "
+                    + (1 + rand.nextInt(size)) + " " + (1 + rand.nextInt(size)) + "\n";
+
+        return ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Sends a request, keeping what could not be sent yet
+     *
+     * @param client  the client
+     * @param request the request
+     * @throws IOException if the connection fails
+     */
+    private static void send(Client client, ByteBuffer request) throws IOException {
+        client.sentAt = System.nanoTime();
+        ((SocketChannel) client.key.channel()).write(request);
+
+        if (request.hasRemaining()) {
+            client.out = request;
+            client.key.interestOps(SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Returns the given percentile of a latency histogram
+     *
+     * @param histogram the number of requests per microsecond of latency
+     * @param total     the total number of requests
+     * @param fraction  the percentile, from 0 to 1
+     * @return the latency in microseconds
+     */
+    private static int percentile(long[] histogram, long total, double fraction) {
+        long seen = 0;
+
+        for (int us = 0; us < histogram.length; us++) {
+            seen += histogram[us];
+
+            if (seen >= Math.ceil(fraction * total))
+                return us;
+        }
+
+        return histogram.length;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int nrClients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        long thinkNanos = 1_000_000L * (args.length > 2 ? Long.parseLong(args[2]) : 100);
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        WaffleServer server = null;
+        InetSocketAddress address;
+
+        if (args.length > 5) {
+            address = new InetSocketAddress(args[4], Integer.parseInt(args[5]));
+        } else {
+            List<Puzzle> puzzles = new ArrayList<>();
+            Random rand = new Random(2023);
+
+            for (int i = 0; i < 1000; i++)
+                puzzles.add(WaffleSolverBenchmark.randomPuzzle(size, 12, rand));
+
+            server = new WaffleServer(new InetSocketAddress("127.0.0.1", 0), puzzles, 2023);
+            address = new InetSocketAddress("127.0.0.1", server.port());
+            new Thread(server, "waffle-server").start();
+        }
+
+        Selector selector = Selector.open();
+        SplittableRandom rand = new SplittableRandom(2023);
+        // every client thinks for the same time, so they become due in the order they got replies
+        ArrayDeque<Client> thinking = new ArrayDeque<>();
+
+        for (int i = 0; i < nrClients; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+
+            channel.configureBlocking(false);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Client client = new Client(key);
+
+            key.attach(client);
+            client.dueAt = System.nanoTime() + rand.nextLong(thinkNanos + 1);
+            thinking.addLast(client);
+        }
+
+        long[] histogram = new long[MAX_MICROS + 1];
+        long requests = 0;
+        long errors = 0;
+        long warmupEnd = System.nanoTime() + 2_000_000_000L;
+        long end = warmupEnd + seconds * 1_000_000_000L;
+        boolean measuring = false;
+
+        while (System.nanoTime() < end) {
+            long now = System.nanoTime();
+
+            while (!thinking.isEmpty() && thinking.peekFirst().dueAt <= now) {
+                Client client = thinking.pollFirst();
+                boolean first = client.sentAt == 0;
+
+                send(client, first ? ByteBuffer.wrap(NEW_REQUEST) : nextRequest(rand, size));
+            }
+
+            if (thinking.isEmpty())
+                selector.select(100);
+            else
+                selector.select(Math.max(1, (thinking.peekFirst().dueAt - now) / 1_000_000));
+
+            if (!measuring && System.nanoTime() >= warmupEnd) {
+                measuring = true;
+                requests = 0;
+                errors = 0;
+                Arrays.fill(histogram, 0);
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                Client client = (Client) key.attachment();
+                SocketChannel channel = (SocketChannel) key.channel();
+
+                keys.remove();
+
+                if (key.isWritable()) {
+                    channel.write(client.out);
+
+                    if (!client.out.hasRemaining()) {
+                        client.out = null;
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                    continue;
+                }
+
+                if (channel.read(client.in) < 0)
+                    throw new IOException("the server closed a connection");
+
+                int newline = -1;
+                for (int i = 0; i < client.in.position() && newline < 0; i++) {
+                    if (client.in.get(i) == '\n')
+                        newline = i;
+                }
+
+                if (newline < 0)
+                    continue;
+
+                long micros = (System.nanoTime() - client.sentAt) / 1000;
+                histogram[(int) Math.min(micros, MAX_MICROS)]++;
+                requests++;
+                if (client.in.get(0) == 'E')
+                    errors++;
+
+                client.in.flip();
+                client.in.position(newline + 1);
+                client.in.compact();
+
+                client.dueAt = System.nanoTime() + thinkNanos;
+                thinking.addLast(client);
+            }
+        }
+
+        System.out.printf("%d clients thinking %d ms, %dx%d: %,.0f requests/s, %.1f%% errors%n", nrClients, thinkNanos / 1_000_000,
+                size, size, requests / (double) seconds, 100.0 * errors / Math.max(1, requests));
+        System.out.printf("latency p50 %d us, p99 %d us, p99.9 %d us, max %d us%n",
+                percentile(histogram, requests, 0.5), percentile(histogram, requests, 0.99),
+                percentile(histogram, requests, 0.999), percentile(histogram, requests, 1.0));
+
+        for (SelectionKey key : selector.keys())
+            key.channel().close();
+        selector.close();
+
+        if (server != null) {
+            PuzzleScheduler scheduler = server.scheduler();
+
+            System.out.printf("new games: %,d made in the background (%,.0f/s at the end), %,d not ready when asked, %d ready%n",
+                    scheduler.made(size), scheduler.refillRate(size), scheduler.misses(size), scheduler.depth(size));
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,410 @@
+import java.util.SplittableRandom;
+
+/**
+ * WaffleSolver
+ *
+ * Finds the minimum number of swaps that turn a grid into the solution of a
+ * puzzle, and a sequence of swaps that does it.
+ *
+ * Every misplaced letter holds some letter a and wants some letter b, so it is
+ * an edge a -> b of a graph over the 26 letters. Each cycle of k edges in that
+ * graph is fixed with k - 1 swaps, so the fewest swaps come from splitting the
+ * graph into as many cycles as possible. Opposite edges a -> b and b -> a are
+ * always taken as a cycle of their own; the rest is split by a search over the
+ * cycles through the smallest remaining letter, pruned by the fact that every
+ * remaining cycle has at least three edges. On boards far larger than 7x7 the
+ * search stops after a fixed budget and keeps the best split found so far.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class WaffleSolver {
+
+    private static final long MAX_NODES = 1_000_000;
+    private static final int MAX_SEEN = 1 << 18;
+    private static final long[] EDGE_KEYS = new long[26 * 26];
+
+    static {
+        SplittableRandom random = new SplittableRandom(26);
+
+        for (int e = 0; e < EDGE_KEYS.length; e++)
+            EDGE_KEYS[e] = random.nextLong();
+    }
+
+    private final int[] edges = new int[26 * 26];
+    private final int[] outDegree = new int[26];
+    private int nrEdges;
+    private long edgesKey;
+    private final TranspositionTable seen = new TranspositionTable(MAX_SEEN);
+
+    private int[] cycleLetters;
+    private int[] cycleEnds;
+    private int nrCycles;
+    private int lettersUsed;
+
+    private int[] bestLetters;
+    private int[] bestEnds;
+    private int bestCycles;
+    private long nodes;
+    private boolean cut;
+    private int maxCycles;
+
+    /**
+     * Returns the minimum number of swaps that turn the given grid into the
+     * solution of the given puzzle
+     *
+     * @param puzzle the puzzle
+     * @param grid   the grid
+     * @requires {@code WaffleGame.validGrid(puzzle, grid)}
+     * @return the minimum number of swaps that turn the grid into the solution
+     */
+    public static int minSwaps(Puzzle puzzle, char[][] grid) {
+        return solve(puzzle, grid).length;
+    }
+
+    /**
+     * Returns a shortest sequence of swaps that turns the given grid into the
+     * solution of the given puzzle. Each swap is given as
+     * {@code {row1, col1, row2, col2}}, in the coordinates of
+     * {@link WaffleGame#swap(int, int, int, int)}, and only swaps letters that
+     * are not in their correct position at that moment.
+     *
+     * @param puzzle the puzzle
+     * @param grid   the grid
+     * @requires {@code WaffleGame.validGrid(puzzle, grid)}
+     * @return a shortest sequence of swaps that turns the grid into the solution
+     */
+    public static int[][] solve(Puzzle puzzle, char[][] grid) {
+        BoardLayout layout = puzzle.layout();
+        WaffleSolver solver = new WaffleSolver();
+
+        // misplaced cells, grouped by the pair of letters they hold and want
+        int[] first = new int[26 * 26 + 1];
+        int misplaced = 0;
+
+        for (int k = 0; k < layout.nrCells(); k++) {
+            int have = grid[layout.row(k)][layout.col(k)] - 'A';
+            int want = puzzle.letterInCell(k);
+
+            if (have != want) {
+                solver.edges[have * 26 + want]++;
+                solver.edgesKey += EDGE_KEYS[have * 26 + want];
+                solver.outDegree[have]++;
+                first[have * 26 + want + 1]++;
+                misplaced++;
+            }
+        }
+
+        for (int e = 0; e < 26 * 26; e++)
+            first[e + 1] += first[e];
+
+        int[] next = first.clone();
+        int[] cellsByEdge = new int[misplaced];
+
+        for (int k = 0; k < layout.nrCells(); k++) {
+            int have = grid[layout.row(k)][layout.col(k)] - 'A';
+            int want = puzzle.letterInCell(k);
+
+            if (have != want)
+                cellsByEdge[next[have * 26 + want]++] = k;
+        }
+
+        solver.nrEdges = misplaced;
+        solver.decompose(0);
+
+        int[][] swaps = new int[misplaced - solver.bestCycles][];
+        int s = 0;
+        int start = 0;
+
+        System.arraycopy(first, 0, next, 0, next.length);
+
+        for (int c = 0; c < solver.bestCycles; c++) {
+            int end = solver.bestEnds[c];
+            int previous = -1;
+
+            for (int i = start; i < end; i++) {
+                int have = solver.bestLetters[i];
+                int want = solver.bestLetters[i + 1 < end ? i + 1 : start];
+                int cell = cellsByEdge[next[have * 26 + want]++];
+
+                // the letter the previous cell wants is in this one; after the
+                // swap this cell holds the first letter of the cycle
+                if (previous >= 0)
+                    swaps[s++] = new int[] {
+                            layout.row(previous) + 1, layout.col(previous) + 1,
+                            layout.row(cell) + 1, layout.col(cell) + 1
+                    };
+
+                previous = cell;
+            }
+
+            start = end;
+        }
+
+        return swaps;
+    }
+
+    /**
+     * Returns bounds on the minimum number of swaps that turn the given letters
+     * into the solution of the given puzzle. Both are the exact minimum unless
+     * the search ran out of its budget, which only happens on boards far larger
+     * than 7x7, or the minimum is surely above the given limit, in which case
+     * there is no search at all.
+     *
+     * @param puzzle the puzzle
+     * @param cells  the letters of the grid, one per cell of the layout of the
+     *               puzzle, coded from 0 ('A') to 25 ('Z')
+     * @param limit  the most swaps worth knowing exactly
+     * @requires the letters are those of the solution of the puzzle, in any
+     *           order
+     * @return the lower bound in the upper 32 bits and the upper bound in the
+     *         lower ones
+     */
+    static long swapBounds(Puzzle puzzle, byte[] cells, int limit) {
+        WaffleSolver solver = new WaffleSolver();
+        int misplaced = 0;
+
+        for (int k = 0; k < cells.length; k++) {
+            int have = cells[k];
+            int want = puzzle.letterInCell(k);
+
+            if (have != want) {
+                solver.edges[have * 26 + want]++;
+                solver.edgesKey += EDGE_KEYS[have * 26 + want];
+                solver.outDegree[have]++;
+                misplaced++;
+            }
+        }
+
+        solver.nrEdges = misplaced;
+        solver.decompose(misplaced - limit);
+
+        int upper = misplaced - solver.bestCycles;
+        int lower = solver.cut ? misplaced - solver.maxCycles : upper;
+
+        return (long) lower << 32 | upper;
+    }
+
+    /**
+     * Creates a solver with no edges
+     */
+    private WaffleSolver() {
+    }
+
+    /**
+     * Splits the letter graph into as many cycles as possible, leaving them in
+     * bestLetters and bestEnds. If fewer cycles than the given number are
+     * possible, there is no search: bestCycles only counts the opposite edges
+     * and one cycle for the rest.
+     *
+     * @param fewestCycles the fewest cycles worth searching for
+     */
+    private void decompose(int fewestCycles) {
+        this.cycleLetters = new int[this.nrEdges];
+        this.cycleEnds = new int[this.nrEdges / 2];
+        this.bestLetters = new int[this.nrEdges];
+        this.bestEnds = new int[this.nrEdges / 2];
+        this.bestCycles = -1;
+
+        for (int a = 0; a < 26; a++) {
+            for (int b = a + 1; b < 26; b++) {
+                while (this.edges[a * 26 + b] > 0 && this.edges[b * 26 + a] > 0) {
+                    this.cycleLetters[this.lettersUsed] = a;
+                    this.cycleLetters[this.lettersUsed + 1] = b;
+                    removeCycle(2);
+                }
+            }
+        }
+
+        this.maxCycles = this.nrCycles + Math.min(this.nrEdges / 3, maxMoreCycles());
+
+        if (this.maxCycles < fewestCycles) {
+            this.bestCycles = this.nrCycles + (this.nrEdges > 0 ? 1 : 0);
+            this.cut = true;
+            return;
+        }
+
+        search();
+    }
+
+    /**
+     * Tries every way of splitting the remaining edges into cycles, keeping the
+     * one with the most cycles
+     */
+    private void search() {
+        this.nodes++;
+
+        if (this.nrEdges == 0) {
+            if (this.nrCycles > this.bestCycles) {
+                this.bestCycles = this.nrCycles;
+                System.arraycopy(this.cycleLetters, 0, this.bestLetters, 0, this.lettersUsed);
+                System.arraycopy(this.cycleEnds, 0, this.bestEnds, 0, this.nrCycles);
+            }
+            return;
+        }
+
+        // no two opposite edges are left, so every cycle has three or more
+        if (this.nrCycles + this.nrEdges / 3 <= this.bestCycles)
+            return;
+        if (this.nrCycles + maxMoreCycles() <= this.bestCycles)
+            return;
+        if (this.bestCycles >= 0 && this.nodes > MAX_NODES) {
+            this.cut = true;
+            return;
+        }
+
+        // the same edges may be left by different cycles; searching them again
+        // only pays off if more cycles were found on the way here
+        if (this.seen.get(this.edgesKey, -1) >= this.nrCycles)
+            return;
+        this.seen.put(this.edgesKey, this.nrCycles);
+
+        int u = 0;
+        while (this.outDegree[u] == 0)
+            u++;
+
+        // the cycles through u are the same whatever order they are taken in, so
+        // they are only taken in order: never shorter, nor smaller among cycles
+        // of the same length, than the last one taken through u
+        int previous = -1;
+        int minLength = 3;
+
+        if (this.nrCycles > 0) {
+            int start = this.nrCycles > 1 ? this.cycleEnds[this.nrCycles - 2] : 0;
+
+            if (this.cycleLetters[start] == u) {
+                previous = start;
+                minLength = Math.max(3, this.lettersUsed - start);
+            }
+        }
+
+        // the cycle being built goes right after the current decomposition, so
+        // deeper searches never overwrite it
+        this.cycleLetters[this.lettersUsed] = u;
+
+        for (int length = minLength; length <= 26 && length <= this.nrEdges; length++) {
+            boolean ordered = previous >= 0 && length == this.lettersUsed - previous;
+
+            extendPath(1, length, 1 << u, ordered ? previous : -1);
+
+            if (this.nrCycles + this.nrEdges / 3 <= this.bestCycles)
+                break;
+        }
+    }
+
+    /**
+     * Returns an upper bound on the number of cycles the remaining edges can be
+     * split into. Only edges that lie on some triangle can be in a cycle of three
+     * letters, and every other cycle has four or more, so with t such edges there
+     * are at most {@code t / 12 + nrEdges / 4} cycles.
+     *
+     * @return an upper bound on the number of cycles left
+     */
+    private int maxMoreCycles() {
+        int onTriangles = 0;
+
+        for (int a = 0; a < 26; a++) {
+            if (this.outDegree[a] == 0)
+                continue;
+
+            for (int b = 0; b < 26; b++) {
+                int count = this.edges[a * 26 + b];
+
+                if (count == 0)
+                    continue;
+
+                for (int c = 0; c < 26; c++) {
+                    if (this.edges[b * 26 + c] > 0 && this.edges[c * 26 + a] > 0) {
+                        onTriangles += count;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return (3 * this.nrEdges + onTriangles) / 12;
+    }
+
+    /**
+     * Extends the path being built with every letter that can follow it, and
+     * searches on with each cycle of the given length that closes it
+     *
+     * @param length  the number of letters already in the path
+     * @param cycle   the number of letters of the cycles to look for
+     * @param visited a mask with the letters already in the path
+     * @param bound   where the letters of a cycle the path may not fall below
+     *                start in {@code cycleLetters}, if the path is so far equal
+     *                to it, or -1
+     */
+    private void extendPath(int length, int cycle, int visited, int bound) {
+        int base = this.lettersUsed;
+        int first = this.cycleLetters[base];
+        int last = this.cycleLetters[base + length - 1];
+
+        if (length == cycle) {
+            if (this.edges[last * 26 + first] > 0) {
+                removeCycle(length);
+                search();
+                restoreCycle(length);
+            }
+            return;
+        }
+
+        int v = bound >= 0 ? this.cycleLetters[bound + length] : first + 1;
+
+        for (; v < 26; v++) {
+            if ((visited & (1 << v)) == 0 && this.edges[last * 26 + v] > 0) {
+                boolean equal = bound >= 0 && v == this.cycleLetters[bound + length];
+
+                this.cycleLetters[base + length] = v;
+                extendPath(length + 1, cycle, visited | (1 << v), equal ? bound : -1);
+            }
+        }
+    }
+
+    /**
+     * Removes the cycle whose letters follow the current decomposition from the
+     * graph and pushes it onto the decomposition
+     *
+     * @param length the number of letters of the cycle
+     */
+    private void removeCycle(int length) {
+        int base = this.lettersUsed;
+
+        for (int i = 0; i < length; i++) {
+            int a = this.cycleLetters[base + i];
+            int b = this.cycleLetters[base + (i + 1) % length];
+
+            this.edges[a * 26 + b]--;
+            this.outDegree[a]--;
+            this.edgesKey -= EDGE_KEYS[a * 26 + b];
+        }
+
+        this.nrEdges -= length;
+        this.lettersUsed += length;
+        this.cycleEnds[this.nrCycles++] = this.lettersUsed;
+    }
+
+    /**
+     * Pops the last cycle of the decomposition and puts its edges back into the
+     * graph
+     *
+     * @param length the number of letters of the cycle
+     */
+    private void restoreCycle(int length) {
+        int base = this.lettersUsed - length;
+
+        for (int i = 0; i < length; i++) {
+            int a = this.cycleLetters[base + i];
+            int b = this.cycleLetters[base + (i + 1) % length];
+
+            this.edges[a * 26 + b]++;
+            this.outDegree[a]++;
+            this.edgesKey += EDGE_KEYS[a * 26 + b];
+        }
+
+        this.nrEdges += length;
+        this.lettersUsed = base;
+        this.nrCycles--;
+    }
+}
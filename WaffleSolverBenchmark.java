@@ -0,0 +1,287 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * WaffleSolverBenchmark
+ *
+ * Times WaffleSolver over a corpus of shuffled grids of random puzzles and
+ * reports how the minimum number of swaps compares with maxSwaps(). Usage:
+ * {@code java WaffleSolverBenchmark [grids per size] [letters]}, where letters
+ * is how many distinct letters the random puzzles use (fewer letters, more
+ * duplicates).
+ *
+ * With {@code java WaffleSolverBenchmark check [grids] [seed]} it instead
+ * checks the solver on grids with few letters and many repeats, where its
+ * pruning matters most: the minimum number of swaps must be the one found
+ * by trying every decomposition of the letter graph into cycles, and the
+ * swaps of {@code solve} must be that many and solve the grid. Any
+ * disagreement is printed and makes the exit status 1.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class WaffleSolverBenchmark {
+
+    /**
+     * Returns a random puzzle whose words overlap
+     *
+     * @param size    the length of each word
+     * @param letters how many distinct letters to use
+     * @param rand    the random generator
+     * @return a random puzzle whose words overlap
+     */
+    static Puzzle randomPuzzle(int size, int letters, Random rand) {
+        char[][] grid = new char[size][size];
+        String[] hWords = new String[(size + 1) / 2];
+        String[] vWords = new String[(size + 1) / 2];
+
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++)
+                grid[i][j] = (char) ('A' + rand.nextInt(letters));
+        }
+
+        for (int i = 0; i < hWords.length; i++) {
+            StringBuilder h = new StringBuilder();
+            StringBuilder v = new StringBuilder();
+
+            for (int j = 0; j < size; j++) {
+                h.append(grid[2 * i][j]);
+                v.append(grid[j][2 * i]);
+            }
+
+            hWords[i] = h.toString();
+            vWords[i] = v.toString();
+        }
+
+        return new Puzzle(size, hWords, vWords);
+    }
+
+    /**
+     * Returns the minimum number of swaps that solve a grid, found by trying
+     * every decomposition into cycles of its letter graph, which has an edge
+     * from the letter in each misplaced cell to the letter the cell wants
+     *
+     * @param puzzle the puzzle
+     * @param grid   a shuffled grid of the puzzle
+     * @return the minimum number of swaps that solve the grid
+     */
+    private static int exhaustiveMinSwaps(Puzzle puzzle, char[][] grid) {
+        BoardLayout layout = puzzle.layout();
+        int[] edges = new int[26 * 26];
+        int misplaced = 0;
+
+        for (int k = 0; k < layout.nrCells(); k++) {
+            int have = grid[layout.row(k)][layout.col(k)] - 'A';
+            int want = puzzle.letterInCell(k);
+
+            if (have != want) {
+                edges[have * 26 + want]++;
+                misplaced++;
+            }
+        }
+
+        // a cycle of c edges takes c - 1 swaps
+        return misplaced - maxCycles(edges, new HashMap<>());
+    }
+
+    /**
+     * Returns the most cycles the letter graph splits into. The first edge
+     * left is in some cycle of any decomposition, and splitting a cycle that
+     * repeats a letter only adds cycles, so it is enough to try every simple
+     * cycle through that edge.
+     *
+     * @param edges how many edges go from each letter to each other; the same
+     *              when the method returns
+     * @param memo  the answers for the graphs already seen
+     * @return the most cycles the graph splits into
+     */
+    private static int maxCycles(int[] edges, Map<String, Integer> memo) {
+        int first = 0;
+        while (first < edges.length && edges[first] == 0)
+            first++;
+
+        if (first == edges.length)
+            return 0;
+
+        String key = Arrays.toString(edges);
+        Integer known = memo.get(key);
+        if (known != null)
+            return known;
+
+        boolean[] visited = new boolean[26];
+
+        edges[first]--;
+        visited[first / 26] = true;
+        int best = closeCycles(first % 26, first / 26, edges, visited, memo);
+        edges[first]++;
+
+        memo.put(key, best);
+        return best;
+    }
+
+    /**
+     * Returns the most cycles the letter graph splits into when the path
+     * taken out of it so far, from {@code to} to {@code from}, is closed into
+     * a cycle by a simple path back to {@code to}
+     *
+     * @param from    the letter the path has reached
+     * @param to      the letter the path started at
+     * @param edges   the edges not yet in the path
+     * @param visited the letters on the path
+     * @param memo    the answers for the graphs already seen
+     * @return the most cycles, counting the one being closed
+     */
+    private static int closeCycles(int from, int to, int[] edges, boolean[] visited, Map<String, Integer> memo) {
+        if (from == to)
+            return 1 + maxCycles(edges, memo);
+
+        int best = 0;
+        visited[from] = true;
+
+        for (int next = 0; next < 26; next++) {
+            if (edges[from * 26 + next] > 0 && (next == to || !visited[next])) {
+                edges[from * 26 + next]--;
+                best = Math.max(best, closeCycles(next, to, edges, visited, memo));
+                edges[from * 26 + next]++;
+            }
+        }
+
+        visited[from] = false;
+        return best;
+    }
+
+    /**
+     * Checks WaffleSolver against the exhaustive search on random grids of
+     * puzzles with three to six letters, some shuffled by GridShuffler and
+     * some by swapping random cells, diagonals included
+     *
+     * @param grids how many grids to check
+     * @param seed  the seed of the puzzles and grids
+     * @return the number of disagreements
+     */
+    private static int check(int grids, long seed) {
+        Random rand = new Random(seed);
+        GridShuffler shuffler = new GridShuffler(seed);
+        int errors = 0;
+
+        for (int i = 0; i < grids; i++) {
+            int size = rand.nextInt(4) == 0 ? 7 : 5;
+            Puzzle puzzle = randomPuzzle(size, 3 + rand.nextInt(4), rand);
+            BoardLayout layout = puzzle.layout();
+            char[][] grid;
+
+            if (rand.nextBoolean()) {
+                grid = shuffler.shuffle(puzzle, 1 + rand.nextInt(puzzle.shuffleSwaps()));
+            } else {
+                grid = new char[size][];
+                for (int r = 0; r < size; r++)
+                    grid[r] = new char[size];
+                for (int k = 0; k < layout.nrCells(); k++)
+                    grid[layout.row(k)][layout.col(k)] = (char) ('A' + puzzle.letterInCell(k));
+                for (int r = 0; r < size; r++) {
+                    for (int c = 0; c < size; c++) {
+                        if (layout.cellAt(r, c) < 0)
+                            grid[r][c] = '*';
+                    }
+                }
+
+                int[] cells = new int[2 + rand.nextInt(size == 5 ? 15 : 31)];
+                for (int j = 0; j < cells.length; j++)
+                    cells[j] = rand.nextInt(layout.nrCells());
+                for (int j = cells.length - 1; j > 0; j--) {
+                    int a = cells[j];
+                    int b = cells[rand.nextInt(j)];
+                    char letter = grid[layout.row(a)][layout.col(a)];
+
+                    grid[layout.row(a)][layout.col(a)] = grid[layout.row(b)][layout.col(b)];
+                    grid[layout.row(b)][layout.col(b)] = letter;
+                }
+            }
+
+            int expected = exhaustiveMinSwaps(puzzle, grid);
+            int min = WaffleSolver.minSwaps(puzzle, grid);
+            int[][] script = WaffleSolver.solve(puzzle, grid);
+            char[][] played = new char[size][];
+
+            for (int r = 0; r < size; r++)
+                played[r] = grid[r].clone();
+            for (int[] swap : script) {
+                char letter = played[swap[0] - 1][swap[1] - 1];
+
+                played[swap[0] - 1][swap[1] - 1] = played[swap[2] - 1][swap[3] - 1];
+                played[swap[2] - 1][swap[3] - 1] = letter;
+            }
+
+            boolean solved = true;
+            for (int k = 0; k < layout.nrCells(); k++)
+                solved &= played[layout.row(k)][layout.col(k)] - 'A' == puzzle.letterInCell(k);
+
+            if (min != expected || script.length != expected || !solved) {
+                if (errors++ < 5) {
+                    System.out.printf("grid %d: minSwaps %d, solve %d swaps%s, exhaustive %d%n", i, min,
+                            script.length, solved ? "" : " that do not solve it", expected);
+                    for (char[] row : grid)
+                        System.out.println("  " + new String(row));
+                }
+            }
+        }
+
+        return errors;
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("check")) {
+            int grids = args.length > 1 ? Integer.parseInt(args[1]) : 8_000;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 2023;
+            long start = System.nanoTime();
+            int errors = check(grids, seed);
+
+            System.out.printf("%d grids checked against the exhaustive search in %.1f s, %d errors%n", grids,
+                    (System.nanoTime() - start) / 1e9, errors);
+            if (errors > 0)
+                System.exit(1);
+            return;
+        }
+
+        int grids = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int letters = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        Random rand = new Random(2023);
+
+        for (int size = 5; size <= 7; size += 2) {
+            Puzzle[] puzzles = new Puzzle[grids];
+            char[][][] corpus = new char[grids][][];
+
+            for (int i = 0; i < grids; i++) {
+                puzzles[i] = randomPuzzle(size, letters, rand);
+                corpus[i] = puzzles[i].getShuffledGrid();
+            }
+
+            // warm up
+            for (int i = 0; i < Math.min(grids, 2_000); i++)
+                WaffleSolver.minSwaps(puzzles[i], corpus[i]);
+
+            long[] times = new long[grids];
+            int over = 0;
+            long swaps = 0;
+
+            for (int i = 0; i < grids; i++) {
+                long start = System.nanoTime();
+                int min = WaffleSolver.minSwaps(puzzles[i], corpus[i]);
+                times[i] = System.nanoTime() - start;
+
+                swaps += min;
+                if (min > new WaffleGame(puzzles[i], corpus[i]).maxSwaps())
+                    over++;
+            }
+
+            Arrays.sort(times);
+            System.out.printf("%dx%d: %d grids, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                    size, size, grids, Arrays.stream(times).average().orElse(0) / 1e6,
+                    times[grids / 2] / 1e6, times[grids * 99 / 100] / 1e6, times[grids - 1] / 1e6);
+            System.out.printf("      mean minimum %.2f swaps, %d grids need more than maxSwaps()%n",
+                    swaps / (double) grids, over);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * WordDictionary
+ *
+ * A word list stored as a memory-mapped file with one {@link WordIndex} per
+ * word length. The file holds, for each length, the packed words and their
+ * (position, letter) bitsets exactly as WordIndex reads them, so opening a
+ * dictionary only maps the file and reads its header; the words stay in the
+ * page cache, shared by every process that opens the same file.
+ *
+ * The file starts with the header {@code MAGIC, VERSION, number of lengths},
+ * followed by one entry {@code length, number of words, offset of the words,
+ * offset of the bitsets} per length. Every section starts at a multiple of 8
+ * bytes.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class WordDictionary {
+
+    public static final int MAGIC = 0x57444943;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 12;
+    private static final int ENTRY_BYTES = 24;
+
+    private final MappedByteBuffer file;
+    private final WordIndex[] indexes;
+
+    /**
+     * Writes a dictionary file with the given words. Words that are longer than
+     * {@code WordIndex.MAX_LENGTH} or that have characters that are not upper
+     * case letters are left out.
+     *
+     * @param path  the file to write
+     * @param words the word list
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path path, Iterable<String> words) throws IOException {
+        WordIndex[] indexes = new WordIndex[WordIndex.MAX_LENGTH + 1];
+        int nrLengths = 0;
+
+        for (int length = 1; length <= WordIndex.MAX_LENGTH; length++) {
+            indexes[length] = new WordIndex(length, words);
+
+            if (indexes[length].nrWords() > 0)
+                nrLengths++;
+        }
+
+        long size = align(HEADER_BYTES + (long) ENTRY_BYTES * nrLengths);
+        for (int length = 1; length <= WordIndex.MAX_LENGTH; length++) {
+            WordIndex index = indexes[length];
+
+            if (index.nrWords() > 0)
+                size += 8L * index.nrWords() + 8L * length * 26 * index.longs();
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            long offset = align(HEADER_BYTES + (long) ENTRY_BYTES * nrLengths);
+
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(nrLengths);
+
+            for (int length = 1; length <= WordIndex.MAX_LENGTH; length++) {
+                WordIndex index = indexes[length];
+
+                if (index.nrWords() == 0)
+                    continue;
+
+                out.putInt(length);
+                out.putInt(index.nrWords());
+                out.putLong(offset);
+                out.putLong(offset + 8L * index.nrWords());
+
+                int entry = out.position();
+                out.position((int) offset);
+                index.writeTo(out.asLongBuffer());
+                out.position(entry);
+
+                offset += 8L * index.nrWords() + 8L * length * 26 * index.longs();
+            }
+
+            out.force();
+        }
+    }
+
+    /**
+     * Opens a dictionary file
+     *
+     * @param path the file to open
+     * @return the dictionary in the file
+     * @throws IOException if the file cannot be read or is not a dictionary
+     */
+    public static WordDictionary open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new WordDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Rounds the given number of bytes up to a multiple of 8
+     *
+     * @param bytes the number of bytes
+     * @return the smallest multiple of 8 not below the given number
+     */
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Tells whether the given number of longs from the given offset lie within
+     * a mapped file
+     *
+     * @param file   the mapped file
+     * @param offset the offset of the first long, in bytes
+     * @param count  the number of longs
+     * @requires {@code count >= 0}
+     * @return true if the longs lie within the file
+     */
+    private static boolean fits(MappedByteBuffer file, long offset, long count) {
+        return offset >= 0 && offset <= file.capacity() && count <= (file.capacity() - offset) / 8;
+    }
+
+    /**
+     * Returns an index without words
+     *
+     * @param length the length of the words
+     * @return an index without words
+     */
+    private static WordIndex empty(int length) {
+        return new WordIndex(length, 0, LongBuffer.allocate(0), LongBuffer.allocate(0));
+    }
+
+    /**
+     * Reads the header of a mapped dictionary file
+     *
+     * @param file the mapped file
+     * @throws IOException if the file is not a dictionary
+     */
+    private WordDictionary(MappedByteBuffer file) throws IOException {
+        if (file.capacity() < HEADER_BYTES || file.getInt(0) != MAGIC)
+            throw new IOException("not a word dictionary");
+        if (file.getInt(4) != VERSION)
+            throw new IOException("unsupported word dictionary version " + file.getInt(4));
+
+        this.file = file;
+        this.indexes = new WordIndex[WordIndex.MAX_LENGTH + 1];
+
+        int nrLengths = file.getInt(8);
+
+        if (nrLengths < 0 || HEADER_BYTES + (long) ENTRY_BYTES * nrLengths > file.capacity())
+            throw new IOException("corrupted word dictionary");
+
+        for (int i = 0; i < nrLengths; i++) {
+            int entry = HEADER_BYTES + ENTRY_BYTES * i;
+            int length = file.getInt(entry);
+            int nrWords = file.getInt(entry + 4);
+            long wordsOffset = file.getLong(entry + 8);
+            long bitsOffset = file.getLong(entry + 16);
+
+            if (length < 1 || length > WordIndex.MAX_LENGTH || nrWords < 0 || this.indexes[length] != null)
+                throw new IOException("corrupted word dictionary");
+
+            long bitsLongs = (long) length * 26 * ((nrWords + 63L) / 64);
+
+            if (!fits(file, wordsOffset, nrWords) || !fits(file, bitsOffset, bitsLongs))
+                throw new IOException("corrupted word dictionary");
+
+            LongBuffer words = file.slice((int) wordsOffset, 8 * nrWords).asLongBuffer();
+            LongBuffer bits = file.slice((int) bitsOffset, (int) (8 * bitsLongs)).asLongBuffer();
+
+            this.indexes[length] = new WordIndex(length, nrWords, words, bits);
+        }
+
+        for (int length = 1; length <= WordIndex.MAX_LENGTH; length++) {
+            if (this.indexes[length] == null)
+                this.indexes[length] = empty(length);
+        }
+    }
+
+    /**
+     * Returns the index of the words of the given length
+     *
+     * @param length the length of the words
+     * @return the index of the words of the given length, empty if there are
+     *         none
+     */
+    public WordIndex index(int length) {
+        if (length < 1 || length > WordIndex.MAX_LENGTH)
+            return empty(length);
+
+        return this.indexes[length];
+    }
+
+    /**
+     * Checks if the given word is in the dictionary
+     *
+     * @param word the word
+     * @return true if the word is in the dictionary, false otherwise
+     */
+    public boolean contains(String word) {
+        return word != null && index(word.length()).contains(word);
+    }
+
+    /**
+     * Returns the number of bytes of the dictionary file
+     *
+     * @return the number of bytes of the dictionary file
+     */
+    public long fileSize() {
+        return this.file.capacity();
+    }
+}
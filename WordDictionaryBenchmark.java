@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * WordDictionaryBenchmark
+ *
+ * Builds a WordDictionary file from a word list and measures how long opening
+ * it takes, how much heap it uses and how fast it answers positional queries.
+ * Usage: {@code java WordDictionaryBenchmark [word list]}. Without a word list,
+ * 200k random words of 5 and 7 letters are used.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public class WordDictionaryBenchmark {
+
+    /**
+     * Returns the heap in use after a garbage collection
+     *
+     * @return the heap in use, in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++)
+            System.gc();
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> words = new ArrayList<>();
+
+        if (args.length > 0) {
+            for (String line : Files.readAllLines(Paths.get(args[0])))
+                words.add(line.trim().toUpperCase(Locale.ROOT));
+        } else {
+            SplittableRandom rand = new SplittableRandom(2023);
+            words.addAll(PuzzleGeneratorBenchmark.randomWords(5, 100_000, rand));
+            words.addAll(PuzzleGeneratorBenchmark.randomWords(7, 100_000, rand));
+        }
+
+        Path file = Files.createTempFile("words", ".dict");
+        long start = System.nanoTime();
+        WordDictionary.write(file, words);
+        System.out.printf("wrote %d words in %.1f ms, %d bytes%n", words.size(),
+                (System.nanoTime() - start) / 1e6, Files.size(file));
+
+        words = null;
+        long heapBefore = usedHeap();
+
+        start = System.nanoTime();
+        WordDictionary dictionary = WordDictionary.open(file);
+        double openMillis = (System.nanoTime() - start) / 1e6;
+
+        long heapAfter = usedHeap();
+        System.out.printf("opened in %.3f ms, %d bytes of heap%n", openMillis, heapAfter - heapBefore);
+
+        WordIndex five = dictionary.index(5);
+        long[] set = new long[five.longs()];
+        int queries = 100_000;
+        long matches = 0;
+
+        start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            five.fill(set);
+            five.retain(2, 'R' - 'A', set);
+
+            for (long bits : set)
+                matches += Long.bitCount(bits);
+        }
+        System.out.printf("'R' at index 2 among %d words: %d matches, %.2f us per query%n", five.nrWords(),
+                matches / queries, (System.nanoTime() - start) / 1e3 / queries);
+
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,273 @@
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * WordIndex
+ *
+ * The words of a given length from a word list, indexed by (position, letter).
+ * For every position and letter there is a bitset with one bit per word, set
+ * if the word has that letter in that position, so the words that satisfy
+ * several crossing constraints are the AND of a few bitsets.
+ *
+ * Each word is packed in a long with 5 bits per letter, the first letter in
+ * the lowest bits, and the words are kept sorted by that long. The words and
+ * the bitsets live in LongBuffers, so an index can be read straight from a
+ * memory-mapped {@link WordDictionary} file.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class WordIndex {
+
+    public static final int MAX_LENGTH = 12;
+
+    private final int length;
+    private final int nrWords;
+    private final int longs;
+    private final LongBuffer words;
+    private final LongBuffer bits;
+
+    /**
+     * Creates an index with the words of the given length in the given list.
+     * Words with other lengths or with characters that are not upper case
+     * letters are left out, as are repeated words.
+     *
+     * @param length the length of the words to index
+     * @param words  the word list
+     * @requires {@code words != null}
+     * @requires {@code length > 0 && length <= MAX_LENGTH}
+     */
+    public WordIndex(int length, Iterable<String> words) {
+        int count = 0;
+        long[] packed = new long[16];
+
+        for (String word : words) {
+            if (word != null && word.length() == length && isUpperCase(word)) {
+                if (count == packed.length)
+                    packed = Arrays.copyOf(packed, 2 * count);
+                packed[count++] = pack(word);
+            }
+        }
+
+        Arrays.sort(packed, 0, count);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || packed[distinct - 1] != packed[i])
+                packed[distinct++] = packed[i];
+        }
+
+        this.length = length;
+        this.nrWords = distinct;
+        this.longs = (distinct + 63) / 64;
+        this.words = LongBuffer.wrap(Arrays.copyOf(packed, distinct));
+        this.bits = LongBuffer.wrap(bitsets(length, packed, distinct));
+    }
+
+    /**
+     * Creates an index over words and bitsets that were already built
+     *
+     * @param length  the length of the words
+     * @param nrWords the number of words
+     * @param words   the packed words, sorted and without repetitions
+     * @param bits    the bitsets, as built by {@code bitsets}
+     */
+    WordIndex(int length, int nrWords, LongBuffer words, LongBuffer bits) {
+        this.length = length;
+        this.nrWords = nrWords;
+        this.longs = (nrWords + 63) / 64;
+        this.words = words;
+        this.bits = bits;
+    }
+
+    /**
+     * Checks if every character of the given word is an upper case letter from
+     * 'A' to 'Z'
+     *
+     * @param word the word
+     * @return true if every character is an upper case letter, false otherwise
+     */
+    private static boolean isUpperCase(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+
+            if (c < 'A' || c > 'Z')
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Packs a word in a long, 5 bits per letter with the first letter in the
+     * lowest bits
+     *
+     * @param word the word
+     * @requires {@code word.length() <= MAX_LENGTH}
+     * @requires every character of the word is an upper case letter
+     * @return the packed word
+     */
+    static long pack(String word) {
+        long packed = 0;
+
+        for (int i = word.length() - 1; i >= 0; i--)
+            packed = packed << 5 | (word.charAt(i) - 'A');
+
+        return packed;
+    }
+
+    /**
+     * Builds the (position, letter) bitsets of the given packed words
+     *
+     * @param length  the length of the words
+     * @param packed  the packed words
+     * @param nrWords the number of words
+     * @return the bitsets, {@code (nrWords + 63) / 64} longs for each position
+     *         and letter, the bitset of letter l in position p starting at
+     *         {@code (p * 26 + l) * longs}
+     */
+    static long[] bitsets(int length, long[] packed, int nrWords) {
+        int longs = (nrWords + 63) / 64;
+        long[] bits = new long[length * 26 * longs];
+
+        for (int w = 0; w < nrWords; w++) {
+            for (int i = 0; i < length; i++) {
+                int letter = (int) (packed[w] >>> (5 * i)) & 31;
+
+                bits[(i * 26 + letter) * longs + (w >>> 6)] |= 1L << w;
+            }
+        }
+
+        return bits;
+    }
+
+    /**
+     * Returns the length of the indexed words
+     *
+     * @return the length of the indexed words
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Returns the number of indexed words
+     *
+     * @return the number of indexed words
+     */
+    public int nrWords() {
+        return this.nrWords;
+    }
+
+    /**
+     * Returns the i-th indexed word
+     *
+     * @param i the index of the word
+     * @requires {@code i >= 0 && i < nrWords()}
+     * @return the i-th indexed word
+     */
+    public String word(int i) {
+        char[] word = new char[this.length];
+
+        for (int pos = 0; pos < this.length; pos++)
+            word[pos] = (char) ('A' + letter(i, pos));
+
+        return new String(word);
+    }
+
+    /**
+     * Returns the letter in the given position of the i-th indexed word
+     *
+     * @param i   the index of the word
+     * @param pos the position, starting at 0
+     * @requires {@code i >= 0 && i < nrWords()}
+     * @requires {@code pos >= 0 && pos < length()}
+     * @return the letter, coded from 0 ('A') to 25 ('Z')
+     */
+    public int letter(int i, int pos) {
+        return (int) (this.words.get(i) >>> (5 * pos)) & 31;
+    }
+
+    /**
+     * Checks if the given word is indexed
+     *
+     * @param word the word
+     * @return true if the word is indexed, false otherwise
+     */
+    public boolean contains(String word) {
+        if (word == null || word.length() != this.length || !isUpperCase(word))
+            return false;
+
+        long key = pack(word);
+        int low = 0;
+        int high = this.nrWords - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long packed = this.words.get(middle);
+
+            if (packed < key)
+                low = middle + 1;
+            else if (packed > key)
+                high = middle - 1;
+            else
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Writes the packed words followed by the bitsets to the given buffer, in
+     * the layout the package-private constructor reads
+     *
+     * @param out the buffer
+     */
+    void writeTo(LongBuffer out) {
+        out.put(this.words.duplicate().rewind());
+        out.put(this.bits.duplicate().rewind());
+    }
+
+    /**
+     * Returns the number of longs of a bitset over the indexed words
+     *
+     * @return the number of longs of a bitset over the indexed words
+     */
+    public int longs() {
+        return this.longs;
+    }
+
+    /**
+     * Sets in the given bitset the bit of every indexed word
+     *
+     * @param set a bitset with {@code longs()} longs
+     */
+    public void fill(long[] set) {
+        Arrays.fill(set, 0, this.longs, -1L);
+
+        if (this.nrWords % 64 != 0)
+            set[this.longs - 1] = (1L << this.nrWords) - 1;
+    }
+
+    /**
+     * Clears in the given bitset the bit of every word that does not have the
+     * given letter in the given position
+     *
+     * @param pos    the position, starting at 0
+     * @param letter the letter, coded from 0 ('A') to 25 ('Z')
+     * @param set    a bitset with {@code longs()} longs
+     * @requires {@code pos >= 0 && pos < length()}
+     * @return true if some bit is still set, false otherwise
+     */
+    public boolean retain(int pos, int letter, long[] set) {
+        int offset = (pos * 26 + letter) * this.longs;
+        long any = 0;
+
+        for (int i = 0; i < this.longs; i++) {
+            set[i] &= this.bits.get(offset + i);
+            any |= set[i];
+        }
+
+        return any != 0;
+    }
+}
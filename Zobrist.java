@@ -0,0 +1,92 @@
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist
+ *
+ * 64-bit Zobrist hashes of boards: each pair of a cell and a letter has a
+ * fixed random key, and the hash of a board is the XOR of the keys of its
+ * letters. Swapping two letters changes four keys, so a hash is kept up to
+ * date in constant time instead of being computed again from the board. The
+ * keys come from a fixed seed, so the same board always has the same hash,
+ * in any run, and boards of different sizes with the same letters in the
+ * same cells have the same hash too.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+public final class Zobrist {
+
+    // indexed by cell * 26 + letter, for the cells of the largest board
+    private static final long[] KEYS = new long[BoardLayout.of(BoardLayout.MAX_SIZE).nrCells() * 26];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5A0B);
+
+        for (int i = 0; i < KEYS.length; i++)
+            KEYS[i] = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the key of a letter in a cell
+     *
+     * @param cell   the cell index in the layout
+     * @param letter the letter, coded from 0 ('A') to 25 ('Z')
+     * @requires {@code cell >= 0 && cell < BoardLayout.of(BoardLayout.MAX_SIZE).nrCells()}
+     * @return the key of the letter in the cell
+     */
+    static long key(int cell, int letter) {
+        return KEYS[cell * 26 + letter];
+    }
+
+    /**
+     * Returns the hash of the given letters
+     *
+     * @param cells the letters of the board, one per cell of its layout, coded
+     *              from 0 ('A') to 25 ('Z')
+     * @return the hash of the letters
+     */
+    static long hash(byte[] cells) {
+        long hash = 0;
+
+        for (int k = 0; k < cells.length; k++)
+            hash ^= KEYS[k * 26 + cells[k]];
+
+        return hash;
+    }
+
+    /**
+     * Returns the hash of the given grid, the same as {@code stateHash()} of
+     * a WaffleGame with that grid
+     *
+     * @param layout the layout of the board
+     * @param grid   the grid
+     * @requires {@code grid} has an uppercase letter in every cell of the layout
+     * @return the hash of the grid
+     */
+    public static long hash(BoardLayout layout, char[][] grid) {
+        long hash = 0;
+
+        for (int k = 0; k < layout.nrCells(); k++)
+            hash ^= KEYS[k * 26 + grid[layout.row(k)][layout.col(k)] - 'A'];
+
+        return hash;
+    }
+
+    /**
+     * Returns how the hash of a board changes when two of its letters are
+     * swapped
+     *
+     * @param cell1   the first cell
+     * @param letter1 the letter in the first cell before the swap
+     * @param cell2   the second cell
+     * @param letter2 the letter in the second cell before the swap
+     * @return the value to XOR into the hash
+     */
+    static long swap(int cell1, int letter1, int cell2, int letter2) {
+        return KEYS[cell1 * 26 + letter1] ^ KEYS[cell1 * 26 + letter2] ^ KEYS[cell2 * 26 + letter2]
+                ^ KEYS[cell2 * 26 + letter1];
+    }
+}
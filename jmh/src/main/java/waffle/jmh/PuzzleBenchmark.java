@@ -0,0 +1,69 @@
+package waffle.jmh;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PuzzleBenchmark
+ *
+ * Times the Puzzle operations: word validation and building a shuffled grid.
+ * A few letters per puzzle give words full of repeated letters, which is the
+ * hard case for the shuffler.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PuzzleBenchmark {
+
+    @Param({ "5", "7", "11", "21" })
+    public int size;
+
+    @Param({ "26", "3" })
+    public int letters;
+
+    private String[] hWords;
+    private String[] vWords;
+    private Object puzzle;
+
+    @Setup
+    public void setup() throws Throwable {
+        String[][] words = Waffle.randomWords(this.size, this.letters, new SplittableRandom(2023));
+
+        this.hWords = words[0];
+        this.vWords = words[1];
+        this.puzzle = (Object) Waffle.NEW_PUZZLE.invokeExact(this.size, this.hWords, this.vWords);
+    }
+
+    @Benchmark
+    public boolean validWords() throws Throwable {
+        return (boolean) Waffle.VALID_WORDS.invokeExact(this.size, this.hWords, this.vWords);
+    }
+
+    @Benchmark
+    public boolean overlappedWords() throws Throwable {
+        return (boolean) Waffle.OVERLAPPED_WORDS.invokeExact(this.size, this.hWords, this.vWords);
+    }
+
+    @Benchmark
+    public char[][] getShuffledGrid() throws Throwable {
+        return (char[][]) Waffle.SHUFFLED_GRID.invokeExact(this.puzzle);
+    }
+}
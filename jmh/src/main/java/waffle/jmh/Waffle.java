@@ -0,0 +1,147 @@
+package waffle.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+
+/**
+ * Waffle
+ *
+ * The game classes live in the default package, which a class in a named
+ * package cannot name, and JMH only accepts benchmarks in a named package. So
+ * the benchmarks reach the game through method handles kept in static final
+ * fields, which the JIT inlines as if they were direct calls. Puzzles and
+ * games are passed around as Objects and grids as {@code char[][]}.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+final class Waffle {
+
+    /** {@code (int size, String[] hWords, String[] vWords) -> Puzzle} */
+    static final MethodHandle NEW_PUZZLE;
+    /** {@code Puzzle.validWords(int, String[], String[]) -> boolean} */
+    static final MethodHandle VALID_WORDS;
+    /** {@code Puzzle.overlappedWords(int, String[], String[]) -> boolean} */
+    static final MethodHandle OVERLAPPED_WORDS;
+    /** {@code puzzle.getShuffledGrid() -> char[][]} */
+    static final MethodHandle SHUFFLED_GRID;
+    /** {@code (Puzzle puzzle, char[][] grid) -> WaffleGame} */
+    static final MethodHandle NEW_GAME;
+    /** {@code WaffleGame.validGrid(Puzzle, char[][]) -> boolean} */
+    static final MethodHandle VALID_GRID;
+    /** {@code game.clue(int row, int col) -> LetterStatus} */
+    static final MethodHandle CLUE;
+    /** {@code game.swappablePosition(int row, int col) -> boolean} */
+    static final MethodHandle SWAPPABLE_POSITION;
+    /** {@code game.swap(int row1, int col1, int row2, int col2)} */
+    static final MethodHandle SWAP;
+    /** {@code game.puzzleFound() -> boolean} */
+    static final MethodHandle PUZZLE_FOUND;
+    /** {@code game.undo()} */
+    static final MethodHandle UNDO;
+    /** {@code game.restart()} */
+    static final MethodHandle RESTART;
+    /** {@code game.toString() -> String} */
+    static final MethodHandle TO_STRING;
+    /** {@code (int size) -> BoardRenderer} */
+    static final MethodHandle NEW_RENDERER;
+    /** {@code BoardRenderer.maxBytes(int size) -> int} */
+    static final MethodHandle MAX_BYTES;
+    /** {@code renderer.render(WaffleGame game, ByteBuffer out) -> ByteBuffer} */
+    static final MethodHandle RENDER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> puzzle = Class.forName("Puzzle");
+            Class<?> game = Class.forName("WaffleGame");
+            Class<?> status = Class.forName("LetterStatus");
+            Class<?> renderer = Class.forName("BoardRenderer");
+
+            NEW_PUZZLE = lookup.findConstructor(puzzle,
+                    MethodType.methodType(void.class, int.class, String[].class, String[].class))
+                    .asType(MethodType.methodType(Object.class, int.class, String[].class, String[].class));
+            VALID_WORDS = lookup.findStatic(puzzle, "validWords",
+                    MethodType.methodType(boolean.class, int.class, String[].class, String[].class));
+            OVERLAPPED_WORDS = lookup.findStatic(puzzle, "overlappedWords",
+                    MethodType.methodType(boolean.class, int.class, String[].class, String[].class));
+            SHUFFLED_GRID = lookup.findVirtual(puzzle, "getShuffledGrid", MethodType.methodType(char[][].class))
+                    .asType(MethodType.methodType(char[][].class, Object.class));
+
+            NEW_GAME = lookup.findConstructor(game, MethodType.methodType(void.class, puzzle, char[][].class))
+                    .asType(MethodType.methodType(Object.class, Object.class, char[][].class));
+            VALID_GRID = lookup.findStatic(game, "validGrid",
+                    MethodType.methodType(boolean.class, puzzle, char[][].class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, char[][].class));
+            CLUE = lookup.findVirtual(game, "clue", MethodType.methodType(status, int.class, int.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, int.class, int.class));
+            SWAPPABLE_POSITION = lookup.findVirtual(game, "swappablePosition",
+                    MethodType.methodType(boolean.class, int.class, int.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, int.class, int.class));
+            SWAP = lookup.findVirtual(game, "swap",
+                    MethodType.methodType(void.class, int.class, int.class, int.class, int.class))
+                    .asType(MethodType.methodType(void.class, Object.class, int.class, int.class, int.class,
+                            int.class));
+            PUZZLE_FOUND = lookup.findVirtual(game, "puzzleFound", MethodType.methodType(boolean.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class));
+            UNDO = lookup.findVirtual(game, "undo", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            RESTART = lookup.findVirtual(game, "restart", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            TO_STRING = lookup.findVirtual(game, "toString", MethodType.methodType(String.class))
+                    .asType(MethodType.methodType(String.class, Object.class));
+
+            NEW_RENDERER = lookup.findConstructor(renderer, MethodType.methodType(void.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class));
+            MAX_BYTES = lookup.findStatic(renderer, "maxBytes", MethodType.methodType(int.class, int.class));
+            RENDER = lookup.findVirtual(renderer, "render",
+                    MethodType.methodType(ByteBuffer.class, game, ByteBuffer.class))
+                    .asType(MethodType.methodType(ByteBuffer.class, Object.class, Object.class, ByteBuffer.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Waffle() {
+    }
+
+    /**
+     * Returns the words of a random board whose words overlap. The first
+     * {@code (size + 1) / 2} words are the horizontal ones and the others the
+     * vertical ones.
+     *
+     * @param size    the length of each word
+     * @param letters how many distinct letters to use; few letters give many
+     *                repeated letters in every word
+     * @param rand    the random generator
+     * @return the horizontal and the vertical words of a random board
+     */
+    static String[][] randomWords(int size, int letters, SplittableRandom rand) {
+        char[][] grid = new char[size][size];
+        String[] hWords = new String[(size + 1) / 2];
+        String[] vWords = new String[(size + 1) / 2];
+
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++)
+                grid[i][j] = (char) ('A' + rand.nextInt(letters));
+        }
+
+        for (int i = 0; i < hWords.length; i++) {
+            StringBuilder h = new StringBuilder();
+            StringBuilder v = new StringBuilder();
+
+            for (int j = 0; j < size; j++) {
+                h.append(grid[2 * i][j]);
+                v.append(grid[j][2 * i]);
+            }
+
+            hWords[i] = h.toString();
+            vWords[i] = v.toString();
+        }
+
+        return new String[][] { hWords, vWords };
+    }
+}
@@ -0,0 +1,167 @@
+package waffle.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * WaffleGameBenchmark
+ *
+ * Times the WaffleGame operations on a shuffled grid of a random puzzle. The
+ * clue benchmark walks over every position of the board, one per call, and
+ * the swap benchmark swaps two letters and undoes the swap, so the board is
+ * the same before every call. The render benchmark goes through toString and
+ * renderInto through a BoardRenderer writing into a reused ByteBuffer.
+ *
+ * @author pedrosilva 59886
+ * @author diogolopes 60447
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaffleGameBenchmark {
+
+    @Param({ "5", "7", "11", "21" })
+    public int size;
+
+    @Param({ "26", "3" })
+    public int letters;
+
+    private Object puzzle;
+    private char[][] grid;
+    private Object game;
+    private int[] rows;
+    private int[] cols;
+    private int next;
+    private int[] swapPair;
+    private Object renderer;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() throws Throwable {
+        String[][] words = Waffle.randomWords(this.size, this.letters, new SplittableRandom(2023));
+
+        this.puzzle = (Object) Waffle.NEW_PUZZLE.invokeExact(this.size, words[0], words[1]);
+        this.grid = (char[][]) Waffle.SHUFFLED_GRID.invokeExact(this.puzzle);
+        this.game = (Object) Waffle.NEW_GAME.invokeExact(this.puzzle, this.grid);
+
+        int positions = 0;
+        this.rows = new int[this.size * this.size];
+        this.cols = new int[this.size * this.size];
+
+        for (int i = 1; i <= this.size; i++) {
+            for (int j = 1; j <= this.size; j++) {
+                if (i % 2 == 1 || j % 2 == 1) {
+                    this.rows[positions] = i;
+                    this.cols[positions] = j;
+                    positions++;
+                }
+            }
+        }
+
+        this.rows = Arrays.copyOf(this.rows, positions);
+        this.cols = Arrays.copyOf(this.cols, positions);
+        this.swapPair = findSwapPair();
+        this.renderer = (Object) Waffle.NEW_RENDERER.invokeExact(this.size);
+        this.buffer = ByteBuffer.allocateDirect((int) Waffle.MAX_BYTES.invokeExact(this.size));
+    }
+
+    /**
+     * Returns two positions that can be swapped and that can still be swapped
+     * back afterwards, or just two positions that can be swapped if there are
+     * no such positions
+     *
+     * @return {@code {row1, col1, row2, col2}}
+     */
+    private int[] findSwapPair() throws Throwable {
+        int[] fallback = null;
+
+        for (int a = 0; a < this.rows.length; a++) {
+            for (int b = a + 1; b < this.rows.length; b++) {
+                int r1 = this.rows[a];
+                int c1 = this.cols[a];
+                int r2 = this.rows[b];
+                int c2 = this.cols[b];
+
+                if (this.grid[r1 - 1][c1 - 1] == this.grid[r2 - 1][c2 - 1]
+                        || !(boolean) Waffle.SWAPPABLE_POSITION.invokeExact(this.game, r1, c1)
+                        || !(boolean) Waffle.SWAPPABLE_POSITION.invokeExact(this.game, r2, c2))
+                    continue;
+
+                if (fallback == null)
+                    fallback = new int[] { r1, c1, r2, c2 };
+
+                Waffle.SWAP.invokeExact(this.game, r1, c1, r2, c2);
+                boolean back = (boolean) Waffle.SWAPPABLE_POSITION.invokeExact(this.game, r1, c1)
+                        && (boolean) Waffle.SWAPPABLE_POSITION.invokeExact(this.game, r2, c2);
+                Waffle.RESTART.invokeExact(this.game);
+
+                if (back)
+                    return new int[] { r1, c1, r2, c2 };
+            }
+        }
+
+        return fallback;
+    }
+
+    @Setup(Level.Iteration)
+    public void restart() throws Throwable {
+        Waffle.RESTART.invokeExact(this.game);
+    }
+
+    @Benchmark
+    public Object clue() throws Throwable {
+        int i = this.next;
+
+        this.next = i + 1 == this.rows.length ? 0 : i + 1;
+
+        return (Object) Waffle.CLUE.invokeExact(this.game, this.rows[i], this.cols[i]);
+    }
+
+    @Benchmark
+    public void swap() throws Throwable {
+        int[] p = this.swapPair;
+
+        Waffle.SWAP.invokeExact(this.game, p[0], p[1], p[2], p[3]);
+        Waffle.UNDO.invokeExact(this.game);
+    }
+
+    @Benchmark
+    public boolean puzzleFound() throws Throwable {
+        return (boolean) Waffle.PUZZLE_FOUND.invokeExact(this.game);
+    }
+
+    @Benchmark
+    public boolean validGrid() throws Throwable {
+        return (boolean) Waffle.VALID_GRID.invokeExact(this.puzzle, this.grid);
+    }
+
+    @Benchmark
+    public String render() throws Throwable {
+        return (String) Waffle.TO_STRING.invokeExact(this.game);
+    }
+
+    @Benchmark
+    public ByteBuffer renderInto() throws Throwable {
+        this.buffer.clear();
+
+        return (ByteBuffer) Waffle.RENDER.invokeExact(this.renderer, this.game, this.buffer);
+    }
+}